@@ -25,12 +25,15 @@ import static android.view.View.GONE;
 import static android.view.View.INVISIBLE;
 import static android.view.View.VISIBLE;
 import static com.spotify.diffuser.diffuser.Diffuser.into;
-import static com.spotify.diffuser.diffuser.Diffuser.map;
+import static com.spotify.diffuser.diffuser.Diffuser.mapToBoolean;
+import static com.spotify.diffuser.diffuser.Diffuser.mapToInt;
 
 import android.view.View;
 import android.widget.TextView;
 import androidx.annotation.IntDef;
+import com.spotify.diffuser.diffuser.BooleanDiffuser;
 import com.spotify.diffuser.diffuser.Diffuser;
+import com.spotify.diffuser.diffuser.IntDiffuser;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 
@@ -44,7 +47,7 @@ public class ViewDiffusers {
    * @return A Diffuser which toggles the enabled state of a view based on its input.
    */
   public static Diffuser<Boolean> intoEnabled(View view) {
-    return into(view::setEnabled);
+    return mapToBoolean(b -> b, BooleanDiffuser.into(view::setEnabled));
   }
 
   /**
@@ -55,7 +58,7 @@ public class ViewDiffusers {
    * @return A Diffuser which toggles the disabled state of a view based on its input.
    */
   public static Diffuser<Boolean> intoDisabled(View view) {
-    return map(b -> !b, intoEnabled(view));
+    return mapToBoolean(b -> !b, BooleanDiffuser.into(view::setEnabled));
   }
 
   @IntDef({VISIBLE, INVISIBLE, GONE})
@@ -73,7 +76,8 @@ public class ViewDiffusers {
    */
   public static Diffuser<Boolean> intoVisibility(
       @Visibility int enabledVisibility, @Visibility int disabledVisibility, View view) {
-    return map(b -> b ? enabledVisibility : disabledVisibility, into(view::setVisibility));
+    return mapToInt(
+        b -> b ? enabledVisibility : disabledVisibility, IntDiffuser.into(view::setVisibility));
   }
 
   /**
@@ -116,6 +120,6 @@ public class ViewDiffusers {
    * @return A Diffuser which sets the text of a {@link TextView}.
    */
   public static Diffuser<Integer> intoTextRes(TextView textView) {
-    return into(textView::setText);
+    return mapToInt(res -> res, IntDiffuser.into(textView::setText));
   }
 }
@@ -34,7 +34,7 @@ public class ViewFusers {
   /**
    * Create a Fuser which receives click events from a {@link View}. NOTE: only one click listener
    * can be connected to a view at a time. Connecting multiple Fusers at the same time will result
-   * in a crash.
+   * in a crash, unless the Fuser is shared using {@link Fuser#share(Fuser)}.
    *
    * @param view - the {@link View} that will emit click events.
    * @return A Fuser which emits click events on its {@link View}.
@@ -55,7 +55,7 @@ public class ViewFusers {
   /**
    * Create a Fuser which receives long-click events from a {@link View}. NOTE: only one click
    * listener can be added to a view at a time. Connecting multiple Fusers at the same time will
-   * result in a crash.
+   * result in a crash, unless the Fuser is shared using {@link Fuser#share(Fuser)}.
    *
    * @param view - the {@link View} that will emit long-click events.
    * @return A Fuser which emits click events on its {@link View}.
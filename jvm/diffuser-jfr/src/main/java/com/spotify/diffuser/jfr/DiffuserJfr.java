@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.jfr;
+
+import com.spotify.diffuser.diffuser.DiffuserMonitor;
+import com.spotify.diffuser.fuser.FuserMonitor;
+
+/**
+ * Java Flight Recorder events for Diffuser and Fuser.
+ *
+ * <p>On JDK 11 and later, having this module on the classpath installs {@link JfrDiffuserMonitor}
+ * and {@link JfrFuserMonitor}, which record every run of a {@link
+ * com.spotify.diffuser.diffuser.CompiledDiffuser} with a named root, and every event dispatched
+ * through a named {@link com.spotify.diffuser.fuser.Fuser}. Diffusers which are run without being
+ * compiled are not recorded, since they don't know where their root is. Older JVMs don't have JFR's
+ * event API, so nothing is installed there.
+ */
+public final class DiffuserJfr {
+  private DiffuserJfr() {}
+
+  /** @return true if Diffuser and Fuser activity is recorded as JFR events on this JVM. */
+  public static boolean isAvailable() {
+    return false;
+  }
+
+  // Replaced by the JDK 11 version of this class in the multi-release jar, which has JFR's API.
+  static DiffuserMonitor newDiffuserRecorder() {
+    return null;
+  }
+
+  static FuserMonitor newFuserRecorder() {
+    return null;
+  }
+}
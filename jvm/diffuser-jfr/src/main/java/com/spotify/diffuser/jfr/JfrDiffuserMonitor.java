@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.jfr;
+
+import com.spotify.diffuser.diffuser.DiffuserMonitor;
+
+/**
+ * Records every run of a {@link com.spotify.diffuser.diffuser.CompiledDiffuser} with a named root
+ * as a {@code com.spotify.diffuser.DiffuserRun} event. Diffusers which are run without being
+ * compiled don't know where their root is, so their runs are not recorded.
+ *
+ * <p>Listed in {@code META-INF/services}, but only installed when {@link
+ * DiffuserJfr#isAvailable()}, so that named Diffusers cost nothing extra on JVMs without JFR.
+ */
+public final class JfrDiffuserMonitor implements DiffuserMonitor {
+  // Null when JFR is not available. The recorder itself is only part of the JDK 11 classes.
+  private final DiffuserMonitor recorder = DiffuserJfr.newDiffuserRecorder();
+
+  @Override
+  public void onRun(String name, boolean changed, long checkNanos, long effectNanos) {
+    if (recorder != null) {
+      recorder.onRun(name, changed, checkNanos, effectNanos);
+    }
+  }
+
+  @Override
+  public void onRootRun(String name, long durationNanos, int effectsRun, int nodesSkipped) {
+    if (recorder != null) {
+      recorder.onRootRun(name, durationNanos, effectsRun, nodesSkipped);
+    }
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return recorder != null;
+  }
+}
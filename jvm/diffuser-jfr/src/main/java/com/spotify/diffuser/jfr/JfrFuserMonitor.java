@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.jfr;
+
+import com.spotify.diffuser.fuser.FuserMonitor;
+
+/**
+ * Records every event dispatched through a named {@link com.spotify.diffuser.fuser.Fuser} as a
+ * {@code com.spotify.diffuser.FuserDispatch} event.
+ *
+ * <p>Listed in {@code META-INF/services}, but only installed when {@link
+ * DiffuserJfr#isAvailable()}, so that named Fusers cost nothing extra on JVMs without JFR.
+ */
+public final class JfrFuserMonitor implements FuserMonitor {
+  // Null when JFR is not available. The recorder itself is only part of the JDK 11 classes.
+  private final FuserMonitor recorder = DiffuserJfr.newFuserRecorder();
+
+  @Override
+  public void onDispatch(String name, Object event, long dispatchNanos) {
+    if (recorder != null) {
+      recorder.onDispatch(name, event, dispatchNanos);
+    }
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return recorder != null;
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.jfr;
+
+import com.spotify.diffuser.diffuser.DiffuserMonitor;
+import com.spotify.diffuser.fuser.FuserMonitor;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Java Flight Recorder events for Diffuser and Fuser.
+ *
+ * <p>Having this module on the classpath installs {@link JfrDiffuserMonitor} and {@link
+ * JfrFuserMonitor}, which record every run of a {@link
+ * com.spotify.diffuser.diffuser.CompiledDiffuser} with a named root as a {@code
+ * com.spotify.diffuser.DiffuserRun} event, and every event dispatched through a named {@link
+ * com.spotify.diffuser.fuser.Fuser} as a {@code com.spotify.diffuser.FuserDispatch} event. Both can
+ * be filtered by duration using their {@code minDuration} setting, see {@link DurationSetting}.
+ * Diffusers which are run without being compiled are not recorded, since they don't know where
+ * their root is.
+ */
+public final class DiffuserJfr {
+  private DiffuserJfr() {}
+
+  /** @return true if Diffuser and Fuser activity is recorded as JFR events on this JVM. */
+  public static boolean isAvailable() {
+    return FlightRecorder.isAvailable();
+  }
+
+  static DiffuserMonitor newDiffuserRecorder() {
+    return isAvailable() ? new DiffuserRunRecorder() : null;
+  }
+
+  static FuserMonitor newFuserRecorder() {
+    return isAvailable() ? new FuserDispatchRecorder() : null;
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.jfr;
+
+import com.spotify.diffuser.diffuser.DiffuserMonitor;
+
+/**
+ * Records every run of a named {@link com.spotify.diffuser.diffuser.CompiledDiffuser} as a {@code
+ * com.spotify.diffuser.DiffuserRun} event. {@link JfrDiffuserMonitor} forwards to it when JFR is
+ * available.
+ */
+final class DiffuserRunRecorder implements DiffuserMonitor {
+
+  @Override
+  public void onRun(String name, boolean changed, long checkNanos, long effectNanos) {
+    // Nodes are recorded as part of the run of their root.
+  }
+
+  @Override
+  public void onRootRun(String name, long durationNanos, int effectsRun, int nodesSkipped) {
+    final DiffuserRunEvent event = new DiffuserRunEvent();
+    event.runTime = durationNanos;
+    if (event.shouldCommit()) {
+      event.diffuser = name;
+      event.effectsRun = effectsRun;
+      event.nodesSkipped = nodesSkipped;
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.jfr;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.SettingControl;
+
+/**
+ * The {@code minDuration} setting of the events in this module. Runs and dispatches which take less
+ * time than the setting are not recorded, so that the events can stay enabled in production, e.g.
+ * with {@code recording.enable("com.spotify.diffuser.FuserDispatch").with("minDuration", "1 ms")},
+ * or the equivalent entry in a {@code .jfc} file.
+ *
+ * <p>Values are written like JFR's own thresholds, as a number followed by one of the units {@code
+ * ns}, {@code us}, {@code ms}, {@code s}, {@code m}, {@code h} or {@code d}. When several
+ * recordings are running, the shortest duration wins. The default is {@code 0 ns}, which records
+ * everything.
+ */
+public final class DurationSetting extends SettingControl {
+  private static final String DEFAULT = "0 ns";
+
+  private String value = DEFAULT;
+  private volatile long nanos;
+
+  @Override
+  public String combine(Set<String> values) {
+    String shortest = null;
+    long shortestNanos = Long.MAX_VALUE;
+    for (String candidate : values) {
+      final long candidateNanos = parse(candidate);
+      if (candidateNanos >= 0 && candidateNanos < shortestNanos) {
+        shortest = candidate;
+        shortestNanos = candidateNanos;
+      }
+    }
+    return shortest != null ? shortest : DEFAULT;
+  }
+
+  @Override
+  public void setValue(String value) {
+    final long parsed = parse(value);
+    if (parsed >= 0) {
+      this.value = value;
+      this.nanos = parsed;
+    }
+  }
+
+  @Override
+  public String getValue() {
+    return value;
+  }
+
+  boolean accepts(long durationNanos) {
+    return durationNanos >= nanos;
+  }
+
+  /** @return the duration in nanoseconds, or -1 if the value can't be parsed. */
+  static long parse(String value) {
+    final String trimmed = value.trim();
+    int split = 0;
+    while (split < trimmed.length() && Character.isDigit(trimmed.charAt(split))) {
+      split++;
+    }
+    if (split == 0) {
+      return -1;
+    }
+
+    final long amount;
+    try {
+      amount = Long.parseLong(trimmed.substring(0, split));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+
+    final TimeUnit unit = unit(trimmed.substring(split).trim());
+    return unit != null ? unit.toNanos(amount) : -1;
+  }
+
+  private static TimeUnit unit(String unit) {
+    switch (unit) {
+      case "ns":
+        return TimeUnit.NANOSECONDS;
+      case "us":
+        return TimeUnit.MICROSECONDS;
+      case "ms":
+        return TimeUnit.MILLISECONDS;
+      case "s":
+        return TimeUnit.SECONDS;
+      case "m":
+        return TimeUnit.MINUTES;
+      case "h":
+        return TimeUnit.HOURS;
+      case "d":
+        return TimeUnit.DAYS;
+      default:
+        return null;
+    }
+  }
+}
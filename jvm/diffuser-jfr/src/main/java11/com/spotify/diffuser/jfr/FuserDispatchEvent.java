@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.SettingDefinition;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.spotify.diffuser.FuserDispatch")
+@Label("Fuser Dispatch")
+@Description("An event dispatched through a named Fuser")
+@Category("Diffuser")
+@StackTrace(false)
+final class FuserDispatchEvent extends Event {
+
+  @Label("Fuser")
+  String fuser;
+
+  @Label("Event Type")
+  String eventType;
+
+  @Label("Dispatch Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long dispatchTime;
+
+  @Name("minDuration")
+  @Label("Minimum Duration")
+  @Description("Dispatches which take less time than this are not recorded")
+  @SettingDefinition
+  boolean minDuration(DurationSetting setting) {
+    return setting.accepts(dispatchTime);
+  }
+}
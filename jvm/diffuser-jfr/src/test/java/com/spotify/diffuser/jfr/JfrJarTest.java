@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import com.spotify.diffuser.diffuser.DiffuserMonitor;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import org.junit.Test;
+
+public class JfrJarTest {
+
+  @Test
+  public void installsTheMonitorsFromTheJar() throws Exception {
+    try (URLClassLoader loader = jarLoader()) {
+      final Object diffuserMonitor =
+          installed(loader, "com.spotify.diffuser.diffuser.DiffuserMonitors");
+      final Object fuserMonitor = installed(loader, "com.spotify.diffuser.fuser.FuserMonitors");
+
+      assertEquals(JfrDiffuserMonitor.class.getName(), diffuserMonitor.getClass().getName());
+      assertEquals(JfrFuserMonitor.class.getName(), fuserMonitor.getClass().getName());
+      assertSame(loader, diffuserMonitor.getClass().getClassLoader());
+      assertSame(loader, fuserMonitor.getClass().getClassLoader());
+
+      // The monitors are only enabled with a recorder, which needs the JDK 11 classes of the jar.
+      assertNotNull(recorderOf(diffuserMonitor));
+      assertNotNull(recorderOf(fuserMonitor));
+      assertEquals(true, diffuserMonitor.getClass().getMethod("isEnabled").invoke(diffuserMonitor));
+      assertEquals(true, fuserMonitor.getClass().getMethod("isEnabled").invoke(fuserMonitor));
+    }
+  }
+
+  // Loads the jar next to the core classes only, so that nothing else can provide a monitor.
+  private static URLClassLoader jarLoader() throws Exception {
+    final String jar = System.getProperty("diffuser.jfr.jar");
+    assertNotNull("diffuser.jfr.jar is not set", jar);
+    final URL core = DiffuserMonitor.class.getProtectionDomain().getCodeSource().getLocation();
+    return new URLClassLoader(
+        new URL[] {new File(jar).toURI().toURL(), core}, ClassLoader.getPlatformClassLoader());
+  }
+
+  private static Object installed(ClassLoader loader, String monitors) throws Exception {
+    final Object monitor =
+        Class.forName(monitors, true, loader).getMethod("installed").invoke(null);
+    assertNotNull(monitors + " found no monitor", monitor);
+    return monitor;
+  }
+
+  private static Object recorderOf(Object monitor) throws Exception {
+    final Field recorder = monitor.getClass().getDeclaredField("recorder");
+    recorder.setAccessible(true);
+    return recorder.get(monitor);
+  }
+}
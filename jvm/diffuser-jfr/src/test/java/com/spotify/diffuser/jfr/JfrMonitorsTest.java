@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.jfr;
+
+import static com.spotify.diffuser.diffuser.CompiledDiffuser.compile;
+import static com.spotify.diffuser.diffuser.Diffuser.into;
+import static com.spotify.diffuser.diffuser.Diffuser.intoAll;
+import static com.spotify.diffuser.diffuser.Diffuser.named;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.spotify.diffuser.Effect;
+import com.spotify.diffuser.diffuser.CompiledDiffuser;
+import com.spotify.diffuser.fuser.Fuser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+public class JfrMonitorsTest {
+
+  @Test
+  public void isAvailable() {
+    assertTrue(DiffuserJfr.isAvailable());
+  }
+
+  @Test
+  public void recordsRunsOfNamedCompiledDiffusers() throws IOException {
+    final CompiledDiffuser<Integer> diffuser =
+        compile(named("jfr.root", intoAll(into(a -> {}), into((Integer a) -> {}))));
+
+    final List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("com.spotify.diffuser.DiffuserRun");
+      recording.start();
+      diffuser.run(1);
+      diffuser.run(1);
+      recording.stop();
+      events = read(recording, "jfr.root");
+    }
+
+    assertEquals(2, events.size());
+    assertEquals(2, events.get(0).getInt("effectsRun"));
+    assertEquals(0, events.get(0).getInt("nodesSkipped"));
+    assertEquals(0, events.get(1).getInt("effectsRun"));
+    assertEquals(3, events.get(1).getInt("nodesSkipped"));
+    assertTrue(events.get(0).getDuration("runTime").toNanos() > 0);
+  }
+
+  @Test
+  public void recordsEventsDispatchedThroughNamedFusers() throws IOException {
+    final List<Effect<Object>> outputs = new ArrayList<>();
+    final Fuser<Object> fuser =
+        Fuser.named(
+            "jfr.source",
+            Fuser.from(
+                effect -> {
+                  outputs.add(effect);
+                  return () -> outputs.remove(effect);
+                }));
+
+    final List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("com.spotify.diffuser.FuserDispatch");
+      recording.start();
+      fuser.connect(event -> {});
+      outputs.get(0).run("hello");
+      outputs.get(0).run(42);
+      recording.stop();
+      events = read(recording, "jfr.source");
+    }
+
+    assertEquals(
+        "[java.lang.String, java.lang.Integer]",
+        events.stream().map(e -> e.getString("eventType")).collect(Collectors.toList()).toString());
+  }
+
+  @Test
+  public void leavesOutRunsShorterThanTheMinimumDuration() throws IOException {
+    final CompiledDiffuser<Integer> diffuser = compile(named("jfr.fast", into(a -> {})));
+
+    final List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("com.spotify.diffuser.DiffuserRun").with("minDuration", "1 h");
+      recording.start();
+      diffuser.run(1);
+      recording.stop();
+      events = read(recording, "jfr.fast");
+    }
+
+    assertEquals(0, events.size());
+  }
+
+  @Test
+  public void parsesDurations() {
+    assertEquals(0, DurationSetting.parse("0 ns"));
+    assertEquals(1_500, DurationSetting.parse("1500ns"));
+    assertEquals(20_000_000, DurationSetting.parse("20 ms"));
+    assertEquals(2_000_000_000, DurationSetting.parse(" 2 s "));
+    assertEquals(-1, DurationSetting.parse("2 weeks"));
+    assertEquals(-1, DurationSetting.parse("ms"));
+  }
+
+  private static List<RecordedEvent> read(Recording recording, String name) throws IOException {
+    final Path file = Files.createTempFile("diffuser", ".jfr");
+    try {
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file).stream()
+          .filter(e -> name.equals(e.getString(e.hasField("diffuser") ? "diffuser" : "fuser")))
+          .collect(Collectors.toList());
+    } finally {
+      Files.delete(file);
+    }
+  }
+}
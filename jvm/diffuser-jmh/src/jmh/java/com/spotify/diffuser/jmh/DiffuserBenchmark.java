@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.jmh;
+
+import static com.spotify.diffuser.diffuser.Diffuser.into;
+import static com.spotify.diffuser.diffuser.Diffuser.intoAll;
+import static com.spotify.diffuser.diffuser.Diffuser.intoAllWhen;
+import static com.spotify.diffuser.diffuser.Diffuser.intoAlways;
+import static com.spotify.diffuser.diffuser.Diffuser.intoVersioned;
+import static com.spotify.diffuser.diffuser.Diffuser.intoWhen;
+import static com.spotify.diffuser.diffuser.Diffuser.map;
+import static com.spotify.diffuser.diffuser.Diffuser.mapToInt;
+
+import com.spotify.diffuser.diffuser.CompiledDiffuser;
+import com.spotify.diffuser.diffuser.Diffuser;
+import com.spotify.diffuser.diffuser.DirtyMask;
+import com.spotify.diffuser.diffuser.IntDiffuser;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the cost of a single {@link Diffuser#run(Object)} on trees shaped like the ones used for
+ * rendering. Every invocation alternates between two models, so the {@code change} parameter
+ * decides how much of the tree sees a different value on each run.
+ */
+public class DiffuserBenchmark {
+
+  /** The part of the model that differs between the two alternating models. */
+  public enum Change {
+    /** The models are equal, but not the same instances. */
+    NONE,
+    /** A single leaf differs. */
+    ONE,
+    /** Every leaf differs. */
+    ALL
+  }
+
+  /** A chain of {@code depth} nested {@link Diffuser#map} calls ending in an {@code into}. */
+  @State(Scope.Thread)
+  public static class DeepMap {
+    @Param({"1", "10", "50"})
+    public int depth;
+
+    @Param({"NONE", "ONE"})
+    public Change change;
+
+    int sink;
+    int runs;
+    Diffuser<Node> diffuser;
+    CompiledDiffuser<Node> compiled;
+    CompiledDiffuser<Node> unsynchronized;
+    Node[] models;
+
+    @Setup
+    public void setUp() {
+      Diffuser<Node> chain = map(node -> node.value, into(value -> sink += value));
+      for (int i = 0; i < depth; i++) {
+        chain = map(node -> node.child, chain);
+      }
+      diffuser = chain;
+      compiled = CompiledDiffuser.compile(chain);
+      unsynchronized = CompiledDiffuser.unsynchronized(chain);
+      models = new Node[] {Node.chain(depth, 1), Node.chain(depth, change == Change.NONE ? 1 : 2)};
+    }
+  }
+
+  /** An {@code intoAll} with {@code width} children, each mapping out one field of the model. */
+  @State(Scope.Thread)
+  public static class WideIntoAll {
+    @Param({"10", "100", "1000"})
+    public int width;
+
+    @Param({"NONE", "ONE", "ALL"})
+    public Change change;
+
+    int sink;
+    int runs;
+    Diffuser<Record> diffuser;
+    CompiledDiffuser<Record> compiled;
+    Diffuser<Record> primitive;
+    Diffuser<Record> masked;
+    CompiledDiffuser<Record> maskedCompiled;
+    Record[] models;
+
+    @Setup
+    public void setUp() {
+      List<Diffuser<Record>> children = new ArrayList<>(width);
+      List<Diffuser<Record>> primitiveChildren = new ArrayList<>(width);
+      List<Diffuser<Record>> maskedChildren = new ArrayList<>(width);
+      DirtyMask<Record> mask = new DirtyMask<>(width, Record::compare);
+      for (int i = 0; i < width; i++) {
+        final int field = i;
+        children.add(map(record -> record.fields[field], into(value -> sink += value)));
+        primitiveChildren.add(
+            mapToInt(record -> record.fields[field], IntDiffuser.into(value -> sink += value)));
+        maskedChildren.add(
+            intoWhen(
+                mask.changed(field),
+                mapToInt(
+                    record -> record.fields[field],
+                    IntDiffuser.intoAlways(value -> sink += value))));
+      }
+      diffuser = intoAll(children);
+      compiled = CompiledDiffuser.compile(diffuser);
+      primitive = intoAll(primitiveChildren);
+      masked = intoAllWhen(mask, maskedChildren);
+      maskedCompiled = CompiledDiffuser.compile(masked);
+      models = Record.pair(width, change);
+    }
+  }
+
+  /**
+   * An {@code intoWhen} whose {@code DidChange} compares every field of the model, and an {@code
+   * intoVersioned} which only compares the versions of the models.
+   */
+  @State(Scope.Thread)
+  public static class CostlyIntoWhen {
+    @Param({"10", "1000"})
+    public int width;
+
+    @Param({"NONE", "ONE"})
+    public Change change;
+
+    int sink;
+    int runs;
+    Diffuser<Record> diffuser;
+    Diffuser<Record> versioned;
+    Record[] models;
+
+    @Setup
+    public void setUp() {
+      diffuser =
+          intoWhen(
+              (a, b) -> !Arrays.equals(a.fields, b.fields),
+              intoAlways(record -> sink += record.fields[0]));
+      versioned = intoVersioned(record -> record.version, record -> sink += record.fields[0]);
+      models = Record.pair(width, change);
+    }
+  }
+
+  @Benchmark
+  public int deepMapChain(DeepMap state) {
+    state.diffuser.run(state.models[state.runs++ & 1]);
+    return state.sink;
+  }
+
+  @Benchmark
+  public int deepMapChainCompiled(DeepMap state) {
+    state.compiled.run(state.models[state.runs++ & 1]);
+    return state.sink;
+  }
+
+  @Benchmark
+  public int deepMapChainUnsynchronized(DeepMap state) {
+    state.unsynchronized.run(state.models[state.runs++ & 1]);
+    return state.sink;
+  }
+
+  @Benchmark
+  public int wideIntoAll(WideIntoAll state) {
+    state.diffuser.run(state.models[state.runs++ & 1]);
+    return state.sink;
+  }
+
+  @Benchmark
+  public int wideIntoAllCompiled(WideIntoAll state) {
+    state.compiled.run(state.models[state.runs++ & 1]);
+    return state.sink;
+  }
+
+  @Benchmark
+  public int wideIntoAllPrimitive(WideIntoAll state) {
+    state.primitive.run(state.models[state.runs++ & 1]);
+    return state.sink;
+  }
+
+  @Benchmark
+  public int wideIntoAllMasked(WideIntoAll state) {
+    state.masked.run(state.models[state.runs++ & 1]);
+    return state.sink;
+  }
+
+  @Benchmark
+  public int wideIntoAllMaskedCompiled(WideIntoAll state) {
+    state.maskedCompiled.run(state.models[state.runs++ & 1]);
+    return state.sink;
+  }
+
+  @Benchmark
+  public int costlyIntoWhen(CostlyIntoWhen state) {
+    state.diffuser.run(state.models[state.runs++ & 1]);
+    return state.sink;
+  }
+
+  @Benchmark
+  public int versionedIntoWhen(CostlyIntoWhen state) {
+    state.versioned.run(state.models[state.runs++ & 1]);
+    return state.sink;
+  }
+
+  static final class Node {
+    final Node child;
+    final int value;
+
+    private Node(Node child, int value) {
+      this.child = child;
+      this.value = value;
+    }
+
+    static Node chain(int depth, int leafValue) {
+      Node node = new Node(null, leafValue);
+      for (int i = 0; i < depth; i++) {
+        node = new Node(node, 0);
+      }
+      return node;
+    }
+  }
+
+  static final class Record {
+    final int[] fields;
+    final long version;
+
+    private Record(int[] fields, long version) {
+      this.fields = fields;
+      this.version = version;
+    }
+
+    static void compare(Record previous, Record current, DirtyMask<Record> mask) {
+      for (int i = 0; i < current.fields.length; i++) {
+        if (previous.fields[i] != current.fields[i]) {
+          mask.set(i);
+        }
+      }
+    }
+
+    static Record[] pair(int width, Change change) {
+      int[] first = new int[width];
+      int[] second = new int[width];
+      for (int i = 0; i < width; i++) {
+        first[i] = i;
+        second[i] = change == Change.ALL ? -i - 1 : i;
+      }
+      if (change == Change.ONE) {
+        second[width / 2] = -1;
+      }
+      return new Record[] {new Record(first, 0), new Record(second, change == Change.NONE ? 0 : 1)};
+    }
+  }
+}
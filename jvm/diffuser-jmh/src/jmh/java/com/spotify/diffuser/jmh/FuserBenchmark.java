@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.jmh;
+
+import static com.spotify.diffuser.fuser.Fuser.extract;
+import static com.spotify.diffuser.fuser.Fuser.extractConstant;
+import static com.spotify.diffuser.fuser.Fuser.extractPooled;
+import static com.spotify.diffuser.fuser.Fuser.extractUnlessNull;
+import static com.spotify.diffuser.fuser.Fuser.from;
+import static com.spotify.diffuser.fuser.Fuser.fromAll;
+import static com.spotify.diffuser.fuser.Fuser.fromPooled;
+
+import com.spotify.diffuser.Effect;
+import com.spotify.diffuser.fuser.Disposable;
+import com.spotify.diffuser.fuser.EventPool;
+import com.spotify.diffuser.fuser.Fuser;
+import com.spotify.diffuser.fuser.PooledEvent;
+import com.spotify.diffuser.fuser.Source;
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the cost of connecting to, and dispatching events through, Fusers built from nested
+ * {@link Fuser#fromAll} and {@link Fuser#extract} calls, and from chains of extract operators, and
+ * the cost of a gesture stream with and without {@link Fuser#fromPooled}. Run with {@code -prof gc}
+ * to see the allocations per dispatch.
+ */
+public class FuserBenchmark {
+
+  /**
+   * A Fuser which is {@code depth} levels of alternating {@code extract} and {@code fromAll} deep,
+   * where every {@code fromAll} merges the nested level with {@code width - 1} idle sources.
+   */
+  @State(Scope.Thread)
+  public static class Stack {
+    @Param({"1", "6", "20"})
+    public int depth;
+
+    @Param({"1", "10"})
+    public int width;
+
+    int sink;
+    // Emitted over and over, so that dispatching does not box a new Integer every time.
+    final Integer event = 1000;
+    ManualSource source;
+    Fuser<Integer> fuser;
+    Disposable connection;
+
+    @Setup
+    public void setUp() {
+      source = new ManualSource();
+      Fuser<Integer> stack = from(source);
+      for (int i = 0; i < depth; i++) {
+        List<Fuser<Integer>> siblings = new ArrayList<>(width);
+        siblings.add(extract(n -> n, stack));
+        for (int j = 1; j < width; j++) {
+          siblings.add(from(new ManualSource()));
+        }
+        stack = fromAll(siblings);
+      }
+      fuser = extractUnlessNull(n -> n, stack);
+      connection = fuser.connect(n -> sink += n);
+    }
+
+    @TearDown
+    public void tearDown() {
+      connection.dispose();
+    }
+  }
+
+  /**
+   * A Fuser which is {@code depth} levels of {@code extract}, {@code extractUnlessNull} and {@code
+   * extractConstant} deep, like the Fusers which turn view events into domain events. When {@code
+   * fused} is false, every level is wrapped in a Source of its own, which keeps the extracts from
+   * being fused into one step, as a baseline for the fused chain.
+   */
+  @State(Scope.Thread)
+  public static class Chain {
+    @Param({"1", "6", "20"})
+    public int depth;
+
+    @Param({"true", "false"})
+    public boolean fused;
+
+    int sink;
+    final Integer event = 1000;
+    ManualSource source;
+    Fuser<Integer> fuser;
+    Disposable connection;
+
+    @Setup
+    public void setUp() {
+      source = new ManualSource();
+      Fuser<Integer> chain = from(source);
+      for (int i = 0; i < depth; i++) {
+        if (!fused) {
+          chain = from(chain::connect);
+        }
+        switch (i % 3) {
+          case 0:
+            chain = extract(n -> n, chain);
+            break;
+          case 1:
+            chain = extractUnlessNull(n -> n, chain);
+            break;
+          default:
+            chain = extractConstant(i, chain);
+            break;
+        }
+      }
+      fuser = chain;
+      connection = fuser.connect(n -> sink += n);
+    }
+
+    @TearDown
+    public void tearDown() {
+      connection.dispose();
+    }
+  }
+
+  /**
+   * A touch Fuser which turns every touch into a scroll offset, either allocating a new event for
+   * both, or recycling them through an {@link EventPool}.
+   */
+  @State(Scope.Thread)
+  public static class Gesture {
+    int sink;
+    int events;
+    Effect<Touch> touches;
+    Effect<Touch> pooledTouches;
+    EventPool<Touch> touchPool = new EventPool<>(Touch::new, 2, false);
+    EventPool<Scroll> scrollPool = new EventPool<>(Scroll::new, 2, false);
+    List<Disposable> connections = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+      final Fuser<Scroll> scrolls =
+          extract(
+              (Touch touch) -> new Scroll(touch.y - 10), from(effect -> connect(effect, false)));
+      final Fuser<Scroll> pooledScrolls =
+          extractPooled(
+              (touch, into) -> into.offset = touch.y - 10,
+              scrollPool,
+              fromPooled(effect -> connect(effect, true), touchPool));
+      connections.add(scrolls.connect(scroll -> sink += scroll.offset));
+      connections.add(pooledScrolls.connect(scroll -> sink += scroll.offset));
+    }
+
+    private Disposable connect(Effect<Touch> effect, boolean pooled) {
+      if (pooled) {
+        pooledTouches = effect;
+      } else {
+        touches = effect;
+      }
+      return () -> {};
+    }
+
+    @TearDown
+    public void tearDown() {
+      for (Disposable connection : connections) {
+        connection.dispose();
+      }
+    }
+  }
+
+  static final class Touch extends PooledEvent {
+    int x;
+    int y;
+  }
+
+  static final class Scroll extends PooledEvent {
+    int offset;
+
+    Scroll() {}
+
+    Scroll(int offset) {
+      this.offset = offset;
+    }
+  }
+
+  @Benchmark
+  public int connectAndDispose(Stack state) {
+    Disposable disposable = state.fuser.connect(n -> state.sink += n);
+    disposable.dispose();
+    return state.sink;
+  }
+
+  @Benchmark
+  public int dispatch(Stack state) {
+    state.source.emit(state.event);
+    return state.sink;
+  }
+
+  @Benchmark
+  public int connectAndDisposeChain(Chain state) {
+    Disposable disposable = state.fuser.connect(n -> state.sink += n);
+    disposable.dispose();
+    return state.sink;
+  }
+
+  @Benchmark
+  public int dispatchChain(Chain state) {
+    state.source.emit(state.event);
+    return state.sink;
+  }
+
+  @Benchmark
+  public int dispatchGesture(Gesture state) {
+    final Touch touch = new Touch();
+    touch.x = 5;
+    touch.y = state.events++;
+    state.touches.run(touch);
+    return state.sink;
+  }
+
+  @Benchmark
+  public int dispatchPooledGesture(Gesture state) {
+    final Touch touch = state.touchPool.obtain();
+    touch.x = 5;
+    touch.y = state.events++;
+    state.pooledTouches.run(touch);
+    return state.sink;
+  }
+
+  /** A Source which emits whenever {@link #emit(Integer)} is called, to any connected effects. */
+  static final class ManualSource implements Source<Integer> {
+    private final List<Effect<Integer>> effects = new ArrayList<>();
+
+    void emit(Integer event) {
+      for (int i = 0; i < effects.size(); i++) {
+        effects.get(i).run(event);
+      }
+    }
+
+    @Override
+    public Disposable connect(Effect<Integer> effect) {
+      effects.add(effect);
+      return () -> effects.remove(effect);
+    }
+  }
+}
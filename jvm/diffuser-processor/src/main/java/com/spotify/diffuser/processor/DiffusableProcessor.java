@@ -0,0 +1,468 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a {@code <Model>Diffusers} class for every class annotated with {@code
+ * com.spotify.diffuser.diffuser.Diffusable}, with a builder of per-property Diffusers.
+ *
+ * <p>Every property is projected by a dedicated Function which calls its accessor directly, so the
+ * JIT sees a single receiver type at each call site. Properties of type int, long, double and
+ * boolean go through the primitive Diffusers, so they are neither boxed nor compared with equals.
+ */
+public final class DiffusableProcessor extends AbstractProcessor {
+  static final String DIFFUSABLE = "com.spotify.diffuser.diffuser.Diffusable";
+
+  private static final String PACKAGE = "com.spotify.diffuser.diffuser";
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    return Collections.singleton(DIFFUSABLE);
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (TypeElement annotation : annotations) {
+      for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+        if (element.getKind() != ElementKind.CLASS && element.getKind() != ElementKind.INTERFACE) {
+          error(element, "@Diffusable can only be applied to classes and interfaces");
+          continue;
+        }
+        process((TypeElement) element);
+      }
+    }
+    return true;
+  }
+
+  private void process(TypeElement model) {
+    if (!model.getTypeParameters().isEmpty()) {
+      error(model, "@Diffusable classes can't have type parameters");
+      return;
+    }
+    for (Element e = model; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+      if (e.getModifiers().contains(Modifier.PRIVATE)) {
+        error(model, "@Diffusable classes must be visible to their package");
+        return;
+      }
+    }
+
+    final Map<String, Property> properties = new LinkedHashMap<>();
+    // Overrides of hashCode() and toString() aren't properties either.
+    final Set<String> objectMethods = new HashSet<>();
+    final TypeElement object = processingEnv.getElementUtils().getTypeElement("java.lang.Object");
+    for (ExecutableElement method : ElementFilter.methodsIn(object.getEnclosedElements())) {
+      objectMethods.add(method.getSimpleName().toString());
+    }
+
+    for (ExecutableElement method :
+        ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(model))) {
+      if (objectMethods.contains(method.getSimpleName().toString()) || !isAccessor(method)) {
+        continue;
+      }
+
+      final Property property = new Property(method);
+      final Property existing = properties.put(property.name, property);
+      if (existing != null) {
+        error(
+            method,
+            "@Diffusable property "
+                + property.name
+                + " has two accessors, "
+                + existing.accessor
+                + "() and "
+                + property.accessor
+                + "()");
+        return;
+      }
+    }
+
+    if (properties.isEmpty()) {
+      error(model, "@Diffusable classes must have at least one accessor");
+      return;
+    }
+
+    final PackageElement pkg = processingEnv.getElementUtils().getPackageOf(model);
+    final String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+    final String className = generatedName(model);
+    final String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+    try {
+      final JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, model);
+      try (Writer writer = file.openWriter()) {
+        writer.write(generate(packageName, className, model, properties));
+      }
+    } catch (IOException e) {
+      error(model, "Could not write " + qualifiedName + ": " + e.getMessage());
+    }
+  }
+
+  private static boolean isAccessor(ExecutableElement method) {
+    final Set<Modifier> modifiers = method.getModifiers();
+    return !modifiers.contains(Modifier.PRIVATE)
+        && !modifiers.contains(Modifier.STATIC)
+        && method.getParameters().isEmpty()
+        && method.getTypeParameters().isEmpty()
+        && method.getReturnType().getKind() != TypeKind.VOID;
+  }
+
+  // Track -> TrackDiffusers, Outer.Track -> Outer_TrackDiffusers
+  private static String generatedName(TypeElement model) {
+    String name = model.getSimpleName().toString();
+    for (Element e = model.getEnclosingElement();
+        e.getKind() != ElementKind.PACKAGE;
+        e = e.getEnclosingElement()) {
+      name = e.getSimpleName() + "_" + name;
+    }
+    return name + "Diffusers";
+  }
+
+  private static String generate(
+      String packageName, String className, TypeElement model, Map<String, Property> properties) {
+    final String modelName = model.getQualifiedName().toString();
+    final StringBuilder out = new StringBuilder();
+
+    out.append("// Generated by ").append(DiffusableProcessor.class.getName()).append(".\n");
+    if (!packageName.isEmpty()) {
+      out.append("package ").append(packageName).append(";\n\n");
+    }
+    out.append("/** Builds Diffusers for the properties of {@link ")
+        .append(modelName)
+        .append("}. */\n")
+        .append("public final class ")
+        .append(className)
+        .append(" {\n\n");
+
+    for (Property property : properties.values()) {
+      out.append("  private static final ")
+          .append(property.kind.function)
+          .append("<")
+          .append(modelName)
+          .append(property.kind.boxed ? ", " + property.type : "")
+          .append("> ")
+          .append(property.constant)
+          .append(" =\n      new ")
+          .append(property.kind.function)
+          .append("<")
+          .append(modelName)
+          .append(property.kind.boxed ? ", " + property.type : "")
+          .append(">() {\n        @Override\n        public ")
+          .append(property.kind.boxed ? property.type : property.kind.primitive)
+          .append(" ")
+          .append(property.kind.apply)
+          .append("(")
+          .append(modelName)
+          .append(" value) {\n          return value.")
+          .append(property.accessor)
+          .append("();\n        }\n      };\n\n");
+    }
+
+    out.append("  /** The index of every property in a {@link ")
+        .append(PACKAGE)
+        .append(".DirtyMask}. */\n  public static final class Field {\n");
+    int index = 0;
+    for (Property property : properties.values()) {
+      out.append("    public static final int ")
+          .append(property.constant)
+          .append(" = ")
+          .append(index++)
+          .append(";\n");
+    }
+    out.append("\n    private Field() {}\n  }\n\n");
+
+    out.append("  private static final class Comparator\n      implements ")
+        .append(PACKAGE)
+        .append(".DirtyMask.FieldComparator<")
+        .append(modelName)
+        .append("> {\n    @Override\n    public void compare(\n        ")
+        .append(modelName)
+        .append(" previous, ")
+        .append(modelName)
+        .append(" current, ")
+        .append(PACKAGE)
+        .append(".DirtyMask<")
+        .append(modelName)
+        .append("> mask) {\n");
+    for (Property property : properties.values()) {
+      final String previous = "previous." + property.accessor + "()";
+      final String current = "current." + property.accessor + "()";
+      out.append("      if (");
+      switch (property.kind) {
+        case OBJECT:
+          out.append("changed(").append(previous).append(", ").append(current).append(")");
+          break;
+        case DOUBLE:
+          out.append("Double.doubleToLongBits(")
+              .append(previous)
+              .append(") != Double.doubleToLongBits(")
+              .append(current)
+              .append(")");
+          break;
+        default:
+          out.append(previous).append(" != ").append(current);
+          break;
+      }
+      out.append(") {\n        mask.set(Field.").append(property.constant).append(");\n      }\n");
+    }
+    out.append("    }\n\n")
+        .append("    private static boolean changed(Object previous, Object current) {\n")
+        .append("      return previous != current")
+        .append(" && (previous == null || !previous.equals(current));\n")
+        .append("    }\n  }\n\n");
+
+    out.append("  private ")
+        .append(className)
+        .append("() {}\n\n")
+        .append("  /** @return The number of properties, and of fields in a DirtyMask. */\n")
+        .append("  public static int fieldCount() {\n    return ")
+        .append(properties.size())
+        .append(";\n  }\n\n")
+        .append("  /** @return A comparator which sets the field of every changed property. */\n")
+        .append("  public static ")
+        .append(PACKAGE)
+        .append(".DirtyMask.FieldComparator<")
+        .append(modelName)
+        .append("> comparator() {\n    return new Comparator();\n  }\n\n")
+        .append("  /** @return A new builder, without any properties. */\n")
+        .append("  public static Builder builder() {\n    return new Builder();\n  }\n\n")
+        .append("  /** Collects the Diffusers of the properties of {@link ")
+        .append(modelName)
+        .append("}. */\n")
+        .append("  public static final class Builder {\n")
+        .append("    private final java.util.List<")
+        .append(PACKAGE)
+        .append(".Diffuser<")
+        .append(modelName)
+        .append(">> children = new java.util.ArrayList<>();\n")
+        .append(
+            "    private final java.util.List<Integer> fields = new java.util.ArrayList<>();\n\n")
+        .append("    private Builder() {}\n");
+
+    for (Property property : properties.values()) {
+      final String diffuser = property.kind.diffuser(property.type);
+      out.append("\n    /** Run an effect whenever {@link ")
+          .append(modelName)
+          .append("#")
+          .append(property.accessor)
+          .append("()} changes. */\n    public Builder ")
+          .append(property.name)
+          .append("(")
+          .append(property.kind.effect(property.type))
+          .append(" effect) {\n      return ")
+          .append(property.name)
+          .append("(")
+          .append(
+              property.kind.boxed ? PACKAGE + ".Diffuser.<" + property.type + ">" : diffuser + ".")
+          .append("into(effect));\n    }\n\n")
+          .append("    /** Run a Diffuser with {@link ")
+          .append(modelName)
+          .append("#")
+          .append(property.accessor)
+          .append("()}. */\n    public Builder ")
+          .append(property.name)
+          .append("(")
+          .append(diffuser)
+          .append(" diffuser) {\n      fields.add(Field.")
+          .append(property.constant)
+          .append(");\n      children.add(")
+          .append(PACKAGE)
+          .append(".Diffuser.")
+          .append(property.kind.map)
+          .append("(")
+          .append(property.constant)
+          .append(", diffuser));\n      return this;\n    }\n");
+    }
+
+    out.append("\n    /** @return A Diffuser which runs all properties added so far. */\n")
+        .append("    public ")
+        .append(PACKAGE)
+        .append(".Diffuser<")
+        .append(modelName)
+        .append("> build() {\n      return ")
+        .append(PACKAGE)
+        .append(".Diffuser.intoAll(new java.util.ArrayList<>(children));\n    }\n\n")
+        .append("    /**\n")
+        .append(
+            "     * @return A Diffuser which compares the model once per run, and only runs the\n")
+        .append("     *     properties which changed, see {@link ")
+        .append(PACKAGE)
+        .append(".DirtyMask}.\n     */\n")
+        .append("    public ")
+        .append(PACKAGE)
+        .append(".Diffuser<")
+        .append(modelName)
+        .append("> buildMasked() {\n      final ")
+        .append(PACKAGE)
+        .append(".DirtyMask<")
+        .append(modelName)
+        .append("> mask =\n          new ")
+        .append(PACKAGE)
+        .append(".DirtyMask<>(fieldCount(), comparator());\n      final java.util.List<")
+        .append(PACKAGE)
+        .append(".Diffuser<")
+        .append(modelName)
+        .append(">> masked = new java.util.ArrayList<>();\n")
+        .append("      for (int i = 0; i < children.size(); i++) {\n")
+        .append("        masked.add(")
+        .append(PACKAGE)
+        .append(".Diffuser.intoWhen(mask.<")
+        .append(modelName)
+        .append(">changed(fields.get(i)), children.get(i)));\n      }\n      return ")
+        .append(PACKAGE)
+        .append(".Diffuser.intoAllWhen(mask, masked);\n    }\n  }\n}\n");
+    return out.toString();
+  }
+
+  private void error(Element element, String message) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+
+  /** How the values of a property are projected, compared and passed to effects. */
+  private enum Kind {
+    INT("int", "Int"),
+    LONG("long", "Long"),
+    DOUBLE("double", "Double"),
+    BOOLEAN("boolean", "Boolean"),
+    OBJECT(null, null);
+
+    final String primitive;
+    final boolean boxed;
+    final String function;
+    final String apply;
+    final String map;
+    private final String prefix;
+
+    Kind(String primitive, String prefix) {
+      this.primitive = primitive;
+      this.prefix = prefix;
+      this.boxed = primitive == null;
+      this.function = "com.spotify.diffuser." + (boxed ? "Function" : "To" + prefix + "Function");
+      this.apply = boxed ? "apply" : "applyAs" + prefix;
+      this.map = boxed ? "map" : "mapTo" + prefix;
+    }
+
+    String effect(String type) {
+      return boxed
+          ? "com.spotify.diffuser.Effect<" + type + ">"
+          : "com.spotify.diffuser." + prefix + "Effect";
+    }
+
+    String diffuser(String type) {
+      return boxed ? PACKAGE + ".Diffuser<" + type + ">" : PACKAGE + "." + prefix + "Diffuser";
+    }
+
+    static Kind of(TypeMirror type) {
+      switch (type.getKind()) {
+        case BYTE:
+        case SHORT:
+        case CHAR:
+        case INT:
+          return INT;
+        case LONG:
+          return LONG;
+        case FLOAT:
+        case DOUBLE:
+          return DOUBLE;
+        case BOOLEAN:
+          return BOOLEAN;
+        default:
+          return OBJECT;
+      }
+    }
+  }
+
+  private static final class Property {
+    final String accessor;
+    final String name;
+    final String constant;
+    final String type;
+    final Kind kind;
+
+    Property(ExecutableElement method) {
+      final TypeMirror returnType = method.getReturnType();
+      this.accessor = method.getSimpleName().toString();
+      this.kind = Kind.of(returnType);
+      this.type = returnType.getKind().isPrimitive() ? kind.primitive : returnType.toString();
+      this.name = propertyName(accessor, returnType.getKind() == TypeKind.BOOLEAN);
+      this.constant = constantName(name);
+    }
+
+    private static String propertyName(String accessor, boolean isBoolean) {
+      if (hasPrefix(accessor, "get")) {
+        return decapitalize(accessor.substring(3));
+      }
+      if (isBoolean && hasPrefix(accessor, "is")) {
+        return decapitalize(accessor.substring(2));
+      }
+      return accessor;
+    }
+
+    private static boolean hasPrefix(String accessor, String prefix) {
+      return accessor.length() > prefix.length()
+          && accessor.startsWith(prefix)
+          && Character.isUpperCase(accessor.charAt(prefix.length()));
+    }
+
+    private static String decapitalize(String name) {
+      final String result = Character.toLowerCase(name.charAt(0)) + name.substring(1);
+      return SourceVersion.isKeyword(result) ? name : result;
+    }
+
+    // trackTitle -> TRACK_TITLE
+    private static String constantName(String name) {
+      final StringBuilder result = new StringBuilder();
+      for (int i = 0; i < name.length(); i++) {
+        final char c = name.charAt(i);
+        if (Character.isUpperCase(c) && i > 0) {
+          result.append('_');
+        }
+        result.append(Character.toUpperCase(c));
+      }
+      return result.toString();
+    }
+  }
+}
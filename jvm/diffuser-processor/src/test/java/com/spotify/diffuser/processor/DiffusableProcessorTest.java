@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.junit.Test;
+
+public class DiffusableProcessorTest {
+
+  @Test
+  public void generatesOneBuilderMethodPairPerProperty() {
+    final Result result =
+        compile(
+            "test.Model",
+            "package test;",
+            "@com.spotify.diffuser.diffuser.Diffusable",
+            "public interface Model {",
+            "  String getTitle();",
+            "  short count();",
+            "  float ratio();",
+            "  boolean isEnabled();",
+            "  java.util.List<String> tags();",
+            "  void ignored();",
+            "  String ignored(int parameter);",
+            "  static String ignoredStatic() { return null; }",
+            "}");
+
+    assertEquals(Collections.emptyList(), result.errors);
+    final String generated = result.source("test.ModelDiffusers");
+    assertTrue(generated.contains("public Builder title(com.spotify.diffuser.Effect<"));
+    assertTrue(generated.contains("public Builder count(com.spotify.diffuser.IntEffect effect)"));
+    assertTrue(generated.contains("public Builder ratio(com.spotify.diffuser.DoubleEffect"));
+    assertTrue(generated.contains("public Builder enabled(com.spotify.diffuser.BooleanEffect"));
+    assertTrue(generated.contains("java.util.List<java.lang.String>"));
+    assertTrue(generated.contains("Diffuser.mapToInt(COUNT, diffuser)"));
+    assertTrue(!generated.contains("ignored"));
+  }
+
+  @Test
+  public void namesGeneratedClassesOfNestedModelsAfterTheirOuterClasses() {
+    final Result result =
+        compile(
+            "test.Outer",
+            "package test;",
+            "public class Outer {",
+            "  @com.spotify.diffuser.diffuser.Diffusable",
+            "  static class Inner {",
+            "    int value() { return 1; }",
+            "    @Override public int hashCode() { return 1; }",
+            "    @Override public String toString() { return \"\"; }",
+            "  }",
+            "}");
+
+    assertEquals(Collections.emptyList(), result.errors);
+    final String generated = result.source("test.Outer_InnerDiffusers");
+    assertTrue(generated.contains("public Builder value(com.spotify.diffuser.IntEffect effect)"));
+    assertTrue(!generated.contains("hashCode"));
+    assertTrue(!generated.contains("toString"));
+  }
+
+  @Test
+  public void rejectsModelsItCantGenerateFor() {
+    assertEquals(
+        Collections.singletonList("@Diffusable classes must be visible to their package"),
+        compile(
+                "test.Outer",
+                "package test;",
+                "public class Outer {",
+                "  @com.spotify.diffuser.diffuser.Diffusable",
+                "  private static class Inner { int value() { return 1; } }",
+                "}")
+            .errors);
+    assertEquals(
+        Collections.singletonList("@Diffusable classes can't have type parameters"),
+        compile(
+                "test.Box",
+                "package test;",
+                "@com.spotify.diffuser.diffuser.Diffusable",
+                "class Box<T> { T value() { return null; } }")
+            .errors);
+    assertEquals(
+        Collections.singletonList("@Diffusable classes must have at least one accessor"),
+        compile(
+                "test.Empty",
+                "package test;",
+                "@com.spotify.diffuser.diffuser.Diffusable",
+                "class Empty {}")
+            .errors);
+    assertEquals(
+        Collections.singletonList(
+            "@Diffusable property title has two accessors, title() and getTitle()"),
+        compile(
+                "test.Twice",
+                "package test;",
+                "@com.spotify.diffuser.diffuser.Diffusable",
+                "interface Twice { String title(); String getTitle(); }")
+            .errors);
+  }
+
+  private static final class Result {
+    final List<String> errors = new ArrayList<>();
+    final Map<String, MemoryFile> sources = new HashMap<>();
+
+    String source(String name) {
+      return sources.get(name).content.toString();
+    }
+  }
+
+  private static final class MemoryFile extends SimpleJavaFileObject {
+    final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+    MemoryFile(String name, Kind kind) {
+      super(URI.create("mem:///" + name.replace('.', '/') + kind.extension), kind);
+    }
+
+    @Override
+    public OutputStream openOutputStream() {
+      return content;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return content.toString();
+    }
+  }
+
+  // Compiles a single source file with the processor, keeping all output in memory.
+  private static Result compile(String className, String... lines) {
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    final StandardJavaFileManager standard = compiler.getStandardFileManager(null, null, null);
+    final Result result = new Result();
+
+    final ForwardingJavaFileManager<StandardJavaFileManager> fileManager =
+        new ForwardingJavaFileManager<StandardJavaFileManager>(standard) {
+          @Override
+          public JavaFileObject getJavaFileForOutput(
+              Location location, String name, JavaFileObject.Kind kind, FileObject sibling) {
+            final MemoryFile file = new MemoryFile(name, kind);
+            if (kind == JavaFileObject.Kind.SOURCE) {
+              result.sources.put(name, file);
+            }
+            return file;
+          }
+        };
+
+    final JavaFileObject source =
+        new SimpleJavaFileObject(
+            URI.create("mem:///" + className.replace('.', '/') + ".java"),
+            JavaFileObject.Kind.SOURCE) {
+          @Override
+          public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return String.join("\n", lines);
+          }
+        };
+
+    final JavaCompiler.CompilationTask task =
+        compiler.getTask(
+            null,
+            fileManager,
+            diagnostics,
+            Arrays.asList("-classpath", System.getProperty("java.class.path")),
+            null,
+            Collections.singletonList(source));
+    task.setProcessors(Collections.singletonList(new DiffusableProcessor()));
+    task.call();
+
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        result.errors.add(diagnostic.getMessage(null));
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Factory functions for common {@link Scheduler}s. */
+public final class Schedulers {
+  private Schedulers() {}
+
+  /**
+   * Create a Scheduler which runs every task on an Executor as soon as it is scheduled.
+   *
+   * @param executor: the Executor to run tasks on.
+   * @return A Scheduler which hands tasks to the executor.
+   */
+  public static Scheduler from(Executor executor) {
+    return executor::execute;
+  }
+
+  /**
+   * Create a TimedScheduler which runs tasks on a ScheduledExecutorService, and measures time with
+   * {@link System#nanoTime()}. Every operator which uses it shares the executor's timer, rather
+   * than creating a timer of its own.
+   *
+   * @param executor: the executor to run tasks on.
+   * @return A TimedScheduler which hands tasks to the executor.
+   */
+  public static TimedScheduler from(ScheduledExecutorService executor) {
+    return new TimedExecutor(executor);
+  }
+
+  /**
+   * Create a Scheduler which runs tasks on the next tick of a fixed-rate timer, e.g. once per
+   * frame. All tasks which are scheduled between two ticks run together on the next tick.
+   *
+   * <p>Ticks are aligned to multiples of the period since the Scheduler was created, but the timer
+   * is only armed while tasks are waiting, so an idle Scheduler does not wake up the executor.
+   *
+   * @param executor: the executor which runs the ticks.
+   * @param period: the time between two ticks.
+   * @param unit: the unit of the period.
+   * @return A Scheduler which runs tasks on the next tick.
+   */
+  public static Scheduler fixedRate(ScheduledExecutorService executor, long period, TimeUnit unit) {
+    final long periodNanos = unit.toNanos(period);
+    if (periodNanos <= 0) {
+      throw new IllegalArgumentException("period must be positive");
+    }
+    return new FixedRate(executor, periodNanos);
+  }
+
+  private static final class TimedExecutor implements TimedScheduler {
+    private final ScheduledExecutorService executor;
+
+    TimedExecutor(ScheduledExecutorService executor) {
+      this.executor = executor;
+    }
+
+    @Override
+    public void schedule(Runnable task) {
+      executor.execute(task);
+    }
+
+    @Override
+    public Cancellable schedule(Runnable task, long delay, TimeUnit unit) {
+      final Future<?> future = executor.schedule(task, delay, unit);
+      return () -> future.cancel(false);
+    }
+
+    @Override
+    public long nanoTime() {
+      return System.nanoTime();
+    }
+  }
+
+  private static final class FixedRate implements Scheduler {
+    private final ScheduledExecutorService executor;
+    private final long periodNanos;
+    private final long origin = System.nanoTime();
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean armed = new AtomicBoolean();
+    private final Runnable tick = this::tick;
+
+    FixedRate(ScheduledExecutorService executor, long periodNanos) {
+      this.executor = executor;
+      this.periodNanos = periodNanos;
+    }
+
+    @Override
+    public void schedule(Runnable task) {
+      tasks.add(task);
+      arm();
+    }
+
+    private void arm() {
+      if (!tasks.isEmpty() && armed.compareAndSet(false, true)) {
+        final long sinceOrigin = System.nanoTime() - origin;
+        executor.schedule(tick, periodNanos - sinceOrigin % periodNanos, NANOSECONDS);
+      }
+    }
+
+    private void tick() {
+      armed.set(false);
+      try {
+        // Tasks which are scheduled while this tick runs are left for the next one.
+        for (int count = tasks.size(); count > 0; count--) {
+          final Runnable task = tasks.poll();
+          if (task == null) {
+            break;
+          }
+          task.run();
+        }
+      } finally {
+        arm();
+      }
+    }
+  }
+}
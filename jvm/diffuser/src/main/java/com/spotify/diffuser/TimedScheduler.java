@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Scheduler} which can also run tasks after a delay, measured with its own {@link Clock}.
+ * See {@link Schedulers#from(java.util.concurrent.ScheduledExecutorService)}, and {@link
+ * VirtualScheduler} for tests.
+ */
+public interface TimedScheduler extends Scheduler, Clock {
+
+  /**
+   * Run a task once a delay has passed.
+   *
+   * @param task: the task to run.
+   * @param delay: the time to wait before running the task, measured with {@link #nanoTime()}.
+   * @param unit: the unit of the delay.
+   * @return A Cancellable which stops the task from running.
+   */
+  Cancellable schedule(Runnable task, long delay, TimeUnit unit);
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser;
+
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TimedScheduler} which only runs its tasks when told to, so tests can decide exactly when
+ * scheduled work happens. Tasks scheduled without a delay run on {@link #tick()}, and delayed tasks
+ * run when {@link #advanceTimeBy(long, TimeUnit)} moves the virtual time past them.
+ */
+public final class VirtualScheduler implements TimedScheduler {
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+  private long now;
+  private long scheduled;
+
+  @Override
+  public synchronized void schedule(Runnable task) {
+    tasks.add(task);
+  }
+
+  @Override
+  public synchronized Cancellable schedule(Runnable task, long delay, TimeUnit unit) {
+    final Timer timer = new Timer(task, now + Math.max(0, unit.toNanos(delay)), scheduled++);
+    timers.add(timer);
+    return () -> {
+      synchronized (this) {
+        timers.remove(timer);
+      }
+    };
+  }
+
+  @Override
+  public synchronized long nanoTime() {
+    return now;
+  }
+
+  /**
+   * Run the tasks which were scheduled before this call, in the order they were scheduled. Tasks
+   * that are scheduled while running are left for the next call.
+   *
+   * @return The number of tasks which were run.
+   */
+  public int tick() {
+    final int count;
+    synchronized (this) {
+      count = tasks.size();
+    }
+
+    for (int i = 0; i < count; i++) {
+      final Runnable task;
+      synchronized (this) {
+        task = tasks.poll();
+      }
+      task.run();
+    }
+    return count;
+  }
+
+  /**
+   * Move the virtual time forward, and run every delayed task which becomes due, in the order of
+   * their due times. While a task runs, the time is its due time, so tasks that it schedules with a
+   * short enough delay run in the same call.
+   *
+   * @param time: how far to move the time.
+   * @param unit: the unit of the time.
+   * @return The number of tasks which were run.
+   */
+  public int advanceTimeBy(long time, TimeUnit unit) {
+    final long target;
+    synchronized (this) {
+      target = now + unit.toNanos(time);
+    }
+
+    int count = 0;
+    while (true) {
+      final Timer timer;
+      synchronized (this) {
+        timer = timers.peek();
+        if (timer == null || timer.due > target) {
+          now = target;
+          return count;
+        }
+        timers.poll();
+        now = timer.due;
+      }
+      timer.task.run();
+      count++;
+    }
+  }
+
+  /** @return The number of tasks which are waiting for {@link #tick()}, or for their delay. */
+  public synchronized int pendingTasks() {
+    return tasks.size() + timers.size();
+  }
+
+  private static final class Timer implements Comparable<Timer> {
+    final Runnable task;
+    final long due;
+    final long sequence;
+
+    Timer(Runnable task, long due, long sequence) {
+      this.task = task;
+      this.due = due;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public int compareTo(Timer other) {
+      if (due != other.due) {
+        return due < other.due ? -1 : 1;
+      }
+      return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import com.spotify.diffuser.BooleanEffect;
+
+/**
+ * A {@link Diffuser} for primitive boolean values.
+ *
+ * <p>A BooleanDiffuser behaves just like a Diffuser&lt;Boolean&gt;, but it caches its last value in
+ * a primitive field and never boxes its input, so running it does not allocate. Use {@link
+ * Diffuser#mapToBoolean} to plug it into a tree of Diffusers.
+ */
+public final class BooleanDiffuser {
+  private final BooleanDidChange didChange;
+  private final BooleanEffect effect;
+
+  private boolean hasCachedValue;
+  private boolean cachedValue;
+
+  private BooleanDiffuser(BooleanDidChange didChange, BooleanEffect effect) {
+    this.didChange = didChange;
+    this.effect = effect;
+  }
+
+  /**
+   * Run the side-effect of this BooleanDiffuser if it hasn't been run before, or if the newValue
+   * parameter is classified as different from the last time it ran.
+   *
+   * <p>The value you supply will be used as the cache the next time this function is called.
+   *
+   * @param newValue: The value to execute side effects based on.
+   */
+  public synchronized void run(boolean newValue) {
+    if (!hasCachedValue || didChange.test(cachedValue, newValue)) {
+      effect.run(newValue);
+    }
+    cachedValue = newValue;
+    hasCachedValue = true;
+  }
+
+  /**
+   * Create a BooleanDiffuser which always executes its side-effect regardless of the value.
+   *
+   * @param effect: The side-effect which should be performed when {@link #run(boolean)} is called
+   *     on this BooleanDiffuser.
+   * @return A BooleanDiffuser which always executes its side-effect when given a value.
+   */
+  public static BooleanDiffuser intoAlways(BooleanEffect effect) {
+    return new BooleanDiffuser((a, b) -> true, effect);
+  }
+
+  /**
+   * Create a BooleanDiffuser by wrapping a side-effecting function with a caching layer.
+   *
+   * @param didChange: A function which determines if the side-effect should be executed given the
+   *     previous value and the current value that the BooleanDiffuser is {@link #run(boolean)}
+   *     with. If {@link #run(boolean)} is called for the first time, the side-effect will be
+   *     executed regardless, and this function will not be run.
+   * @param effect: The side-effect to execute
+   * @return A BooleanDiffuser which runs its side-effect when didChange says that its input
+   *     changed.
+   */
+  public static BooleanDiffuser intoWhen(BooleanDidChange didChange, BooleanEffect effect) {
+    return new BooleanDiffuser(didChange, effect);
+  }
+
+  /**
+   * Create a BooleanDiffuser from a side-effecting function. The BooleanDiffuser will cache its
+   * inputs and compare them using {@code ==}.
+   *
+   * @param effect: a side-effect which should be run when the input changes
+   * @return A BooleanDiffuser which runs side-effect when its input changes.
+   */
+  public static BooleanDiffuser into(BooleanEffect effect) {
+    return new BooleanDiffuser((a, b) -> a != b, effect);
+  }
+
+  /**
+   * Create a BooleanDiffuser which will only run its side-effecting function once, when it receives
+   * its first value.
+   *
+   * @param effect: a side-effect which should be run once.
+   * @return A BooleanDiffuser which only runs its side-effect once the first time {@link
+   *     #run(boolean)} is called on it.
+   */
+  public static BooleanDiffuser intoOnce(BooleanEffect effect) {
+    return new BooleanDiffuser((a, b) -> false, effect);
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import com.spotify.diffuser.ToLongFunction;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+
+/** Factory methods for {@link CacheStrategy}. */
+public final class CacheStrategies {
+
+  private static final CacheStrategy STRONG =
+      new CacheStrategy() {
+        @Override
+        public <A> NodeCache<A> newCache(DidChange<A> didChange) {
+          return new StrongCache<>(didChange);
+        }
+      };
+
+  private static final CacheStrategy WEAK =
+      new CacheStrategy() {
+        @Override
+        public <A> NodeCache<A> newCache(DidChange<A> didChange) {
+          return new ReferenceCache<>(didChange, false);
+        }
+      };
+
+  private static final CacheStrategy SOFT =
+      new CacheStrategy() {
+        @Override
+        public <A> NodeCache<A> newCache(DidChange<A> didChange) {
+          return new ReferenceCache<>(didChange, true);
+        }
+      };
+
+  private static final CacheStrategy HASHED = fingerprint(Object::hashCode);
+
+  private CacheStrategies() {}
+
+  /**
+   * Keep a strong reference to the last value, which is what nodes do by default.
+   *
+   * @return A strategy which keeps the last value.
+   */
+  public static CacheStrategy strong() {
+    return STRONG;
+  }
+
+  /**
+   * Keep a weak reference to the last value. As long as something else retains the value, such as
+   * the current model, the node behaves exactly as with {@link #strong()}. Once the value has been
+   * collected the node no longer knows it, and runs its side-effect or children again.
+   *
+   * @return A strategy which keeps a weak reference to the last value.
+   */
+  public static CacheStrategy weak() {
+    return WEAK;
+  }
+
+  /**
+   * Keep a soft reference to the last value, like {@link #weak()}, but the value is only collected
+   * when memory runs low.
+   *
+   * @return A strategy which keeps a soft reference to the last value.
+   */
+  public static CacheStrategy soft() {
+    return SOFT;
+  }
+
+  /**
+   * Keep a 64-bit fingerprint of the last value instead of the value itself. The node runs its
+   * side-effect or children whenever the fingerprint of its input differs from the last one, and
+   * the node's own didChange function is not used, since there is no previous value to pass to it.
+   *
+   * <p>Two different values with the same fingerprint are considered unchanged, so the fingerprint
+   * should tell apart every pair of values that the side-effect cares about, e.g. by combining a
+   * version number with an id, or by hashing the fields the side-effect reads into 64 bits. For
+   * models with a version number, see {@link Diffuser#intoVersioned(ToLongFunction,
+   * com.spotify.diffuser.Effect)}.
+   *
+   * @param fingerprint: computes the fingerprint of a value.
+   * @param <T> The type of the values which are fingerprinted.
+   * @return A strategy which keeps a single long per node.
+   */
+  public static <T> CacheStrategy fingerprint(ToLongFunction<? super T> fingerprint) {
+    return new CacheStrategy() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public <A> NodeCache<A> newCache(DidChange<A> didChange) {
+        return new FingerprintCache<>((ToLongFunction<? super A>) fingerprint);
+      }
+    };
+  }
+
+  /**
+   * Keep the {@link Object#hashCode()} of the last value, like {@link
+   * #fingerprint(ToLongFunction)}. Only 32 bits of a hash code are used, so this suits values whose
+   * hash codes are unique, such as small enums and ids, better than large models.
+   *
+   * @return A strategy which keeps a single hash code per node.
+   */
+  public static CacheStrategy hashed() {
+    return HASHED;
+  }
+
+  private static final class StrongCache<A> implements NodeCache<A> {
+    private final DidChange<A> didChange;
+    private A last;
+
+    StrongCache(DidChange<A> didChange) {
+      this.didChange = didChange;
+    }
+
+    @Override
+    public boolean changed(A value) {
+      return last == null || didChange.test(last, value);
+    }
+
+    @Override
+    public void update(A value) {
+      last = value;
+    }
+  }
+
+  private static final class ReferenceCache<A> implements NodeCache<A> {
+    private final DidChange<A> didChange;
+    private final boolean soft;
+    private Reference<A> last;
+
+    ReferenceCache(DidChange<A> didChange, boolean soft) {
+      this.didChange = didChange;
+      this.soft = soft;
+    }
+
+    @Override
+    public boolean changed(A value) {
+      final A lastValue = last != null ? last.get() : null;
+      return lastValue == null || didChange.test(lastValue, value);
+    }
+
+    @Override
+    public void update(A value) {
+      if (last != null && last.get() == value) {
+        return;
+      }
+      last = soft ? new SoftReference<>(value) : new WeakReference<>(value);
+    }
+  }
+
+  private static final class FingerprintCache<A> implements NodeCache<A> {
+    private final ToLongFunction<? super A> fingerprint;
+    private boolean hasValue;
+    private long last;
+
+    // The fingerprint computed by changed(), so that update() doesn't compute it again. Only the
+    // fingerprint is kept, so that a side-effect which throws doesn't leave the value reachable.
+    // A node runs again while its side-effect runs only by running the whole Diffuser again,
+    // which takes the pending fingerprint, so update() then computes it again.
+    private boolean hasPending;
+    private long pending;
+
+    FingerprintCache(ToLongFunction<? super A> fingerprint) {
+      this.fingerprint = fingerprint;
+    }
+
+    @Override
+    public boolean changed(A value) {
+      pending = fingerprint.applyAsLong(value);
+      hasPending = true;
+      return !hasValue || pending != last;
+    }
+
+    @Override
+    public void update(A value) {
+      last = hasPending ? pending : fingerprint.applyAsLong(value);
+      hasValue = true;
+      hasPending = false;
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+/**
+ * Decides how a caching Diffuser node remembers the last value it was run with, see {@link
+ * Diffuser#cachedBy(CacheStrategy, Diffuser)}.
+ *
+ * <p>By default a node keeps a strong reference to its last value, so a tree over a large immutable
+ * model retains the whole previous model. {@link CacheStrategies} has strategies which keep a
+ * fingerprint, or a weak or soft reference, instead.
+ */
+public interface CacheStrategy {
+
+  /**
+   * Create the cache of a single node. It is created when the node is created or compiled, and it
+   * is only used while the node's lock is held, or from the thread which a {@link CompiledDiffuser}
+   * is confined to.
+   *
+   * @param didChange: the node's function for deciding if its input changed. A cache which doesn't
+   *     keep the previous value can't call it, and decides on its own instead.
+   * @param <A> The type of the values received by the node.
+   * @return An empty cache.
+   */
+  <A> NodeCache<A> newCache(DidChange<A> didChange);
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import com.spotify.diffuser.Effect;
+import com.spotify.diffuser.Scheduler;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Wraps a Diffuser so that {@link #run(Object)} only stores the latest value, and the Diffuser is
+ * run once with whatever value is latest when the {@link Scheduler} gets around to it.
+ *
+ * <p>Values which are replaced before they are drained are dropped without being diffed, which
+ * saves work when a model stream emits several values between two frames. {@link #skippedRuns()}
+ * counts how many values were dropped this way.
+ *
+ * <p>Drains never overlap, even on a Scheduler backed by several threads, so the wrapped Diffuser
+ * sees values in the order they were run.
+ *
+ * @param <A> The type of values that this CoalescingDiffuser can be {@link #run(Object)} with.
+ */
+public final class CoalescingDiffuser<A> {
+  private static final Object EMPTY = new Object();
+
+  private final Scheduler scheduler;
+  private final Effect<A> target;
+
+  private final AtomicReference<Object> pending = new AtomicReference<>(EMPTY);
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final AtomicLong skippedRuns = new AtomicLong();
+  private final Runnable drain = this::drain;
+
+  private CoalescingDiffuser(Scheduler scheduler, Effect<A> target) {
+    this.scheduler = scheduler;
+    this.target = target;
+  }
+
+  /**
+   * Wrap a Diffuser so that it runs at most once per task on the scheduler.
+   *
+   * @param scheduler: decides when the latest value is passed on to the diffuser.
+   * @param diffuser: The Diffuser which should receive the latest value.
+   * @param <A> The type of the values received by the Diffuser.
+   * @return A CoalescingDiffuser which forwards the latest value to the diffuser parameter.
+   */
+  public static <A> CoalescingDiffuser<A> coalescing(Scheduler scheduler, Diffuser<A> diffuser) {
+    return new CoalescingDiffuser<>(scheduler, diffuser::run);
+  }
+
+  /**
+   * Wrap a CompiledDiffuser so that it runs at most once per task on the scheduler.
+   *
+   * @param scheduler: decides when the latest value is passed on to the diffuser.
+   * @param diffuser: The CompiledDiffuser which should receive the latest value.
+   * @param <A> The type of the values received by the CompiledDiffuser.
+   * @return A CoalescingDiffuser which forwards the latest value to the diffuser parameter.
+   */
+  public static <A> CoalescingDiffuser<A> coalescing(
+      Scheduler scheduler, CompiledDiffuser<A> diffuser) {
+    return new CoalescingDiffuser<>(scheduler, diffuser::run);
+  }
+
+  /**
+   * Store a value to be passed on to the wrapped Diffuser, replacing any value that has not been
+   * passed on yet.
+   *
+   * @param newValue: The value to execute side effects based on.
+   */
+  public void run(A newValue) {
+    if (pending.getAndSet(newValue) != EMPTY) {
+      skippedRuns.incrementAndGet();
+    }
+    if (scheduled.compareAndSet(false, true)) {
+      schedule();
+    }
+  }
+
+  /** @return The number of values which were replaced before they reached the wrapped Diffuser. */
+  public long skippedRuns() {
+    return skippedRuns.get();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void drain() {
+    final Object value = pending.getAndSet(EMPTY);
+    try {
+      if (value != EMPTY) {
+        target.run((A) value);
+      }
+    } finally {
+      scheduled.set(false);
+      // A value which arrived while draining could not schedule a drain of its own.
+      if (pending.get() != EMPTY && scheduled.compareAndSet(false, true)) {
+        schedule();
+      }
+    }
+  }
+
+  private void schedule() {
+    try {
+      scheduler.schedule(drain);
+    } catch (RuntimeException | Error e) {
+      // Nothing was scheduled, so the next value must try again instead of being dropped.
+      scheduled.set(false);
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import com.spotify.diffuser.Effect;
+import com.spotify.diffuser.Function;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A tree of {@link Diffuser}s flattened into a single array-indexed plan.
+ *
+ * <p>Running a Diffuser tree calls {@link Diffuser#run(Object)} on every node it passes through,
+ * and each of those calls acquires the node's lock. A CompiledDiffuser behaves exactly like the
+ * tree it was compiled from, but it only acquires a single lock per {@link #run(Object)}, visits
+ * the nodes in one loop, and jumps past the whole subtree of a cache which reports that nothing
+ * changed.
+ *
+ * <p>A CompiledDiffuser gets its own caches for the nodes of the tree, so it starts out like a tree
+ * which has never been run. Any state held by the side-effects and transformations of those nodes
+ * is shared with the original tree though, since the plan calls the very same functions. This
+ * includes the state behind {@link Diffuser#intoListChanges(ListUpdateSink)}, {@link
+ * Diffuser#intoEachKeyed(Function, Function)}, {@link Diffuser#intoMapDelta(Effect)}, {@link
+ * Diffuser#intoSetDelta(Effect)}, {@link Diffuser#intoAsync(java.util.concurrent.Executor,
+ * Effect)}, {@link Diffuser#intoLatest(Function, Effect)}, the cost estimates of {@link
+ * Diffuser#intoAllParallel(java.util.concurrent.ForkJoinPool, long, java.util.Collection)}, the
+ * primitive Diffusers passed to {@link Diffuser#mapToInt(com.spotify.diffuser.ToIntFunction,
+ * IntDiffuser)} and its siblings, and any {@link CoalescingDiffuser} that a side-effect forwards
+ * to. A tree containing any of these should either be run directly or compiled once, not both.
+ *
+ * <p>Named nodes report their runs to the installed {@link DiffuserMonitor} just like they do in
+ * the tree, see {@link Diffuser#named(String, Diffuser)}.
+ *
+ * <p>When a Diffuser is only ever run from a single thread, such as Android's main thread, {@link
+ * #unsynchronized(Diffuser)} and {@link #confinedTo(Thread, Diffuser)} create CompiledDiffusers
+ * which do not acquire any lock at all.
+ *
+ * @param <A> The type of values that this CompiledDiffuser can be {@link #run(Object)} with.
+ */
+public final class CompiledDiffuser<A> {
+  // Every node in the tree gets one step, in depth-first order. A step reads its input from the
+  // output of the step it is nested in, or from the value passed to run() for the root. Caching
+  // steps with children also get a commit step after their subtree, which updates the cache once
+  // the children have run, just like the tree does.
+  private static final int NODE = 0;
+  private static final int COMMIT = 1;
+
+  private final int[] kinds;
+  private final int[] inputs;
+  private final int[] skips;
+  private final int[] slots;
+  private final int[] owners;
+  private final int[] subtreeSizes;
+  private final String[] names;
+  private final DidChange<Object>[] didChanges;
+  private final Function<Object, Object>[] transforms;
+  private final Effect<Object>[] sideEffects;
+
+  private final boolean synchronize;
+  private final Thread owner;
+  private final DiffuserMonitor monitor;
+
+  // Nodes with a CacheStrategy keep their cache in nodeCaches, and all others in caches.
+  private final Object[] caches;
+  private final NodeCache<Object>[] nodeCaches;
+  private final Object[] values;
+  private final long[] timings;
+  private boolean running;
+
+  @SuppressWarnings("unchecked")
+  private CompiledDiffuser(Plan plan, boolean synchronize, Thread owner) {
+    this.synchronize = synchronize;
+    this.owner = owner;
+    this.monitor = DiffuserMonitors.installed();
+
+    final int length = plan.nodes.size();
+    this.kinds = new int[length];
+    this.inputs = new int[length];
+    this.skips = new int[length];
+    this.slots = new int[length];
+    this.owners = new int[length];
+    this.names = new String[length];
+    this.subtreeSizes = new int[length];
+    this.didChanges = (DidChange<Object>[]) new DidChange<?>[length];
+    this.transforms = (Function<Object, Object>[]) new Function<?, ?>[length];
+    this.sideEffects = (Effect<Object>[]) new Effect<?>[length];
+
+    for (int i = 0; i < length; i++) {
+      final Diffuser<Object> node = (Diffuser<Object>) plan.nodes.get(i);
+      kinds[i] = plan.kinds.get(i);
+      inputs[i] = plan.inputs.get(i);
+      skips[i] = plan.skips.get(i);
+      slots[i] = plan.slots.get(i);
+      owners[i] = plan.owners.get(i);
+      names[i] = node.name;
+      if (kinds[i] == NODE) {
+        didChanges[i] = node.didChange;
+        transforms[i] = (Function<Object, Object>) node.transform;
+        sideEffects[i] = node.sideEffect;
+      }
+    }
+
+    // The number of nodes in the subtree of every node step, used to report skipped nodes.
+    final int[] nodesBefore = new int[length + 1];
+    for (int i = 0; i < length; i++) {
+      nodesBefore[i + 1] = nodesBefore[i] + (kinds[i] == NODE ? 1 : 0);
+    }
+    for (int i = 0; i < length; i++) {
+      subtreeSizes[i] = nodesBefore[skips[i]] - nodesBefore[i];
+    }
+
+    this.caches = new Object[plan.cacheSlots.size()];
+    this.nodeCaches = (NodeCache<Object>[]) new NodeCache<?>[plan.cacheSlots.size()];
+    for (Map.Entry<Diffuser<?>, Integer> slot : plan.cacheSlots.entrySet()) {
+      final Diffuser<Object> node = (Diffuser<Object>) slot.getKey();
+      if (node.cacheStrategy != null) {
+        nodeCaches[slot.getValue()] = node.cache();
+      }
+    }
+    this.values = new Object[length + 1];
+    this.timings = monitor != null ? new long[2 * length] : null;
+  }
+
+  /**
+   * Flatten a Diffuser into an execution plan.
+   *
+   * @param diffuser: The Diffuser to compile. It is not modified, and keeps its own caches.
+   * @param <A> The type of the values received by the Diffuser.
+   * @return A CompiledDiffuser with its own caches for the nodes of the diffuser parameter.
+   */
+  public static <A> CompiledDiffuser<A> compile(Diffuser<A> diffuser) {
+    return new CompiledDiffuser<>(Plan.of(diffuser), true, null);
+  }
+
+  /**
+   * Flatten a Diffuser into an execution plan which does not acquire any lock when it is run.
+   *
+   * <p>The returned CompiledDiffuser must only be run from one thread at a time, and the caller is
+   * responsible for publishing it safely if that thread changes. Consider using {@link
+   * #confinedTo(Thread, Diffuser)} in debug builds to verify this.
+   *
+   * @param diffuser: The Diffuser to compile. It is not modified, and keeps its own caches.
+   * @param <A> The type of the values received by the Diffuser.
+   * @return A CompiledDiffuser without any locking, with its own caches for the nodes of the
+   *     diffuser parameter.
+   */
+  public static <A> CompiledDiffuser<A> unsynchronized(Diffuser<A> diffuser) {
+    return new CompiledDiffuser<>(Plan.of(diffuser), false, null);
+  }
+
+  /**
+   * Flatten a Diffuser into an execution plan which may only be run from a single thread.
+   *
+   * <p>Like {@link #unsynchronized(Diffuser)}, the returned CompiledDiffuser does not acquire any
+   * lock, but it fails fast with an {@link IllegalStateException} when it is run from any thread
+   * other than the owner.
+   *
+   * @param owner: The only thread which is allowed to run the returned CompiledDiffuser.
+   * @param diffuser: The Diffuser to compile. It is not modified, and keeps its own caches.
+   * @param <A> The type of the values received by the Diffuser.
+   * @return A CompiledDiffuser confined to the owner thread, with its own caches for the nodes of
+   *     the diffuser parameter.
+   */
+  public static <A> CompiledDiffuser<A> confinedTo(Thread owner, Diffuser<A> diffuser) {
+    if (owner == null) {
+      throw new NullPointerException("owner");
+    }
+    return new CompiledDiffuser<>(Plan.of(diffuser), false, owner);
+  }
+
+  /**
+   * Run the side-effects of the compiled tree, exactly as {@link Diffuser#run(Object)} would have
+   * run them on the tree it was compiled from.
+   *
+   * @param newValue: The value to execute side effects based on.
+   */
+  public void run(A newValue) {
+    if (synchronize) {
+      synchronized (this) {
+        runUnsynchronized(newValue);
+      }
+      return;
+    }
+
+    if (owner != null && owner != Thread.currentThread()) {
+      throw new IllegalStateException(
+          "This Diffuser is confined to "
+              + owner.getName()
+              + " but was run from "
+              + Thread.currentThread().getName());
+    }
+    runUnsynchronized(newValue);
+  }
+
+  private void runUnsynchronized(A newValue) {
+    if (running) {
+      // A side-effect is running this Diffuser again. The outer run still needs its values.
+      execute(
+          newValue, new Object[values.length], monitor != null ? new long[timings.length] : null);
+      return;
+    }
+
+    running = true;
+    try {
+      execute(newValue, values, timings);
+    } finally {
+      running = false;
+      Arrays.fill(values, null);
+    }
+  }
+
+  private void execute(Object newValue, Object[] values, long[] timings) {
+    values[0] = newValue;
+
+    final boolean monitoredRoot = monitor != null && names.length > 0 && names[0] != null;
+    final long rootStart = monitoredRoot ? System.nanoTime() : 0;
+    int effectsRun = 0;
+    int nodesSkipped = 0;
+
+    int i = 0;
+    while (i < kinds.length) {
+      final Object input = values[inputs[i]];
+
+      if (kinds[i] == COMMIT) {
+        if (slots[i] >= 0) {
+          updateCache(slots[i], input);
+        }
+        if (monitor != null && names[i] != null) {
+          final int node = owners[i];
+          monitor.onRun(
+              names[i], true, timings[2 * node], System.nanoTime() - timings[2 * node + 1]);
+        }
+        i++;
+        continue;
+      }
+
+      final boolean monitored = monitor != null && names[i] != null;
+      final long start = monitored ? System.nanoTime() : 0;
+
+      final DidChange<Object> didChange = didChanges[i];
+      if (didChange != null) {
+        final int slot = slots[i];
+        final NodeCache<Object> nodeCache = nodeCaches[slot];
+        final boolean unchanged;
+        if (nodeCache != null) {
+          unchanged = !nodeCache.changed(input);
+        } else {
+          final Object cachedValue = caches[slot];
+          unchanged = cachedValue != null && !didChange.test(cachedValue, input);
+        }
+        if (unchanged) {
+          updateCache(slot, input);
+          if (monitored) {
+            monitor.onRun(names[i], false, System.nanoTime() - start, 0);
+          }
+          nodesSkipped += subtreeSizes[i];
+          i = skips[i];
+          continue;
+        }
+      }
+
+      final long checked = monitored ? System.nanoTime() : 0;
+
+      final Function<Object, Object> transform = transforms[i];
+      final Object output = transform != null ? transform.apply(input) : input;
+
+      final Effect<Object> sideEffect = sideEffects[i];
+      if (sideEffect != null) {
+        sideEffect.run(output);
+        effectsRun++;
+        if (didChange != null) {
+          updateCache(slots[i], input);
+        }
+        if (monitored) {
+          monitor.onRun(names[i], true, checked - start, System.nanoTime() - checked);
+        }
+      } else if (monitored) {
+        // Reported by the commit step, once the children have run.
+        timings[2 * i] = checked - start;
+        timings[2 * i + 1] = checked;
+      }
+
+      values[i + 1] = output;
+      i++;
+    }
+
+    if (monitoredRoot) {
+      monitor.onRootRun(names[0], System.nanoTime() - rootStart, effectsRun, nodesSkipped);
+    }
+  }
+
+  private void updateCache(int slot, Object input) {
+    final NodeCache<Object> nodeCache = nodeCaches[slot];
+    if (nodeCache != null) {
+      nodeCache.update(input);
+    } else {
+      caches[slot] = input;
+    }
+  }
+
+  private static final class Plan {
+    final List<Diffuser<?>> nodes = new ArrayList<>();
+    final List<Integer> kinds = new ArrayList<>();
+    final List<Integer> inputs = new ArrayList<>();
+    final List<Integer> skips = new ArrayList<>();
+    final List<Integer> slots = new ArrayList<>();
+    final List<Integer> owners = new ArrayList<>();
+
+    // A Diffuser which occurs more than once in the tree shares its cache between occurrences.
+    final Map<Diffuser<?>, Integer> cacheSlots = new IdentityHashMap<>();
+
+    static Plan of(Diffuser<?> diffuser) {
+      final Plan plan = new Plan();
+      plan.add(diffuser, 0);
+      return plan;
+    }
+
+    void add(Diffuser<?> node, int input) {
+      final int index = nodes.size();
+      final int slot = node.didChange != null ? slotFor(node) : -1;
+      addStep(node, NODE, input, slot, index);
+
+      for (Diffuser<?> child : node.children) {
+        add(child, index + 1);
+      }
+
+      // Named nodes need a commit step as well, to report the time spent in their children.
+      if ((node.didChange != null || node.name != null) && !node.children.isEmpty()) {
+        addStep(node, COMMIT, input, slot, index);
+      }
+
+      skips.set(index, nodes.size());
+    }
+
+    private void addStep(Diffuser<?> node, int kind, int input, int slot, int owner) {
+      nodes.add(node);
+      kinds.add(kind);
+      inputs.add(input);
+      skips.add(nodes.size());
+      slots.add(slot);
+      owners.add(owner);
+    }
+
+    private int slotFor(Diffuser<?> node) {
+      Integer slot = cacheSlots.get(node);
+      if (slot == null) {
+        slot = cacheSlots.size();
+        cacheSlots.put(node, slot);
+      }
+      return slot;
+    }
+  }
+}
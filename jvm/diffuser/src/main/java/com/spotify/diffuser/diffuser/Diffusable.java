@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a model class for which the diffuser-processor annotation processor generates a builder of
+ * per-property Diffusers, instead of a hand-written tree of {@link Diffuser#map} lambdas.
+ *
+ * <p>For a class {@code Track}, the processor generates {@code TrackDiffusers.builder()} in the
+ * same package, with two methods per property: one which takes an effect, and one which takes a
+ * Diffuser of the property's type. Every accessor of the class is a property, which is every method
+ * that is neither private nor static, takes no parameters and returns a value. The names of
+ * properties drop the {@code get} and {@code is} prefixes of their accessors.
+ *
+ * <pre>{@code
+ * Diffuser<Track> diffuser =
+ *     TrackDiffusers.builder()
+ *         .title(title -> titleView.setText(title))
+ *         .duration(duration -> durationView.setText(format(duration)))
+ *         .build();
+ * }</pre>
+ *
+ * <p>Accessors are called directly, and properties of type int, long, double and boolean are
+ * compared without boxing them, through {@link IntDiffuser}, {@link LongDiffuser}, {@link
+ * DoubleDiffuser} and {@link BooleanDiffuser}. Narrower primitives are widened to int or double.
+ * Every other property is compared using its definition of equality, like {@link
+ * Diffuser#into(com.spotify.diffuser.Effect)}. The Diffuser returned by {@code build()} only runs
+ * its children when the model is not equal to the previous one.
+ *
+ * <p>{@code buildMasked()} compares the model once per run instead, property by property, and only
+ * runs the children of the properties which changed, see {@link DirtyMask}. The generated class
+ * also exposes the index of every property as {@code <Model>Diffusers.Field}, along with {@code
+ * fieldCount()} and {@code comparator()}, for building such trees by hand.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Diffusable {}
@@ -23,10 +23,21 @@ package com.spotify.diffuser.diffuser;
 
 import com.spotify.diffuser.Effect;
 import com.spotify.diffuser.Function;
+import com.spotify.diffuser.Schedulers;
+import com.spotify.diffuser.ToBooleanFunction;
+import com.spotify.diffuser.ToDoubleFunction;
+import com.spotify.diffuser.ToIntFunction;
+import com.spotify.diffuser.ToLongFunction;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -37,7 +48,9 @@ import java.util.concurrent.atomic.AtomicReference;
  * #into(Effect)} and {@link #intoAll(Diffuser[])} only forward calls when the input value is
  * different from the previous value, or if {@link #run(Object)} was called for the first time.
  * {@link #intoWhen(DidChange, Effect)} can be to specify more nuanced caching. {@link
- * #intoAlways(Effect)} will always run its function.
+ * #intoAlways(Effect)} will always run its function. {@link #cachedBy(CacheStrategy, Diffuser)}
+ * changes how a cache remembers the last value, e.g. to keep a fingerprint of a large model instead
+ * of the model itself.
  *
  * <p>Diffusers can be combined to orchestrate groups of side-effects. E.g., {@link
  * #intoAll(Diffuser[])} can be used to merge a list of Diffusers with the same input type, and
@@ -48,21 +61,56 @@ import java.util.concurrent.atomic.AtomicReference;
 public final class Diffuser<A> {
   private final Effect<A> effect;
 
-  private Diffuser(DidChange<A> didChange, Effect<A> sideEffect) {
-    final AtomicReference<A> cache = new AtomicReference<>();
+  // The parts this Diffuser was built from. CompiledDiffuser reads these to flatten a tree of
+  // Diffusers, so every node is described by at most one cache, one transform, and either a
+  // side-effect or a list of children. A null cacheStrategy keeps the last value, like strong().
+  final String name;
+  final DidChange<A> didChange;
+  final CacheStrategy cacheStrategy;
+  final Function<A, ?> transform;
+  final Effect<A> sideEffect;
+  final List<Diffuser<?>> children;
 
-    this.effect =
-        value -> {
-          A cachedValue = cache.get();
-          if (cachedValue == null || didChange.test(cachedValue, value)) {
-            sideEffect.run(value);
-          }
-          cache.set(value);
-        };
+  private Diffuser(
+      String name,
+      DidChange<A> didChange,
+      CacheStrategy cacheStrategy,
+      Function<A, ?> transform,
+      Effect<A> sideEffect,
+      List<Diffuser<?>> children) {
+    this.name = name;
+    this.didChange = didChange;
+    this.cacheStrategy = cacheStrategy;
+    this.transform = transform;
+    this.sideEffect = sideEffect;
+    this.children = children;
+
+    final Effect<A> next =
+        sideEffect != null ? sideEffect : effectFromChildren(transform, children);
+    final DiffuserMonitor monitor = name != null ? DiffuserMonitors.installed() : null;
+    if (monitor != null) {
+      this.effect = monitored(monitor, name, cache(), next);
+    } else if (didChange != null) {
+      this.effect = cacheStrategy != null ? cached(cache(), next) : cached(didChange, next);
+    } else {
+      this.effect = next;
+    }
+  }
+
+  private Diffuser(
+      DidChange<A> didChange,
+      Function<A, ?> transform,
+      Effect<A> sideEffect,
+      List<Diffuser<?>> children) {
+    this(null, didChange, null, transform, sideEffect, children);
+  }
+
+  private Diffuser(DidChange<A> didChange, Effect<A> sideEffect) {
+    this(didChange, null, sideEffect, Collections.emptyList());
   }
 
   private Diffuser(Effect<A> effect) {
-    this.effect = effect;
+    this(null, null, effect, Collections.emptyList());
   }
 
   /**
@@ -72,14 +120,77 @@ public final class Diffuser<A> {
    * @param children: the list of Diffusers to merge
    */
   public Diffuser(Collection<Diffuser<A>> children) {
-    this(Diffuser::notEqual, effectFromChildren(children));
+    this(Diffuser::notEqual, null, null, new ArrayList<>(children));
+  }
+
+  /** @return A new cache for this node, or null if it has no didChange. */
+  NodeCache<A> cache() {
+    if (didChange == null) {
+      return null;
+    }
+    final CacheStrategy strategy = cacheStrategy != null ? cacheStrategy : CacheStrategies.strong();
+    return strategy.newCache(didChange);
+  }
+
+  private static <A> Effect<A> cached(NodeCache<A> cache, Effect<A> sideEffect) {
+    return value -> {
+      if (cache.changed(value)) {
+        sideEffect.run(value);
+      }
+      cache.update(value);
+    };
+  }
+
+  private static <A> Effect<A> cached(DidChange<A> didChange, Effect<A> sideEffect) {
+    final AtomicReference<A> cache = new AtomicReference<>();
+
+    return value -> {
+      A cachedValue = cache.get();
+      if (cachedValue == null || didChange.test(cachedValue, value)) {
+        sideEffect.run(value);
+      }
+      cache.set(value);
+    };
+  }
+
+  // Behaves like cached(), or like the uncached effect when there is no didChange, but reports
+  // every run to the monitor.
+  private static <A> Effect<A> monitored(
+      DiffuserMonitor monitor, String name, NodeCache<A> cache, Effect<A> next) {
+    return value -> {
+      final long start = System.nanoTime();
+      if (cache != null && !cache.changed(value)) {
+        cache.update(value);
+        monitor.onRun(name, false, System.nanoTime() - start, 0);
+        return;
+      }
+
+      final long checked = System.nanoTime();
+      next.run(value);
+      if (cache != null) {
+        cache.update(value);
+      }
+      monitor.onRun(name, true, checked - start, System.nanoTime() - checked);
+    };
   }
 
-  private static <A> Effect<A> effectFromChildren(Collection<Diffuser<A>> children) {
-    List<Diffuser<A>> copiedChildren = new ArrayList(children);
+  @SuppressWarnings("unchecked")
+  private static <A> Effect<A> effectFromChildren(
+      Function<A, ?> transform, List<Diffuser<?>> children) {
+    if (transform != null) {
+      final Function<A, Object> objectTransform = (Function<A, Object>) transform;
+      final Diffuser<Object> child = (Diffuser<Object>) children.get(0);
+      return value -> child.run(objectTransform.apply(value));
+    }
+
+    if (children.size() == 1) {
+      final Diffuser<A> child = (Diffuser<A>) children.get(0);
+      return child::run;
+    }
+
     return newValue -> {
-      for (Diffuser<A> diffuser : copiedChildren) {
-        diffuser.run(newValue);
+      for (Diffuser<?> diffuser : children) {
+        ((Diffuser<A>) diffuser).run(newValue);
       }
     };
   }
@@ -137,7 +248,7 @@ public final class Diffuser<A> {
    * @return a diffuser which wraps the diffuser parameter with an additional caching policy.
    */
   public static <A> Diffuser<A> intoWhen(DidChange<A> didChange, Diffuser<A> diffuser) {
-    return new Diffuser<>(didChange, diffuser::run);
+    return new Diffuser<>(didChange, null, null, Collections.<Diffuser<?>>singletonList(diffuser));
   }
 
   /**
@@ -158,6 +269,56 @@ public final class Diffuser<A> {
     return new Diffuser<>(didChange, effect);
   }
 
+  /**
+   * Create a Diffuser which runs its side-effect whenever the version of its input changes, for
+   * models which carry a version that is incremented on every change.
+   *
+   * <p>Only the version is cached, as a primitive long, so checking a model costs a single call to
+   * versionOf regardless of its size, and the model is not retained. This also works for a mutable
+   * model which is run again as the same instance after it was changed, where {@link #into(Effect)}
+   * would find it equal to itself.
+   *
+   * @param versionOf: a function which returns the version of a value.
+   * @param effect: a side-effect which should be run when the version changes.
+   * @param <A>: The type of the values received by this Diffuser.
+   * @return A Diffuser which runs its side-effect when the version of its input changes.
+   */
+  public static <A> Diffuser<A> intoVersioned(
+      ToLongFunction<? super A> versionOf, Effect<A> effect) {
+    return new Diffuser<>(
+        null,
+        Diffuser::notSame,
+        CacheStrategies.fingerprint(versionOf),
+        null,
+        effect,
+        Collections.emptyList());
+  }
+
+  /**
+   * Wrap a Diffuser so that it only runs when the version of its input changes, see {@link
+   * #intoVersioned(ToLongFunction, Effect)}.
+   *
+   * <p>The diffuser parameter keeps its own caches, so when it is run with the same mutable
+   * instance after a change, it should be versioned or created with {@link #intoAlways(Effect)}
+   * itself. Use {@link #intoAllVersioned(ToLongFunction, Collection)} rather than {@link
+   * #intoAll(Collection)} to merge several children.
+   *
+   * @param versionOf: a function which returns the version of a value.
+   * @param diffuser: the diffuser to wrap.
+   * @param <A>: The type of the values received by this Diffuser.
+   * @return A Diffuser which runs the diffuser parameter when the version of its input changes.
+   */
+  public static <A> Diffuser<A> intoVersioned(
+      ToLongFunction<? super A> versionOf, Diffuser<A> diffuser) {
+    return new Diffuser<>(
+        null,
+        Diffuser::notSame,
+        CacheStrategies.fingerprint(versionOf),
+        null,
+        null,
+        Collections.<Diffuser<?>>singletonList(diffuser));
+  }
+
   /**
    * Create a Diffuser from a side-effecting function. The Diffuser will cache its inputs using the
    * input type's definition of equality.
@@ -170,6 +331,78 @@ public final class Diffuser<A> {
     return new Diffuser<>(Diffuser::notEqual, effect);
   }
 
+  /**
+   * Create a named Diffuser from a side-effecting function. The Diffuser will cache its inputs
+   * using the input type's definition of equality, just like {@link #into(Effect)}, and its runs
+   * are reported to the installed {@link DiffuserMonitor}, if any.
+   *
+   * @param name: the name which identifies this Diffuser to the monitor, e.g. "header.title".
+   * @param effect: a side-effect which should be run when the input changes
+   * @param <A>: The type of the values received by this Diffuser.
+   * @return A named Diffuser which runs side-effect when its input changes.
+   */
+  public static <A> Diffuser<A> into(String name, Effect<A> effect) {
+    return named(name, into(effect));
+  }
+
+  /**
+   * Give a Diffuser a name, so that its runs are reported to the installed {@link DiffuserMonitor}.
+   * For a Diffuser with a cache, the monitor sees how often the input was unchanged, and how the
+   * time was split between checking the input and running the Diffuser's side-effect or children.
+   *
+   * <p>The returned Diffuser is a copy of the diffuser parameter with a cache of its own, which
+   * shares the side-effect and children of the original. When no monitor is installed, it costs
+   * exactly as much as the original.
+   *
+   * @param name: the name which identifies the Diffuser to the monitor, e.g. "header.title".
+   * @param diffuser: the Diffuser to name.
+   * @param <A>: The type of the values received by this Diffuser.
+   * @return A named copy of the diffuser parameter.
+   */
+  public static <A> Diffuser<A> named(String name, Diffuser<A> diffuser) {
+    if (name == null) {
+      throw new NullPointerException("name");
+    }
+    return new Diffuser<>(
+        name,
+        diffuser.didChange,
+        diffuser.cacheStrategy,
+        diffuser.transform,
+        diffuser.sideEffect,
+        diffuser.children);
+  }
+
+  /**
+   * Change how a Diffuser's cache remembers the last value it was run with. E.g., a leaf over a
+   * large immutable model can keep a fingerprint of its input instead of the model itself, see
+   * {@link CacheStrategies}.
+   *
+   * <p>The returned Diffuser is a copy of the diffuser parameter with a cache of its own, which
+   * shares the name, side-effect and children of the original. Only the cache of the diffuser
+   * parameter itself is affected, not the caches of its children.
+   *
+   * @param strategy: decides how the cache remembers values.
+   * @param diffuser: the Diffuser whose cache to change. It must have a cache, so Diffusers created
+   *     with {@link #intoAlways(Effect)} or {@link #map(Function, Diffuser)} are not accepted.
+   * @param <A>: The type of the values received by this Diffuser.
+   * @return A copy of the diffuser parameter which caches its input using the strategy.
+   */
+  public static <A> Diffuser<A> cachedBy(CacheStrategy strategy, Diffuser<A> diffuser) {
+    if (strategy == null) {
+      throw new NullPointerException("strategy");
+    }
+    if (diffuser.didChange == null) {
+      throw new IllegalArgumentException("Only a Diffuser with a cache can change its strategy");
+    }
+    return new Diffuser<>(
+        diffuser.name,
+        diffuser.didChange,
+        strategy,
+        diffuser.transform,
+        diffuser.sideEffect,
+        diffuser.children);
+  }
+
   /**
    * Create a Diffuser which will only run its side-effecting function once, when it receives its
    * first value.
@@ -183,6 +416,72 @@ public final class Diffuser<A> {
     return new Diffuser<>((a, b) -> false, effect);
   }
 
+  /**
+   * Create a Diffuser which runs its side-effect on an Executor instead of on the thread which
+   * calls {@link #run(Object)}. The Diffuser will cache its inputs using the input type's
+   * definition of equality, and that check stays on the calling thread.
+   *
+   * <p>The side-effect never runs concurrently with itself. When values change faster than the
+   * side-effect can keep up with, only the latest value waiting to run is kept, so a stale value is
+   * never run after a newer one. A side-effect which has already started is allowed to finish.
+   *
+   * @param executor: the Executor which runs the side-effect.
+   * @param effect: a side-effect which should be run when the input changes.
+   * @param <A>: The type of the values received by this Diffuser.
+   * @return A Diffuser which runs its side-effect on the executor when its input changes.
+   */
+  public static <A> Diffuser<A> intoAsync(Executor executor, Effect<A> effect) {
+    final CoalescingDiffuser<A> latest =
+        CoalescingDiffuser.coalescing(Schedulers.from(executor), intoAlways(effect));
+    return into(latest::run);
+  }
+
+  /**
+   * Create a Diffuser which starts asynchronous work whenever its input changes, and runs its
+   * side-effect with the result of the work that was started last. The Diffuser will cache its
+   * inputs using the input type's definition of equality.
+   *
+   * <p>When the input changes while older work is in flight, the older work is cancelled if its
+   * CompletionStage supports it, and its result is discarded either way, so a stale result is never
+   * passed to the side-effect. Work which completes exceptionally is ignored, so the work function
+   * should handle its own errors if they matter.
+   *
+   * <p>The side-effect runs on whichever thread completes the work, one result at a time, and a
+   * result is never applied after the result of newer work. Work which has already completed when
+   * the work function returns is applied right away, inside {@link #run(Object)}, like the
+   * side-effect of any other Diffuser. Note that CompletionStage is only available from API level
+   * 24 on Android.
+   *
+   * @param work: a function which starts the work for a value.
+   * @param effect: a side-effect which should be run with the result of the latest work.
+   * @param <A>: The type of the values received by this Diffuser.
+   * @param <B>: The type of the results of the work.
+   * @return A Diffuser which runs its side-effect with the result of the latest work.
+   */
+  public static <A, B> Diffuser<A> intoLatest(
+      Function<A, CompletionStage<B>> work, Effect<B> effect) {
+    final LatestResults<B> results = new LatestResults<>(effect);
+    final AtomicReference<CompletionStage<B>> inFlight = new AtomicReference<>();
+
+    return into(
+        value -> {
+          final long current = results.start();
+
+          final CompletionStage<B> stage = work.apply(value);
+          final CompletionStage<B> previous = inFlight.getAndSet(stage);
+          if (previous != null) {
+            cancel(previous);
+          }
+
+          stage.whenComplete(
+              (result, error) -> {
+                if (error == null) {
+                  results.complete(current, result);
+                }
+              });
+        });
+  }
+
   /**
    * Merge a list of Diffusers parameterized by the same type. No additional caching is added, All
    * the Diffusers will be called whenever {@link #run(Object)} is called.
@@ -210,6 +509,254 @@ public final class Diffuser<A> {
     return intoAll(Arrays.asList(children));
   }
 
+  /**
+   * Merge a list of Diffusers parameterized by the same type, which are only run when didChange
+   * reports that the input changed. This is the same thing as {@link #intoWhen(DidChange,
+   * Diffuser)} around {@link #intoAll(Collection)}, without the equality check of intoAll, e.g. for
+   * the root of a {@link DirtyMask}.
+   *
+   * @param didChange: A function which determines if the children should be run given the previous
+   *     value and the current value that the Diffuser is {@link #run(Object)} with. If {@link
+   *     #run(Object)} is called for the first time, the children run regardless, and this function
+   *     will not be run.
+   * @param children: the list of Diffusers to merge
+   * @param <A> The input type of the returned Diffuser
+   * @return A merged Diffuser which forwards changed values to all its children.
+   */
+  public static <A> Diffuser<A> intoAllWhen(
+      DidChange<A> didChange, Collection<Diffuser<A>> children) {
+    return new Diffuser<>(didChange, null, null, new ArrayList<Diffuser<?>>(children));
+  }
+
+  /**
+   * Merge a list of Diffusers parameterized by the same type, which are only run when the version
+   * of the input changes, see {@link #intoVersioned(ToLongFunction, Effect)}. Unlike {@link
+   * #intoAll(Collection)}, this also runs the children when a mutable input is run again as the
+   * same instance after it was changed.
+   *
+   * @param versionOf: a function which returns the version of a value.
+   * @param children: the list of Diffusers to merge
+   * @param <A> The input type of the returned Diffuser
+   * @return A merged Diffuser which forwards values with a new version to all its children.
+   */
+  public static <A> Diffuser<A> intoAllVersioned(
+      ToLongFunction<? super A> versionOf, Collection<Diffuser<A>> children) {
+    return new Diffuser<>(
+        null,
+        Diffuser::notSame,
+        CacheStrategies.fingerprint(versionOf),
+        null,
+        null,
+        new ArrayList<Diffuser<?>>(children));
+  }
+
+  /**
+   * Merge a list of Diffusers parameterized by the same type, running expensive children in
+   * parallel on a ForkJoinPool. Like {@link #intoAll(Collection)}, the children only run when the
+   * input changes, and each child keeps its own caches.
+   *
+   * <p>The cost of every child is estimated from the time its recent runs took. Children above the
+   * threshold, and children which have not run yet, are forked onto the pool, and the rest run on
+   * the calling thread. {@link #run(Object)} does not return until every child has finished. If
+   * children throw, the exception of the first one in the list is rethrown after all of them have
+   * run, with the others added as suppressed exceptions.
+   *
+   * <p>The children may run on several threads at once, so they must not depend on each other.
+   *
+   * @param pool: the ForkJoinPool to fork children onto.
+   * @param thresholdNanos: how long a child is expected to take, in nanoseconds, before it is worth
+   *     forking.
+   * @param children: the list of Diffusers to merge
+   * @param <A> The input type of the returned Diffuser
+   * @return A merged Diffuser which forwards any values it is {@link #run(Object)} with to all its
+   *     children, in parallel where it pays off.
+   */
+  public static <A> Diffuser<A> intoAllParallel(
+      ForkJoinPool pool, long thresholdNanos, Collection<Diffuser<A>> children) {
+    return new Diffuser<>(
+        Diffuser::notEqual, new ParallelChildren<>(pool, thresholdNanos, children));
+  }
+
+  /**
+   * Merge a list of Diffusers parameterized by the same type, running expensive children in
+   * parallel on a ForkJoinPool. See {@link #intoAllParallel(ForkJoinPool, long, Collection)}.
+   *
+   * @param pool: the ForkJoinPool to fork children onto.
+   * @param thresholdNanos: how long a child is expected to take, in nanoseconds, before it is worth
+   *     forking.
+   * @param children: the list of Diffusers to merge
+   * @param <A> The input type of the returned Diffuser
+   * @return A merged Diffuser which forwards any values it is {@link #run(Object)} with to all its
+   *     children, in parallel where it pays off.
+   */
+  @SafeVarargs
+  @SuppressWarnings("varargs")
+  public static <A> Diffuser<A> intoAllParallel(
+      ForkJoinPool pool, long thresholdNanos, Diffuser<A>... children) {
+    return intoAllParallel(pool, thresholdNanos, Arrays.asList(children));
+  }
+
+  /**
+   * Create a Diffuser which diffs every list it is run with against the previous one, and emits the
+   * inserts, removals and moves which turn the previous list into the new one. Items are identified
+   * using their definition of equality, so an item which is equal to an item in the previous list
+   * is never reported as changed.
+   *
+   * <p>The first list is emitted as a batch of inserts. Running the Diffuser with the same list
+   * instance twice in a row emits nothing, so lists must not be mutated after they have been passed
+   * to the Diffuser.
+   *
+   * @param sink: the receiver of the list operations.
+   * @param <T>: The type of the items in the lists received by this Diffuser.
+   * @return A Diffuser which emits the difference between subsequent lists to the sink.
+   */
+  public static <T> Diffuser<List<T>> intoListChanges(ListUpdateSink<T> sink) {
+    return intoListChanges(null, null, sink);
+  }
+
+  /**
+   * Create a Diffuser which diffs every list it is run with against the previous one, and emits the
+   * inserts, removals, moves and in-place changes which turn the previous list into the new one.
+   *
+   * <p>Two items are the same item if their identities are equal, and a moved item keeps its
+   * identity. An item that is kept is reported as changed when contentChanged says so, after all
+   * inserts, removals and moves of the same update.
+   *
+   * <p>The first list is emitted as a batch of inserts. Running the Diffuser with the same list
+   * instance twice in a row emits nothing, so lists must not be mutated after they have been passed
+   * to the Diffuser.
+   *
+   * @param identity: a function which returns what identifies an item, such as its id. When null,
+   *     the item identifies itself.
+   * @param contentChanged: a function which determines if an item changed, given its old and new
+   *     versions. When null, items are never reported as changed.
+   * @param sink: the receiver of the list operations.
+   * @param <T>: The type of the items in the lists received by this Diffuser.
+   * @return A Diffuser which emits the difference between subsequent lists to the sink.
+   */
+  public static <T> Diffuser<List<T>> intoListChanges(
+      Function<T, ?> identity, DidChange<T> contentChanged, ListUpdateSink<T> sink) {
+    return intoAlways(new ListChanges<>(identity, contentChanged, sink));
+  }
+
+  /**
+   * Create a Diffuser which runs every item of a list through a Diffuser of its own, identified by
+   * a key.
+   *
+   * <p>A row Diffuser is created by rowFactory the first time its key is seen, and keeps its caches
+   * for as long as the key is part of the input. Items which are the same instance as the last time
+   * their key was seen are skipped, so the cost of an update grows with the number of replaced
+   * items rather than with the length of the list. Keys are expected to be unique within a list.
+   *
+   * @param key: a function which returns the key of an item, such as its id.
+   * @param rowFactory: a function which creates the Diffuser for a new key.
+   * @param lifecycle: notified when a key is seen for the first time, and when it disappears from
+   *     the input. May be null.
+   * @param <T>: The type of the items in the lists received by this Diffuser.
+   * @param <K>: The type of the keys identifying items.
+   * @return A Diffuser which forwards every replaced item to the Diffuser of its key.
+   */
+  public static <T, K> Diffuser<List<T>> intoEachKeyed(
+      Function<T, K> key, Function<K, Diffuser<T>> rowFactory, RowLifecycleSink<K> lifecycle) {
+    return intoAlways(new EachKeyed<>(key, rowFactory, lifecycle));
+  }
+
+  /**
+   * Create a Diffuser which runs every item of a list through a Diffuser of its own, identified by
+   * a key. This is the same thing as {@link #intoEachKeyed(Function, Function, RowLifecycleSink)}
+   * without lifecycle notifications.
+   *
+   * @param key: a function which returns the key of an item, such as its id.
+   * @param rowFactory: a function which creates the Diffuser for a new key.
+   * @param <T>: The type of the items in the lists received by this Diffuser.
+   * @param <K>: The type of the keys identifying items.
+   * @return A Diffuser which forwards every replaced item to the Diffuser of its key.
+   */
+  public static <T, K> Diffuser<List<T>> intoEachKeyed(
+      Function<T, K> key, Function<K, Diffuser<T>> rowFactory) {
+    return intoEachKeyed(key, rowFactory, null);
+  }
+
+  /**
+   * Create a Diffuser which compares every Map it is run with against the previous one, and runs
+   * its side-effect with the added, removed and updated entries. Values are compared using their
+   * definition of equality.
+   *
+   * <p>The side-effect is not run when no entry changed, and running the Diffuser with the same Map
+   * instance twice in a row does not even compare the entries, so Maps must not be mutated after
+   * they have been passed to the Diffuser. The first Map is compared against an empty Map.
+   *
+   * @param effect: a side-effect which should be run with the changes to the Map.
+   * @param <K>: The type of the keys of the Maps received by this Diffuser.
+   * @param <V>: The type of the values of the Maps received by this Diffuser.
+   * @return A Diffuser which runs its side-effect with the changes between subsequent Maps.
+   */
+  public static <K, V> Diffuser<Map<K, V>> intoMapDelta(Effect<MapDelta<K, V>> effect) {
+    return intoMapDelta((a, b) -> a == null || !a.equals(b), effect);
+  }
+
+  /**
+   * Create a Diffuser which compares every Map it is run with against the previous one, and runs
+   * its side-effect with the added, removed and updated entries.
+   *
+   * <p>The side-effect is not run when no entry changed, and running the Diffuser with the same Map
+   * instance twice in a row does not even compare the entries, so Maps must not be mutated after
+   * they have been passed to the Diffuser. The first Map is compared against an empty Map.
+   *
+   * @param valueChanged: a function which determines if the value of a key was updated, given its
+   *     previous and current value. It is not run for values which are the same instance.
+   * @param effect: a side-effect which should be run with the changes to the Map.
+   * @param <K>: The type of the keys of the Maps received by this Diffuser.
+   * @param <V>: The type of the values of the Maps received by this Diffuser.
+   * @return A Diffuser which runs its side-effect with the changes between subsequent Maps.
+   */
+  public static <K, V> Diffuser<Map<K, V>> intoMapDelta(
+      DidChange<V> valueChanged, Effect<MapDelta<K, V>> effect) {
+    final AtomicReference<Map<K, V>> previous = new AtomicReference<>(Collections.emptyMap());
+
+    return intoAlways(
+        map -> {
+          final Map<K, V> previousMap = previous.get();
+          if (previousMap == map) {
+            return;
+          }
+          final MapDelta<K, V> delta = MapDelta.between(previousMap, map, valueChanged);
+          if (!delta.isEmpty()) {
+            effect.run(delta);
+          }
+          previous.set(map);
+        });
+  }
+
+  /**
+   * Create a Diffuser which compares every Set it is run with against the previous one, and runs
+   * its side-effect with the added and removed elements.
+   *
+   * <p>The side-effect is not run when no element changed, and running the Diffuser with the same
+   * Set instance twice in a row does not even compare the elements, so Sets must not be mutated
+   * after they have been passed to the Diffuser. The first Set is compared against an empty Set.
+   *
+   * @param effect: a side-effect which should be run with the changes to the Set.
+   * @param <T>: The type of the elements of the Sets received by this Diffuser.
+   * @return A Diffuser which runs its side-effect with the changes between subsequent Sets.
+   */
+  public static <T> Diffuser<Set<T>> intoSetDelta(Effect<SetDelta<T>> effect) {
+    final AtomicReference<Set<T>> previous = new AtomicReference<>(Collections.emptySet());
+
+    return intoAlways(
+        set -> {
+          final Set<T> previousSet = previous.get();
+          if (previousSet == set) {
+            return;
+          }
+          final SetDelta<T> delta = SetDelta.between(previousSet, set);
+          if (!delta.isEmpty()) {
+            effect.run(delta);
+          }
+          previous.set(set);
+        });
+  }
+
   /**
    * Change the input type of a Diffuser using a transformation function. The transformation
    * function will always be run.
@@ -222,7 +769,153 @@ public final class Diffuser<A> {
    * @return A Diffuser with a transformed input type.
    */
   public static <A, B> Diffuser<A> map(Function<A, B> transform, Diffuser<B> diffuser) {
-    return new Diffuser<>(it -> diffuser.run(transform.apply(it)));
+    return new Diffuser<>(null, transform, null, Collections.<Diffuser<?>>singletonList(diffuser));
+  }
+
+  /**
+   * Change the input type of a Diffuser using a transformation function, which is only run when the
+   * input changes.
+   *
+   * <p>Unlike {@link #map(Function, Diffuser)}, neither the transformation function nor the
+   * Diffuser parameter is run when didChange reports that the input is unchanged, so an unchanged
+   * input only costs a single call to didChange. This is useful when the transformation is
+   * expensive, e.g. when it formats strings or sorts a list.
+   *
+   * @param didChange: A function which determines if the input changed, given the previous value
+   *     and the current value that the Diffuser is {@link #run(Object)} with. If {@link
+   *     #run(Object)} is called for the first time, the transformation is run regardless, and this
+   *     function will not be run.
+   * @param transform: The function which determines how the Diffuser parameters input should be
+   *     changed.
+   * @param diffuser: The Diffuser you wish to change the input type of.
+   * @param <A> The type of the Diffuser being converted
+   * @param <B> The desired input type of the returned Diffuser
+   * @return A Diffuser with a transformed input type, which skips the transformation and the
+   *     diffuser parameter when the input is unchanged.
+   */
+  public static <A, B> Diffuser<A> mapWhen(
+      DidChange<A> didChange, Function<A, B> transform, Diffuser<B> diffuser) {
+    return new Diffuser<>(
+        didChange, transform, null, Collections.<Diffuser<?>>singletonList(diffuser));
+  }
+
+  /**
+   * Change the input type of a Diffuser using a transformation function, which is only run when the
+   * version of the input changes.
+   *
+   * <p>This is the same thing as {@link #mapWhen(DidChange, Function, Diffuser)}, except that only
+   * the version of the input is cached, as a primitive long, see {@link
+   * #intoVersioned(ToLongFunction, Effect)}. An unchanged input costs a single call to versionOf,
+   * and neither the transformation nor the diffuser parameter is run.
+   *
+   * @param versionOf: a function which returns the version of a value.
+   * @param transform: The function which determines how the Diffuser parameters input should be
+   *     changed.
+   * @param diffuser: The Diffuser you wish to change the input type of.
+   * @param <A> The type of the Diffuser being converted
+   * @param <B> The desired input type of the returned Diffuser
+   * @return A Diffuser with a transformed input type, which skips the transformation and the
+   *     diffuser parameter when the version of the input is unchanged.
+   */
+  public static <A, B> Diffuser<A> mapVersioned(
+      ToLongFunction<? super A> versionOf, Function<A, B> transform, Diffuser<B> diffuser) {
+    return new Diffuser<>(
+        null,
+        Diffuser::notSame,
+        CacheStrategies.fingerprint(versionOf),
+        transform,
+        null,
+        Collections.<Diffuser<?>>singletonList(diffuser));
+  }
+
+  /**
+   * Change the input type of a Diffuser using a transformation function, which is only run when the
+   * input is a different instance than the last time.
+   *
+   * <p>This is the same thing as {@link #mapWhen(DidChange, Function, Diffuser)} with a didChange
+   * function that compares references, which suits immutable models where an unchanged part of the
+   * model is the very same object as before.
+   *
+   * @param transform: The function which determines how the Diffuser parameters input should be
+   *     changed.
+   * @param diffuser: The Diffuser you wish to change the input type of.
+   * @param <A> The type of the Diffuser being converted
+   * @param <B> The desired input type of the returned Diffuser
+   * @return A Diffuser with a transformed input type, which skips the transformation and the
+   *     diffuser parameter when it is run with the same instance twice in a row.
+   */
+  public static <A, B> Diffuser<A> mapMemoized(Function<A, B> transform, Diffuser<B> diffuser) {
+    return mapWhen(Diffuser::notSame, transform, diffuser);
+  }
+
+  /**
+   * Change the input type of an {@link IntDiffuser} using a transformation function which returns a
+   * primitive int. The transformation function will always be run, but its result is never boxed.
+   *
+   * @param transform: The function which determines how the input should be converted into an int.
+   * @param diffuser: The IntDiffuser you wish to change the input type of.
+   * @param <A> The desired input type of the returned Diffuser
+   * @return A Diffuser which forwards its transformed input to an IntDiffuser.
+   */
+  public static <A> Diffuser<A> mapToInt(ToIntFunction<A> transform, IntDiffuser diffuser) {
+    return new Diffuser<>(it -> diffuser.run(transform.applyAsInt(it)));
+  }
+
+  /**
+   * Change the input type of a {@link LongDiffuser} using a transformation function which returns a
+   * primitive long. The transformation function will always be run, but its result is never boxed.
+   *
+   * @param transform: The function which determines how the input should be converted into a long.
+   * @param diffuser: The LongDiffuser you wish to change the input type of.
+   * @param <A> The desired input type of the returned Diffuser
+   * @return A Diffuser which forwards its transformed input to a LongDiffuser.
+   */
+  public static <A> Diffuser<A> mapToLong(ToLongFunction<A> transform, LongDiffuser diffuser) {
+    return new Diffuser<>(it -> diffuser.run(transform.applyAsLong(it)));
+  }
+
+  /**
+   * Change the input type of a {@link DoubleDiffuser} using a transformation function which returns
+   * a primitive double. The transformation function will always be run, but its result is never
+   * boxed.
+   *
+   * @param transform: The function which determines how the input should be converted into a
+   *     double.
+   * @param diffuser: The DoubleDiffuser you wish to change the input type of.
+   * @param <A> The desired input type of the returned Diffuser
+   * @return A Diffuser which forwards its transformed input to a DoubleDiffuser.
+   */
+  public static <A> Diffuser<A> mapToDouble(
+      ToDoubleFunction<A> transform, DoubleDiffuser diffuser) {
+    return new Diffuser<>(it -> diffuser.run(transform.applyAsDouble(it)));
+  }
+
+  /**
+   * Change the input type of a {@link BooleanDiffuser} using a transformation function which
+   * returns a primitive boolean. The transformation function will always be run, but its result is
+   * never boxed.
+   *
+   * @param transform: The function which determines how the input should be converted into a
+   *     boolean.
+   * @param diffuser: The BooleanDiffuser you wish to change the input type of.
+   * @param <A> The desired input type of the returned Diffuser
+   * @return A Diffuser which forwards its transformed input to a BooleanDiffuser.
+   */
+  public static <A> Diffuser<A> mapToBoolean(
+      ToBooleanFunction<A> transform, BooleanDiffuser diffuser) {
+    return new Diffuser<>(it -> diffuser.run(transform.applyAsBoolean(it)));
+  }
+
+  private static void cancel(CompletionStage<?> stage) {
+    try {
+      stage.toCompletableFuture().cancel(false);
+    } catch (UnsupportedOperationException e) {
+      // This stage cannot be cancelled, so its result is only discarded.
+    }
+  }
+
+  private static <A> boolean notSame(A a, A b) {
+    return a != b;
   }
 
   private static <A> boolean notEqual(A a, A b) {
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+/**
+ * Receives a callback for every run of a named Diffuser, see {@link Diffuser#named(String,
+ * Diffuser)}.
+ *
+ * <p>A monitor is installed by listing its class name in a {@code
+ * META-INF/services/com.spotify.diffuser.diffuser.DiffuserMonitor} resource, and it is loaded once,
+ * using {@link java.util.ServiceLoader}, the first time a Diffuser is created. When no monitor is
+ * installed, named Diffusers are exactly as cheap as unnamed ones. {@link DiffuserStats} is a
+ * monitor which keeps counters for every name.
+ *
+ * <p>Callbacks happen on the thread which runs the Diffuser, while its lock is held, so they should
+ * be fast and must not run Diffusers themselves.
+ */
+public interface DiffuserMonitor {
+
+  /**
+   * Called after a named Diffuser has run.
+   *
+   * @param name: the name of the Diffuser.
+   * @param changed: false if the Diffuser's cache found its input unchanged, and skipped its
+   *     side-effect or children.
+   * @param checkNanos: the time spent deciding whether the input changed.
+   * @param effectNanos: the time spent in the side-effect or children, 0 when they were skipped.
+   */
+  void onRun(String name, boolean changed, long checkNanos, long effectNanos);
+
+  /**
+   * Called after a {@link CompiledDiffuser} whose root is named has run, in addition to {@link
+   * #onRun(String, boolean, long, long)} for the root itself. Diffusers which are run without being
+   * compiled don't know whether they are a root, so they never call this.
+   *
+   * @param name: the name of the root.
+   * @param durationNanos: the time the whole run took.
+   * @param effectsRun: the number of side-effects which ran.
+   * @param nodesSkipped: the number of nodes which were skipped, counting a node whose cache found
+   *     its input unchanged together with all nodes below it.
+   */
+  default void onRootRun(String name, long durationNanos, int effectsRun, int nodesSkipped) {}
+
+  /**
+   * Called once, when the monitor is loaded. A monitor which returns false is not installed, e.g.
+   * because what it records is not available on this JVM, so that named Diffusers stay as cheap as
+   * unnamed ones.
+   *
+   * @return false if this monitor should not be installed.
+   */
+  default boolean isEnabled() {
+    return true;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/** Gives access to the {@link DiffuserMonitor} which was installed, if any. */
+public final class DiffuserMonitors {
+  // Read when Diffusers are created and compiled, so that nothing is instrumented without it.
+  private static volatile DiffuserMonitor monitor = load();
+
+  private DiffuserMonitors() {}
+
+  /**
+   * @return The DiffuserMonitor which was loaded from {@code
+   *     META-INF/services/com.spotify.diffuser.diffuser.DiffuserMonitor}, or null if there is none.
+   *     When more than one monitor is listed, the returned monitor forwards to all of them.
+   */
+  public static DiffuserMonitor installed() {
+    return monitor;
+  }
+
+  // Lets tests monitor the Diffusers they create, without instrumenting every other test.
+  static void install(DiffuserMonitor newMonitor) {
+    monitor = newMonitor;
+  }
+
+  private static DiffuserMonitor load() {
+    return combine(
+        ServiceLoader.load(DiffuserMonitor.class, DiffuserMonitor.class.getClassLoader()));
+  }
+
+  static DiffuserMonitor combine(Iterable<DiffuserMonitor> loaded) {
+    final List<DiffuserMonitor> monitors = new ArrayList<>();
+    for (DiffuserMonitor monitor : loaded) {
+      if (monitor.isEnabled()) {
+        monitors.add(monitor);
+      }
+    }
+
+    if (monitors.isEmpty()) {
+      return null;
+    }
+    if (monitors.size() == 1) {
+      return monitors.get(0);
+    }
+
+    final DiffuserMonitor[] all = monitors.toArray(new DiffuserMonitor[0]);
+    return new DiffuserMonitor() {
+      @Override
+      public void onRun(String name, boolean changed, long checkNanos, long effectNanos) {
+        for (DiffuserMonitor monitor : all) {
+          monitor.onRun(name, changed, checkNanos, effectNanos);
+        }
+      }
+
+      @Override
+      public void onRootRun(String name, long durationNanos, int effectsRun, int nodesSkipped) {
+        for (DiffuserMonitor monitor : all) {
+          monitor.onRootRun(name, durationNanos, effectsRun, nodesSkipped);
+        }
+      }
+    };
+  }
+}
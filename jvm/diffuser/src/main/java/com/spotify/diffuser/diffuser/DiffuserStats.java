@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link DiffuserMonitor} which counts the runs, skips and time spent of every named Diffuser.
+ *
+ * <p>It can be installed as is, and read through {@link DiffuserMonitors#installed()}, or used by a
+ * custom monitor which also reports somewhere else.
+ */
+public class DiffuserStats implements DiffuserMonitor {
+  private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+
+  @Override
+  public void onRun(String name, boolean changed, long checkNanos, long effectNanos) {
+    Counters node = counters.get(name);
+    if (node == null) {
+      final Counters created = new Counters();
+      node = counters.putIfAbsent(name, created);
+      if (node == null) {
+        node = created;
+      }
+    }
+
+    node.runs.incrementAndGet();
+    if (!changed) {
+      node.skips.incrementAndGet();
+    }
+    node.checkNanos.addAndGet(checkNanos);
+    node.effectNanos.addAndGet(effectNanos);
+  }
+
+  /** @return The names of all Diffusers which have run so far. */
+  public List<String> names() {
+    return new ArrayList<>(counters.keySet());
+  }
+
+  /** @return How many times Diffusers with this name have run. */
+  public long runs(String name) {
+    final Counters node = counters.get(name);
+    return node != null ? node.runs.get() : 0;
+  }
+
+  /** @return How many times Diffusers with this name found their input unchanged. */
+  public long skips(String name) {
+    final Counters node = counters.get(name);
+    return node != null ? node.skips.get() : 0;
+  }
+
+  /** @return The total time Diffusers with this name spent deciding whether their input changed. */
+  public long checkNanos(String name) {
+    final Counters node = counters.get(name);
+    return node != null ? node.checkNanos.get() : 0;
+  }
+
+  /** @return The total time Diffusers with this name spent in their side-effects or children. */
+  public long effectNanos(String name) {
+    final Counters node = counters.get(name);
+    return node != null ? node.effectNanos.get() : 0;
+  }
+
+  /** Reset all counters. */
+  public void reset() {
+    counters.clear();
+  }
+
+  private static final class Counters {
+    final AtomicLong runs = new AtomicLong();
+    final AtomicLong skips = new AtomicLong();
+    final AtomicLong checkNanos = new AtomicLong();
+    final AtomicLong effectNanos = new AtomicLong();
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+/**
+ * The fields of a model which changed since the previous run, computed once at the root of a tree
+ * instead of by every leaf.
+ *
+ * <p>A DirtyMask is a {@link DidChange} for the root, e.g. through {@link
+ * Diffuser#intoWhen(DidChange, Diffuser)} or {@link Diffuser#intoAllWhen(DidChange,
+ * java.util.Collection)}, which compares the previous and current model field by field, using a
+ * {@link FieldComparator}, and reports a change when any field changed. Nodes below the root then
+ * use {@link #changed(int)} or {@link #anyChanged(int...)} as their didChange, which only test bits
+ * of the mask, so a whole subtree is skipped with a single AND:
+ *
+ * <pre>{@code
+ * DirtyMask<Track> mask = new DirtyMask<>(3, comparator);
+ * Diffuser<Track> diffuser =
+ *     intoAllWhen(mask, Arrays.asList(
+ *         intoWhen(mask.changed(TITLE), map(Track::title, intoAlways(titleView::setText))),
+ *         intoWhen(mask.anyChanged(ARTIST, COVER), header)));
+ * }</pre>
+ *
+ * <p>The {@code <Model>Diffusers} classes generated for {@link Diffusable} classes have a field
+ * index per property, a comparator, and a {@code buildMasked()} method which builds such a tree.
+ *
+ * <p>A mask belongs to a single root, and the nodes below it must only be run by that root, since
+ * they read the mask of the root's current run. Like any Diffuser, the root must not be run again
+ * from its own side-effects. On the first run, every node runs regardless of the mask, because
+ * their caches are empty.
+ *
+ * @param <A> The type of the model which is compared at the root
+ */
+public final class DirtyMask<A> implements DidChange<A> {
+
+  /**
+   * Compares two versions of a model field by field.
+   *
+   * @param <A> The type of the model
+   */
+  public interface FieldComparator<A> {
+
+    /**
+     * Set the bit of every field which differs between the two models.
+     *
+     * @param previous: the model the root was last run with.
+     * @param current: the model the root is being run with.
+     * @param mask: an empty mask, to {@link DirtyMask#set(int)} changed fields in.
+     */
+    void compare(A previous, A current, DirtyMask<A> mask);
+  }
+
+  private final int fieldCount;
+  private final FieldComparator<A> comparator;
+  private final long[] words;
+
+  /**
+   * @param fieldCount: the number of fields, which are numbered from 0.
+   * @param comparator: compares two versions of the model.
+   */
+  public DirtyMask(int fieldCount, FieldComparator<A> comparator) {
+    if (fieldCount < 0) {
+      throw new IllegalArgumentException("fieldCount must not be negative");
+    }
+    this.fieldCount = fieldCount;
+    this.comparator = comparator;
+    this.words = new long[(fieldCount + 63) >>> 6];
+  }
+
+  /**
+   * Compute the mask for a new model, called by the root's cache.
+   *
+   * @return true if any field changed.
+   */
+  @Override
+  public boolean test(A previous, A current) {
+    for (int i = 0; i < words.length; i++) {
+      words[i] = 0;
+    }
+    comparator.compare(previous, current, this);
+    for (long word : words) {
+      if (word != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Mark a field as changed, called by the {@link FieldComparator}.
+   *
+   * @param field: the index of the field.
+   */
+  public void set(int field) {
+    checkField(field);
+    words[field >>> 6] |= 1L << field;
+  }
+
+  /**
+   * @param field: the index of the field.
+   * @return true if the field changed in the current run of the root.
+   */
+  public boolean isSet(int field) {
+    checkField(field);
+    return (words[field >>> 6] & (1L << field)) != 0;
+  }
+
+  /**
+   * Create a didChange for a node below the root, which reports a change when a field changed.
+   *
+   * @param field: the index of the field.
+   * @param <T> The type of the values received by the node.
+   * @return A didChange which only tests a bit of the mask.
+   */
+  public <T> DidChange<T> changed(int field) {
+    checkField(field);
+    final int word = field >>> 6;
+    final long bit = 1L << field;
+    return (previous, current) -> (words[word] & bit) != 0;
+  }
+
+  /**
+   * Create a didChange for a node below the root, which reports a change when any of the fields
+   * changed, e.g. for a subtree which reads several fields.
+   *
+   * @param fields: the indices of the fields.
+   * @param <T> The type of the values received by the node.
+   * @return A didChange which tests all of the fields with one AND per 64 fields.
+   */
+  public <T> DidChange<T> anyChanged(int... fields) {
+    final long[] selection = new long[words.length];
+    for (int field : fields) {
+      checkField(field);
+      selection[field >>> 6] |= 1L << field;
+    }
+    if (selection.length == 1) {
+      final long bits = selection[0];
+      return (previous, current) -> (words[0] & bits) != 0;
+    }
+    return (previous, current) -> {
+      for (int i = 0; i < selection.length; i++) {
+        if ((words[i] & selection[i]) != 0) {
+          return true;
+        }
+      }
+      return false;
+    };
+  }
+
+  private void checkField(int field) {
+    if (field < 0 || field >= fieldCount) {
+      throw new IndexOutOfBoundsException(
+          "field " + field + " is not within [0, " + fieldCount + ")");
+    }
+  }
+}
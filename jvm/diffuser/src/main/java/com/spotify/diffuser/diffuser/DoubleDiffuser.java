@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import com.spotify.diffuser.DoubleEffect;
+
+/**
+ * A {@link Diffuser} for primitive double values.
+ *
+ * <p>A DoubleDiffuser behaves just like a Diffuser&lt;Double&gt;, but it caches its last value in a
+ * primitive field and never boxes its input, so running it does not allocate. Use {@link
+ * Diffuser#mapToDouble} to plug it into a tree of Diffusers.
+ */
+public final class DoubleDiffuser {
+  private final DoubleDidChange didChange;
+  private final DoubleEffect effect;
+
+  private boolean hasCachedValue;
+  private double cachedValue;
+
+  private DoubleDiffuser(DoubleDidChange didChange, DoubleEffect effect) {
+    this.didChange = didChange;
+    this.effect = effect;
+  }
+
+  /**
+   * Run the side-effect of this DoubleDiffuser if it hasn't been run before, or if the newValue
+   * parameter is classified as different from the last time it ran.
+   *
+   * <p>The value you supply will be used as the cache the next time this function is called.
+   *
+   * @param newValue: The value to execute side effects based on.
+   */
+  public synchronized void run(double newValue) {
+    if (!hasCachedValue || didChange.test(cachedValue, newValue)) {
+      effect.run(newValue);
+    }
+    cachedValue = newValue;
+    hasCachedValue = true;
+  }
+
+  /**
+   * Create a DoubleDiffuser which always executes its side-effect regardless of the value.
+   *
+   * @param effect: The side-effect which should be performed when {@link #run(double)} is called on
+   *     this DoubleDiffuser.
+   * @return A DoubleDiffuser which always executes its side-effect when given a value.
+   */
+  public static DoubleDiffuser intoAlways(DoubleEffect effect) {
+    return new DoubleDiffuser((a, b) -> true, effect);
+  }
+
+  /**
+   * Create a DoubleDiffuser by wrapping a side-effecting function with a caching layer.
+   *
+   * @param didChange: A function which determines if the side-effect should be executed given the
+   *     previous value and the current value that the DoubleDiffuser is {@link #run(double)} with.
+   *     If {@link #run(double)} is called for the first time, the side-effect will be executed
+   *     regardless, and this function will not be run.
+   * @param effect: The side-effect to execute
+   * @return A DoubleDiffuser which runs its side-effect when didChange says that its input changed.
+   */
+  public static DoubleDiffuser intoWhen(DoubleDidChange didChange, DoubleEffect effect) {
+    return new DoubleDiffuser(didChange, effect);
+  }
+
+  /**
+   * Create a DoubleDiffuser from a side-effecting function. The DoubleDiffuser will cache its
+   * inputs and compare them the same way {@link Double#equals(Object)} does, so {@code NaN} is
+   * equal to itself and {@code 0.0} is different from {@code -0.0}.
+   *
+   * @param effect: a side-effect which should be run when the input changes
+   * @return A DoubleDiffuser which runs side-effect when its input changes.
+   */
+  public static DoubleDiffuser into(DoubleEffect effect) {
+    return new DoubleDiffuser(
+        (a, b) -> Double.doubleToLongBits(a) != Double.doubleToLongBits(b), effect);
+  }
+
+  /**
+   * Create a DoubleDiffuser which will only run its side-effecting function once, when it receives
+   * its first value.
+   *
+   * @param effect: a side-effect which should be run once.
+   * @return A DoubleDiffuser which only runs its side-effect once the first time {@link
+   *     #run(double)} is called on it.
+   */
+  public static DoubleDiffuser intoOnce(DoubleEffect effect) {
+    return new DoubleDiffuser((a, b) -> false, effect);
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import com.spotify.diffuser.Effect;
+import com.spotify.diffuser.Function;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps one row Diffuser per key, and runs each row of a list through the Diffuser of its key.
+ *
+ * <p>A row which is the same instance as the last time its key was seen is skipped without running
+ * its Diffuser, so an update where few rows were replaced costs one lookup and one reference
+ * comparison per unchanged row. Rows whose keys disappeared are found by stamping every visited
+ * entry with the current generation, and are only looked for when fewer entries were visited than
+ * there are in the map.
+ */
+final class EachKeyed<T, K> implements Effect<List<T>> {
+  private final Function<T, K> key;
+  private final Function<K, Diffuser<T>> rowFactory;
+  private final RowLifecycleSink<K> lifecycle;
+
+  private final Map<K, Row<T>> rows = new HashMap<>();
+  private long generation;
+
+  EachKeyed(
+      Function<T, K> key, Function<K, Diffuser<T>> rowFactory, RowLifecycleSink<K> lifecycle) {
+    this.key = key;
+    this.rowFactory = rowFactory;
+    this.lifecycle = lifecycle;
+  }
+
+  @Override
+  public void run(List<T> values) {
+    final long current = ++generation;
+    int visited = 0;
+
+    for (int i = 0, size = values.size(); i < size; i++) {
+      final T value = values.get(i);
+      final K rowKey = key.apply(value);
+
+      Row<T> row = rows.get(rowKey);
+      if (row == null) {
+        row = new Row<>(rowFactory.apply(rowKey));
+        rows.put(rowKey, row);
+        if (lifecycle != null) {
+          lifecycle.onCreated(rowKey);
+        }
+      }
+
+      if (row.generation != current) {
+        row.generation = current;
+        visited++;
+      }
+
+      if (!row.hasValue || row.value != value) {
+        row.diffuser.run(value);
+        row.value = value;
+        row.hasValue = true;
+      }
+    }
+
+    if (visited == rows.size()) {
+      return;
+    }
+
+    final Iterator<Map.Entry<K, Row<T>>> iterator = rows.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final Map.Entry<K, Row<T>> entry = iterator.next();
+      if (entry.getValue().generation != current) {
+        iterator.remove();
+        if (lifecycle != null) {
+          lifecycle.onDisposed(entry.getKey());
+        }
+      }
+    }
+  }
+
+  private static final class Row<T> {
+    final Diffuser<T> diffuser;
+    T value;
+    boolean hasValue;
+    long generation;
+
+    Row(Diffuser<T> diffuser) {
+      this.diffuser = diffuser;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import com.spotify.diffuser.IntEffect;
+
+/**
+ * A {@link Diffuser} for primitive int values.
+ *
+ * <p>An IntDiffuser behaves just like a Diffuser&lt;Integer&gt;, but it caches its last value in a
+ * primitive field and never boxes its input, so running it does not allocate. Use {@link
+ * Diffuser#mapToInt} to plug it into a tree of Diffusers.
+ */
+public final class IntDiffuser {
+  private final IntDidChange didChange;
+  private final IntEffect effect;
+
+  private boolean hasCachedValue;
+  private int cachedValue;
+
+  private IntDiffuser(IntDidChange didChange, IntEffect effect) {
+    this.didChange = didChange;
+    this.effect = effect;
+  }
+
+  /**
+   * Run the side-effect of this IntDiffuser if it hasn't been run before, or if the newValue
+   * parameter is classified as different from the last time it ran.
+   *
+   * <p>The value you supply will be used as the cache the next time this function is called.
+   *
+   * @param newValue: The value to execute side effects based on.
+   */
+  public synchronized void run(int newValue) {
+    if (!hasCachedValue || didChange.test(cachedValue, newValue)) {
+      effect.run(newValue);
+    }
+    cachedValue = newValue;
+    hasCachedValue = true;
+  }
+
+  /**
+   * Create an IntDiffuser which always executes its side-effect regardless of the value.
+   *
+   * @param effect: The side-effect which should be performed when {@link #run(int)} is called on
+   *     this IntDiffuser.
+   * @return An IntDiffuser which always executes its side-effect when given a value.
+   */
+  public static IntDiffuser intoAlways(IntEffect effect) {
+    return new IntDiffuser((a, b) -> true, effect);
+  }
+
+  /**
+   * Create an IntDiffuser by wrapping a side-effecting function with a caching layer.
+   *
+   * @param didChange: A function which determines if the side-effect should be executed given the
+   *     previous value and the current value that the IntDiffuser is {@link #run(int)} with. If
+   *     {@link #run(int)} is called for the first time, the side-effect will be executed
+   *     regardless, and this function will not be run.
+   * @param effect: The side-effect to execute
+   * @return An IntDiffuser which runs its side-effect when didChange says that its input changed.
+   */
+  public static IntDiffuser intoWhen(IntDidChange didChange, IntEffect effect) {
+    return new IntDiffuser(didChange, effect);
+  }
+
+  /**
+   * Create an IntDiffuser from a side-effecting function. The IntDiffuser will cache its inputs and
+   * compare them using {@code ==}.
+   *
+   * @param effect: a side-effect which should be run when the input changes
+   * @return An IntDiffuser which runs side-effect when its input changes.
+   */
+  public static IntDiffuser into(IntEffect effect) {
+    return new IntDiffuser((a, b) -> a != b, effect);
+  }
+
+  /**
+   * Create an IntDiffuser which will only run its side-effecting function once, when it receives
+   * its first value.
+   *
+   * @param effect: a side-effect which should be run once.
+   * @return An IntDiffuser which only runs its side-effect once the first time {@link #run(int)} is
+   *     called on it.
+   */
+  public static IntDiffuser intoOnce(IntEffect effect) {
+    return new IntDiffuser((a, b) -> false, effect);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import com.spotify.diffuser.Effect;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Passes the results of numbered work to a side-effect, dropping every result whose work is no
+ * longer the latest, see {@link Diffuser#intoLatest(com.spotify.diffuser.Function, Effect)}.
+ *
+ * <p>Results go through a single slot, like the values of a {@link CoalescingDiffuser}. Whichever
+ * thread finds the slot filled and nobody draining it runs the side-effect, so the side-effect
+ * never runs concurrently with itself, and a result is only applied if it is newer than the last
+ * one applied. A thread which completes work while another one is draining only leaves its result
+ * in the slot, so it never waits for the side-effect.
+ */
+final class LatestResults<B> {
+  private final Effect<B> effect;
+  private final AtomicLong generation = new AtomicLong();
+  private final AtomicReference<Result<B>> pending = new AtomicReference<>();
+  private final AtomicBoolean draining = new AtomicBoolean();
+  // Only read and written while draining.
+  private long applied;
+
+  LatestResults(Effect<B> effect) {
+    this.effect = effect;
+  }
+
+  /** @return The generation of new work, which makes the results of all older work stale. */
+  long start() {
+    return generation.incrementAndGet();
+  }
+
+  void complete(long workGeneration, B value) {
+    if (workGeneration != generation.get()) {
+      return;
+    }
+
+    final Result<B> result = new Result<>(workGeneration, value);
+    Result<B> previous = pending.get();
+    while (previous == null || previous.generation < workGeneration) {
+      if (pending.compareAndSet(previous, result)) {
+        break;
+      }
+      previous = pending.get();
+    }
+
+    drain();
+  }
+
+  private void drain() {
+    // A result which arrives after the slot was emptied is picked up by the next loop.
+    while (pending.get() != null && draining.compareAndSet(false, true)) {
+      try {
+        final Result<B> result = pending.getAndSet(null);
+        if (result != null
+            && result.generation > applied
+            && result.generation == generation.get()) {
+          applied = result.generation;
+          effect.run(result.value);
+        }
+      } finally {
+        draining.set(false);
+      }
+    }
+  }
+
+  private static final class Result<B> {
+    final long generation;
+    final B value;
+
+    Result(long generation, B value) {
+      this.generation = generation;
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import com.spotify.diffuser.Effect;
+import com.spotify.diffuser.Function;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Diffs every list it is run with against the previous one, and emits the difference to a {@link
+ * ListUpdateSink}.
+ *
+ * <p>Items are matched by identity. Common prefixes and suffixes are matched in place, and the rest
+ * are matched through a hash table, which also handles duplicate identities. Matched items which
+ * are part of the longest increasing subsequence of their old positions stay where they are, and
+ * every other matched item is moved once, to right after its new predecessor. That makes the number
+ * of moves minimal, and the whole diff O(n + k log k) for k matched items outside the common prefix
+ * and suffix.
+ *
+ * <p>All scratch space is kept in arrays which are reused between runs, so diffing does not
+ * allocate per element once the arrays have grown to fit the lists.
+ */
+final class ListChanges<T> implements Effect<List<T>> {
+  private static final int[] EMPTY = new int[0];
+
+  private final Function<T, ?> identity;
+  private final DidChange<T> contentChanged;
+  private final ListUpdateSink<T> sink;
+
+  private List<T> previous = Collections.emptyList();
+
+  // Indexed by position in the old part which is not a common prefix or suffix.
+  private Object[] keys = new Object[0];
+  private int[] chain = EMPTY;
+  private int[] oldMatches = EMPTY;
+  private int[] ranks = EMPTY;
+  // Indexed by position in the new part which is not a common prefix or suffix.
+  private int[] newMatches = EMPTY;
+  // Open addressing hash table from identity to the matching old items which are still unused.
+  private int[] table = EMPTY;
+  private int[] heads = EMPTY;
+  // Indexed by the order of matched items in the new list.
+  private int[] order = EMPTY;
+  private int[] tails = EMPTY;
+  private int[] predecessors = EMPTY;
+  private int[] lisUpTo = EMPTY;
+  private int[] settled = EMPTY;
+  // Indexed by rank, the order of matched items in the old list.
+  private int[] oldIndices = EMPTY;
+  private int[] lisBelow = EMPTY;
+  private int[] unmoved = EMPTY;
+  // Indexed by the order of items in the longest increasing subsequence.
+  private int[] lisOrder = EMPTY;
+
+  ListChanges(Function<T, ?> identity, DidChange<T> contentChanged, ListUpdateSink<T> sink) {
+    this.identity = identity;
+    this.contentChanged = contentChanged;
+    this.sink = sink;
+  }
+
+  @Override
+  public void run(List<T> next) {
+    if (next == previous) {
+      return;
+    }
+
+    final List<T> current = next instanceof RandomAccess ? next : new ArrayList<>(next);
+    diff(previous, current);
+    previous = current;
+  }
+
+  private void diff(List<T> oldList, List<T> newList) {
+    final int oldSize = oldList.size();
+    final int newSize = newList.size();
+
+    int start = 0;
+    while (start < oldSize && start < newSize && sameItem(oldList.get(start), newList.get(start))) {
+      start++;
+    }
+
+    int end = 0;
+    while (end < oldSize - start
+        && end < newSize - start
+        && sameItem(oldList.get(oldSize - 1 - end), newList.get(newSize - 1 - end))) {
+      end++;
+    }
+
+    final int oldCount = oldSize - start - end;
+    final int newCount = newSize - start - end;
+
+    try {
+      match(oldList, newList, start, oldCount, newCount);
+
+      for (int i = oldCount - 1; i >= 0; i--) {
+        if (oldMatches[i] < 0) {
+          sink.onRemoved(start + i, oldList.get(start + i));
+        }
+      }
+
+      move(oldList, start, oldCount, newCount);
+
+      for (int j = 0; j < newCount; j++) {
+        if (newMatches[j] < 0) {
+          sink.onInserted(start + j, newList.get(start + j));
+        }
+      }
+
+      if (contentChanged != null) {
+        for (int i = 0; i < start; i++) {
+          change(i, oldList.get(i), newList.get(i));
+        }
+        for (int j = 0; j < newCount; j++) {
+          if (newMatches[j] >= 0) {
+            change(start + j, oldList.get(start + newMatches[j]), newList.get(start + j));
+          }
+        }
+        for (int i = 0; i < end; i++) {
+          change(newSize - end + i, oldList.get(oldSize - end + i), newList.get(newSize - end + i));
+        }
+      }
+    } finally {
+      Arrays.fill(keys, 0, oldCount, null);
+    }
+  }
+
+  private void match(List<T> oldList, List<T> newList, int start, int oldCount, int newCount) {
+    final int capacity = Integer.highestOneBit(Math.max(oldCount, 1)) << 2;
+    final int mask = capacity - 1;
+    table = grow(table, capacity);
+    heads = grow(heads, capacity);
+    Arrays.fill(table, 0, capacity, 0);
+
+    keys = oldCount <= keys.length ? keys : new Object[Math.max(oldCount, keys.length * 2)];
+    chain = grow(chain, oldCount);
+    oldMatches = grow(oldMatches, oldCount);
+    newMatches = grow(newMatches, newCount);
+
+    // Insert in reverse, so that items with the same identity are matched in their old order.
+    for (int i = oldCount - 1; i >= 0; i--) {
+      final Object key = keyOf(oldList.get(start + i));
+      keys[i] = key;
+      oldMatches[i] = -1;
+
+      final int slot = find(key, mask);
+      if (table[slot] == 0) {
+        table[slot] = i + 1;
+        chain[i] = -1;
+      } else {
+        chain[i] = heads[slot];
+      }
+      heads[slot] = i;
+    }
+
+    for (int j = 0; j < newCount; j++) {
+      final int slot = find(keyOf(newList.get(start + j)), mask);
+      final int i = table[slot] == 0 ? -1 : heads[slot];
+      if (i >= 0) {
+        heads[slot] = chain[i];
+        oldMatches[i] = j;
+      }
+      newMatches[j] = i;
+    }
+  }
+
+  private int find(Object key, int mask) {
+    int slot = spread(key == null ? 0 : key.hashCode()) & mask;
+    while (table[slot] != 0 && !equal(keys[table[slot] - 1], key)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void move(List<T> oldList, int start, int oldCount, int newCount) {
+    ranks = grow(ranks, oldCount);
+    oldIndices = grow(oldIndices, oldCount);
+    int kept = 0;
+    for (int i = 0; i < oldCount; i++) {
+      if (oldMatches[i] >= 0) {
+        ranks[i] = kept;
+        oldIndices[kept] = i;
+        kept++;
+      }
+    }
+    if (kept == 0) {
+      return;
+    }
+
+    order = grow(order, kept);
+    int t = 0;
+    for (int j = 0; j < newCount; j++) {
+      if (newMatches[j] >= 0) {
+        order[t++] = ranks[newMatches[j]];
+      }
+    }
+
+    final int lisLength = longestIncreasingSubsequence(kept);
+
+    // Every matched item belongs to the group of the last subsequence item before it. An item
+    // which is moved ends up right after the other items of its group, so positions can be counted
+    // from the items which are settled (subsequence items and moved items, in new order) and the
+    // items which have not been moved yet (in old order).
+    lisUpTo = grow(lisUpTo, kept);
+    settled = grow(settled, kept + 1);
+    lisBelow = grow(lisBelow, kept + 1);
+    unmoved = grow(unmoved, kept + 1);
+    Arrays.fill(lisBelow, 0, kept + 1, 0);
+    settled[0] = 0;
+    unmoved[0] = 0;
+
+    for (int q = 0; q < lisLength; q++) {
+      lisBelow[order[lisOrder[q]] + 1] = 1;
+    }
+    for (int r = 0; r < kept; r++) {
+      unmoved[r + 1] = 1 - lisBelow[r + 1];
+      lisBelow[r + 1] += lisBelow[r];
+    }
+    for (int u = 0, q = 0; u < kept; u++) {
+      final boolean inLis = q < lisLength && lisOrder[q] == u;
+      if (inLis) {
+        q++;
+      }
+      settled[u + 1] = inLis ? 1 : 0;
+      lisUpTo[u] = q;
+    }
+    buildFenwick(settled, kept);
+    buildFenwick(unmoved, kept);
+
+    for (int u = 0, q = 0; u < kept; u++) {
+      if (q < lisLength && lisOrder[q] == u) {
+        q++;
+        continue;
+      }
+
+      final int rank = order[u];
+      final int group = lisBelow[rank] - 1;
+      final int from =
+          prefix(settled, group + 1 < lisLength ? lisOrder[group + 1] : kept)
+              + prefix(unmoved, rank);
+      add(unmoved, kept, rank, -1);
+
+      int to = 0;
+      if (u > 0) {
+        final int predecessorGroup = lisUpTo[u - 1] - 1;
+        final int unmovedBefore =
+            predecessorGroup < 0 ? 0 : prefix(unmoved, order[lisOrder[predecessorGroup]]);
+        to = prefix(settled, u - 1) + unmovedBefore + 1;
+      }
+      add(settled, kept, u, 1);
+
+      if (from != to) {
+        sink.onMoved(start + from, start + to, oldList.get(start + oldIndices[rank]));
+      }
+    }
+  }
+
+  // Finds a longest strictly increasing subsequence of order[0..count), and stores the indices of
+  // its items, in increasing order, in lisOrder.
+  private int longestIncreasingSubsequence(int count) {
+    tails = grow(tails, count);
+    predecessors = grow(predecessors, count);
+    lisOrder = grow(lisOrder, count);
+
+    int length = 0;
+    for (int u = 0; u < count; u++) {
+      int low = 0;
+      int high = length;
+      while (low < high) {
+        final int middle = (low + high) >>> 1;
+        if (order[tails[middle]] < order[u]) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      predecessors[u] = low > 0 ? tails[low - 1] : -1;
+      tails[low] = u;
+      if (low == length) {
+        length++;
+      }
+    }
+
+    for (int q = length - 1, u = tails[length - 1]; q >= 0; q--, u = predecessors[u]) {
+      lisOrder[q] = u;
+    }
+    return length;
+  }
+
+  private void change(int position, T oldItem, T newItem) {
+    if (contentChanged.test(oldItem, newItem)) {
+      sink.onChanged(position, oldItem, newItem);
+    }
+  }
+
+  private boolean sameItem(T a, T b) {
+    return equal(keyOf(a), keyOf(b));
+  }
+
+  private Object keyOf(T item) {
+    return identity != null ? identity.apply(item) : item;
+  }
+
+  private static boolean equal(Object a, Object b) {
+    return a == b || (a != null && a.equals(b));
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int[] grow(int[] array, int size) {
+    return size <= array.length ? array : new int[Math.max(size, array.length * 2)];
+  }
+
+  // Fenwick trees over values stored at tree[1..size], supporting prefix sums and point updates.
+  private static void buildFenwick(int[] tree, int size) {
+    for (int i = 1; i <= size; i++) {
+      final int parent = i + (i & -i);
+      if (parent <= size) {
+        tree[parent] += tree[i];
+      }
+    }
+  }
+
+  private static int prefix(int[] tree, int count) {
+    int sum = 0;
+    for (int i = count; i > 0; i -= i & -i) {
+      sum += tree[i];
+    }
+    return sum;
+  }
+
+  private static void add(int[] tree, int size, int index, int delta) {
+    for (int i = index + 1; i <= size; i += i & -i) {
+      tree[i] += delta;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+/**
+ * Receives the operations which turn the previous list into the current one, as emitted by {@link
+ * Diffuser#intoListChanges(ListUpdateSink)}.
+ *
+ * <p>Operations are emitted one at a time, and each position refers to the list as it looks after
+ * all previous operations of the same update have been applied. Applying them in order to a copy of
+ * the previous list therefore yields the current list.
+ *
+ * @param <T> The type of items in the list
+ */
+public interface ListUpdateSink<T> {
+
+  /**
+   * @param position: the position the item was inserted at.
+   * @param item: the inserted item.
+   */
+  void onInserted(int position, T item);
+
+  /**
+   * @param position: the position the item was removed from.
+   * @param item: the removed item.
+   */
+  void onRemoved(int position, T item);
+
+  /**
+   * @param fromPosition: the position of the item before it moved.
+   * @param toPosition: the position of the item after it moved.
+   * @param item: the moved item, as it was in the previous list.
+   */
+  void onMoved(int fromPosition, int toPosition, T item);
+
+  /**
+   * @param position: the position of the item which changed in place.
+   * @param oldItem: the item as it was in the previous list.
+   * @param newItem: the item as it is in the current list.
+   */
+  void onChanged(int position, T oldItem, T newItem);
+}
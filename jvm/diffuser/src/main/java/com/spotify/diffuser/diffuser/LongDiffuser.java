@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import com.spotify.diffuser.LongEffect;
+
+/**
+ * A {@link Diffuser} for primitive long values.
+ *
+ * <p>A LongDiffuser behaves just like a Diffuser&lt;Long&gt;, but it caches its last value in a
+ * primitive field and never boxes its input, so running it does not allocate. Use {@link
+ * Diffuser#mapToLong} to plug it into a tree of Diffusers.
+ */
+public final class LongDiffuser {
+  private final LongDidChange didChange;
+  private final LongEffect effect;
+
+  private boolean hasCachedValue;
+  private long cachedValue;
+
+  private LongDiffuser(LongDidChange didChange, LongEffect effect) {
+    this.didChange = didChange;
+    this.effect = effect;
+  }
+
+  /**
+   * Run the side-effect of this LongDiffuser if it hasn't been run before, or if the newValue
+   * parameter is classified as different from the last time it ran.
+   *
+   * <p>The value you supply will be used as the cache the next time this function is called.
+   *
+   * @param newValue: The value to execute side effects based on.
+   */
+  public synchronized void run(long newValue) {
+    if (!hasCachedValue || didChange.test(cachedValue, newValue)) {
+      effect.run(newValue);
+    }
+    cachedValue = newValue;
+    hasCachedValue = true;
+  }
+
+  /**
+   * Create a LongDiffuser which always executes its side-effect regardless of the value.
+   *
+   * @param effect: The side-effect which should be performed when {@link #run(long)} is called on
+   *     this LongDiffuser.
+   * @return A LongDiffuser which always executes its side-effect when given a value.
+   */
+  public static LongDiffuser intoAlways(LongEffect effect) {
+    return new LongDiffuser((a, b) -> true, effect);
+  }
+
+  /**
+   * Create a LongDiffuser by wrapping a side-effecting function with a caching layer.
+   *
+   * @param didChange: A function which determines if the side-effect should be executed given the
+   *     previous value and the current value that the LongDiffuser is {@link #run(long)} with. If
+   *     {@link #run(long)} is called for the first time, the side-effect will be executed
+   *     regardless, and this function will not be run.
+   * @param effect: The side-effect to execute
+   * @return A LongDiffuser which runs its side-effect when didChange says that its input changed.
+   */
+  public static LongDiffuser intoWhen(LongDidChange didChange, LongEffect effect) {
+    return new LongDiffuser(didChange, effect);
+  }
+
+  /**
+   * Create a LongDiffuser from a side-effecting function. The LongDiffuser will cache its inputs
+   * and compare them using {@code ==}.
+   *
+   * @param effect: a side-effect which should be run when the input changes
+   * @return A LongDiffuser which runs side-effect when its input changes.
+   */
+  public static LongDiffuser into(LongEffect effect) {
+    return new LongDiffuser((a, b) -> a != b, effect);
+  }
+
+  /**
+   * Create a LongDiffuser which will only run its side-effecting function once, when it receives
+   * its first value.
+   *
+   * @param effect: a side-effect which should be run once.
+   * @return A LongDiffuser which only runs its side-effect once the first time {@link #run(long)}
+   *     is called on it.
+   */
+  public static LongDiffuser intoOnce(LongEffect effect) {
+    return new LongDiffuser((a, b) -> false, effect);
+  }
+}
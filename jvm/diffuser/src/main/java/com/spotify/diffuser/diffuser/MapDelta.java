@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import com.spotify.diffuser.Effect;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The difference between two versions of a Map, as emitted by {@link
+ * Diffuser#intoMapDelta(Effect)}.
+ *
+ * @param <K> The type of the keys of the Map
+ * @param <V> The type of the values of the Map
+ */
+public final class MapDelta<K, V> {
+  private final Map<K, V> added;
+  private final Map<K, V> removed;
+  private final Map<K, V> updated;
+
+  private MapDelta(Map<K, V> added, Map<K, V> removed, Map<K, V> updated) {
+    this.added = added;
+    this.removed = removed;
+    this.updated = updated;
+  }
+
+  static <K, V> MapDelta<K, V> between(
+      Map<K, V> oldMap, Map<K, V> newMap, DidChange<V> valueChanged) {
+    Map<K, V> added = null;
+    Map<K, V> updated = null;
+    for (Map.Entry<K, V> entry : newMap.entrySet()) {
+      final K key = entry.getKey();
+      final V newValue = entry.getValue();
+      final V oldValue = oldMap.get(key);
+
+      if (oldValue == null && !oldMap.containsKey(key)) {
+        added = put(added, key, newValue);
+      } else if (oldValue != newValue && valueChanged.test(oldValue, newValue)) {
+        updated = put(updated, key, newValue);
+      }
+    }
+
+    Map<K, V> removed = null;
+    // Unless keys were added, an equal size means that no key can be missing from the new map.
+    if (oldMap.size() != newMap.size() || added != null) {
+      for (Map.Entry<K, V> entry : oldMap.entrySet()) {
+        if (!newMap.containsKey(entry.getKey())) {
+          removed = put(removed, entry.getKey(), entry.getValue());
+        }
+      }
+    }
+
+    return new MapDelta<>(readOnly(added), readOnly(removed), readOnly(updated));
+  }
+
+  private static <K, V> Map<K, V> put(Map<K, V> map, K key, V value) {
+    final Map<K, V> result = map != null ? map : new HashMap<>();
+    result.put(key, value);
+    return result;
+  }
+
+  private static <K, V> Map<K, V> readOnly(Map<K, V> map) {
+    return map != null ? Collections.unmodifiableMap(map) : Collections.emptyMap();
+  }
+
+  /** @return The entries whose keys were not part of the old Map. */
+  public Map<K, V> added() {
+    return added;
+  }
+
+  /** @return The entries of the old Map whose keys are not part of the new Map. */
+  public Map<K, V> removed() {
+    return removed;
+  }
+
+  /** @return The entries whose keys were already present, but whose values changed. */
+  public Map<K, V> updated() {
+    return updated;
+  }
+
+  /** @return true if the old and the new Map have the same entries. */
+  public boolean isEmpty() {
+    return added.isEmpty() && removed.isEmpty() && updated.isEmpty();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof MapDelta)) {
+      return false;
+    }
+    final MapDelta<?, ?> other = (MapDelta<?, ?>) o;
+    return added.equals(other.added)
+        && removed.equals(other.removed)
+        && updated.equals(other.updated);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * added.hashCode() + removed.hashCode()) + updated.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "MapDelta{added=" + added + ", removed=" + removed + ", updated=" + updated + "}";
+  }
+}
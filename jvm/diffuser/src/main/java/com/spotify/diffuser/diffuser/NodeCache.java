@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+/**
+ * The cache of a single Diffuser node, created by a {@link CacheStrategy}.
+ *
+ * @param <A> The type of the values received by the node
+ */
+public interface NodeCache<A> {
+
+  /**
+   * @param value: the value the node is run with.
+   * @return true if the node should run its side-effect or children for the value, which it must
+   *     when the cache is empty, or when it no longer knows the previous value.
+   */
+  boolean changed(A value);
+
+  /**
+   * Remember a value, after the node has run, or skipped, its side-effect or children for it.
+   *
+   * @param value: the value the node was run with.
+   */
+  void update(A value);
+}
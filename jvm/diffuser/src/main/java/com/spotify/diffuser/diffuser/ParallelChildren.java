@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import com.spotify.diffuser.Effect;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a list of Diffusers with the same value, forking the ones which are expensive enough to be
+ * worth it onto a ForkJoinPool, and joining all of them before returning.
+ *
+ * <p>The cost of a child is estimated from the time its recent runs took. A child whose cost is
+ * unknown is forked, and children below the threshold run on the calling thread, so a run where
+ * every child hits its cache does not pay for forking at all.
+ *
+ * <p>Failures are deterministic: every child runs even when a sibling throws, and the failure of
+ * the first child in the list is rethrown, with the failures of later children added as suppressed
+ * exceptions.
+ */
+final class ParallelChildren<A> implements Effect<A> {
+  private static final long UNKNOWN = -1;
+
+  private final ForkJoinPool pool;
+  private final long thresholdNanos;
+  private final List<Diffuser<A>> children;
+  private final long[] costs;
+
+  ParallelChildren(ForkJoinPool pool, long thresholdNanos, Collection<Diffuser<A>> children) {
+    this.pool = pool;
+    this.thresholdNanos = thresholdNanos;
+    this.children = new ArrayList<>(children);
+    this.costs = new long[this.children.size()];
+    for (int i = 0; i < costs.length; i++) {
+      costs[i] = UNKNOWN;
+    }
+  }
+
+  @Override
+  public void run(A value) {
+    final int size = children.size();
+    final Throwable[] errors = new Throwable[size];
+    final ForkJoinTask<?>[] forked = new ForkJoinTask<?>[size];
+
+    int expensive = 0;
+    for (int i = 0; i < size; i++) {
+      if (costs[i] == UNKNOWN || costs[i] > thresholdNanos) {
+        expensive++;
+      }
+    }
+
+    // Forking a single child would only move its work to another thread.
+    if (expensive > 1) {
+      for (int i = 0; i < size; i++) {
+        if (costs[i] == UNKNOWN || costs[i] > thresholdNanos) {
+          forked[i] = new Child(i, value, errors);
+          if (ForkJoinTask.getPool() == pool) {
+            forked[i].fork();
+          } else {
+            pool.execute(forked[i]);
+          }
+        }
+      }
+    }
+
+    for (int i = 0; i < size; i++) {
+      if (forked[i] == null) {
+        runChild(i, value, errors);
+      }
+    }
+
+    // Join in reverse, so that a worker thread finds its own forks on top of its queue.
+    for (int i = size - 1; i >= 0; i--) {
+      if (forked[i] != null) {
+        forked[i].join();
+      }
+    }
+
+    rethrow(errors);
+  }
+
+  private void runChild(int index, A value, Throwable[] errors) {
+    final long start = System.nanoTime();
+    try {
+      children.get(index).run(value);
+    } catch (Throwable e) {
+      errors[index] = e;
+    } finally {
+      final long elapsed = System.nanoTime() - start;
+      costs[index] = costs[index] == UNKNOWN ? elapsed : (costs[index] + elapsed) / 2;
+    }
+  }
+
+  private static void rethrow(Throwable[] errors) {
+    Throwable first = null;
+    for (Throwable error : errors) {
+      if (error == null) {
+        continue;
+      }
+      if (first == null) {
+        first = error;
+      } else if (error != first) {
+        // Children may rethrow a shared Throwable, which can't suppress itself.
+        first.addSuppressed(error);
+      }
+    }
+
+    if (first instanceof RuntimeException) {
+      throw (RuntimeException) first;
+    }
+    if (first instanceof Error) {
+      throw (Error) first;
+    }
+    if (first != null) {
+      throw new RuntimeException(first);
+    }
+  }
+
+  private final class Child extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int index;
+    private final A value;
+    private final Throwable[] errors;
+
+    Child(int index, A value, Throwable[] errors) {
+      this.index = index;
+      this.value = value;
+      this.errors = errors;
+    }
+
+    @Override
+    protected void compute() {
+      runChild(index, value, errors);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import com.spotify.diffuser.Function;
+
+/**
+ * Receives the keys of the rows which are created and disposed by {@link
+ * Diffuser#intoEachKeyed(Function, Function, RowLifecycleSink)}.
+ *
+ * @param <K> The type of the keys which identify rows
+ */
+public interface RowLifecycleSink<K> {
+
+  /**
+   * Called when a key is seen for the first time, before its row Diffuser is run.
+   *
+   * @param key: the key of the created row.
+   */
+  void onCreated(K key);
+
+  /**
+   * Called when a key is no longer part of the input, after all remaining rows have been run. The
+   * row Diffuser of the key is dropped, so a key which comes back later gets a new one.
+   *
+   * @param key: the key of the disposed row.
+   */
+  void onDisposed(K key);
+}
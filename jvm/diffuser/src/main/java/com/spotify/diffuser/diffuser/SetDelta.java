@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import com.spotify.diffuser.Effect;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The difference between two versions of a Set, as emitted by {@link
+ * Diffuser#intoSetDelta(Effect)}.
+ *
+ * @param <T> The type of the elements of the Set
+ */
+public final class SetDelta<T> {
+  private final Set<T> added;
+  private final Set<T> removed;
+
+  private SetDelta(Set<T> added, Set<T> removed) {
+    this.added = added;
+    this.removed = removed;
+  }
+
+  static <T> SetDelta<T> between(Set<T> oldSet, Set<T> newSet) {
+    Set<T> added = null;
+    for (T element : newSet) {
+      if (!oldSet.contains(element)) {
+        added = add(added, element);
+      }
+    }
+
+    Set<T> removed = null;
+    // Unless elements were added, an equal size means that no element can be missing.
+    if (oldSet.size() != newSet.size() || added != null) {
+      for (T element : oldSet) {
+        if (!newSet.contains(element)) {
+          removed = add(removed, element);
+        }
+      }
+    }
+
+    return new SetDelta<>(readOnly(added), readOnly(removed));
+  }
+
+  private static <T> Set<T> add(Set<T> set, T element) {
+    final Set<T> result = set != null ? set : new HashSet<>();
+    result.add(element);
+    return result;
+  }
+
+  private static <T> Set<T> readOnly(Set<T> set) {
+    return set != null ? Collections.unmodifiableSet(set) : Collections.emptySet();
+  }
+
+  /** @return The elements which were not part of the old Set. */
+  public Set<T> added() {
+    return added;
+  }
+
+  /** @return The elements of the old Set which are not part of the new Set. */
+  public Set<T> removed() {
+    return removed;
+  }
+
+  /** @return true if the old and the new Set have the same elements. */
+  public boolean isEmpty() {
+    return added.isEmpty() && removed.isEmpty();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof SetDelta)) {
+      return false;
+    }
+    final SetDelta<?> other = (SetDelta<?>) o;
+    return added.equals(other.added) && removed.equals(other.removed);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * added.hashCode() + removed.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "SetDelta{added=" + added + ", removed=" + removed + "}";
+  }
+}
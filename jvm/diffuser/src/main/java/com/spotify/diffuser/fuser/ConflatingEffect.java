@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+import com.spotify.diffuser.Effect;
+import com.spotify.diffuser.Scheduler;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the latest event in a slot, and delivers it when the Scheduler runs the drain task. An
+ * event which arrives while another one is waiting replaces it, and is counted as a drop.
+ *
+ * <p>The drain task is only scheduled when no other drain is scheduled or running, so there is at
+ * most one scheduled task per connection, the target never runs concurrently with itself, and
+ * receiving an event never takes a lock.
+ */
+final class ConflatingEffect<A> implements Effect<A> {
+  private static final Object EMPTY = new Object();
+
+  private final Scheduler scheduler;
+  private final DropCounter dropped;
+  private final Effect<A> target;
+
+  private final AtomicReference<Object> latest = new AtomicReference<>(EMPTY);
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final Runnable drain = this::drain;
+
+  ConflatingEffect(Scheduler scheduler, DropCounter dropped, Effect<A> target) {
+    this.scheduler = scheduler;
+    this.dropped = dropped;
+    this.target = target;
+  }
+
+  @Override
+  public void run(A value) {
+    if (latest.getAndSet(value) != EMPTY && dropped != null) {
+      dropped.increment();
+    }
+    if (scheduled.compareAndSet(false, true)) {
+      schedule();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void drain() {
+    final Object value = latest.getAndSet(EMPTY);
+    try {
+      if (value != EMPTY) {
+        target.run((A) value);
+      }
+    } finally {
+      scheduled.set(false);
+      // An event which arrived while draining could not schedule a drain of its own.
+      if (latest.get() != EMPTY && scheduled.compareAndSet(false, true)) {
+        schedule();
+      }
+    }
+  }
+
+  private void schedule() {
+    try {
+      scheduler.schedule(drain);
+    } catch (RuntimeException | Error e) {
+      scheduled.set(false);
+      throw e;
+    }
+  }
+}
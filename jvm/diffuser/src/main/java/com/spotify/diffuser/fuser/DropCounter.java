@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+/**
+ * Counts the events which a rate-limiting Fuser dropped, e.g. because {@link
+ * Fuser#conflate(com.spotify.diffuser.Scheduler, DropCounter, Fuser)} replaced them with a later
+ * event before they could be delivered. A single DropCounter can be shared by several Fusers.
+ */
+public final class DropCounter {
+  private final StripedCounter dropped = new StripedCounter();
+
+  /** @return The number of events which were dropped so far. */
+  public long dropped() {
+    return dropped.sum();
+  }
+
+  /** Reset the count to zero. */
+  public void reset() {
+    dropped.reset();
+  }
+
+  void increment() {
+    dropped.add(1);
+  }
+}
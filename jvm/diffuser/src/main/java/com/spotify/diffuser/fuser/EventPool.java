@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+/**
+ * Keeps recycled {@link PooledEvent}s, so that a Source which emits at a high rate, like touch or
+ * scroll events, can reuse them instead of allocating a new event for each dispatch.
+ *
+ * <p>A pool is not thread-safe, and should only be used from the thread which the Source emits on,
+ * like the main thread for view events. Pooled events must not be passed to another thread either,
+ * e.g. through {@link Fuser#observeOn} or {@link Fuser#conflate}, since they are recycled as soon
+ * as the effect which received them returns.
+ *
+ * <p>A checking pool, e.g. one created with {@code BuildConfig.DEBUG} in debug builds, never reuses
+ * events. It marks them as recycled instead, so an effect which keeps an event after it was
+ * dispatched fails as soon as it uses it, and recycling an event twice fails right away. It also
+ * fails when it is used from another thread than the first one which obtained an event.
+ *
+ * @param <T> The type of the events
+ */
+public final class EventPool<T extends PooledEvent> {
+
+  /**
+   * Creates new events when the pool is empty.
+   *
+   * @param <T> The type of the events
+   */
+  public interface Factory<T> {
+    T create();
+  }
+
+  private final Factory<T> factory;
+  private final boolean checked;
+  private final Object[] events;
+  private int size;
+  private Thread owner;
+
+  /**
+   * @param factory: creates new events when the pool is empty.
+   * @param capacity: the number of recycled events to keep, e.g. 2 for a Fuser which dispatches one
+   *     event at a time, and one more for each {@link Fuser#extractPooled} it goes through.
+   * @param checked: whether to detect events which are used after they were recycled, instead of
+   *     reusing them.
+   */
+  public EventPool(Factory<T> factory, int capacity, boolean checked) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity must not be negative");
+    }
+    this.factory = factory;
+    this.checked = checked;
+    this.events = new Object[capacity];
+  }
+
+  /** @return A recycled event, or a new one if the pool is empty. */
+  @SuppressWarnings("unchecked")
+  public T obtain() {
+    if (checked) {
+      checkThread();
+    } else if (size > 0) {
+      final T event = (T) events[--size];
+      events[size] = null;
+      return event;
+    }
+    return factory.create();
+  }
+
+  /**
+   * Return an event to the pool. Fusers created with {@link Fuser#fromPooled(Source, EventPool)} or
+   * {@link Fuser#extractPooled} call this once the event has been dispatched.
+   *
+   * @param event: the event to recycle, which must not be used afterwards.
+   */
+  public void recycle(T event) {
+    if (checked) {
+      checkThread();
+      if (event.isRecycled()) {
+        throw new IllegalStateException(
+            event.getClass().getSimpleName() + " was recycled twice, was it obtained twice?");
+      }
+      event.markRecycled();
+      return;
+    }
+
+    event.clear();
+    if (size < events.length) {
+      events[size++] = event;
+    }
+  }
+
+  private synchronized void checkThread() {
+    final Thread current = Thread.currentThread();
+    if (owner == null) {
+      owner = current;
+    } else if (owner != current) {
+      throw new IllegalStateException(
+          "EventPool was used on " + current.getName() + ", but belongs to " + owner.getName());
+    }
+  }
+
+  /** @return The number of events which are waiting to be reused. */
+  public int size() {
+    return size;
+  }
+}
@@ -23,10 +23,14 @@ package com.spotify.diffuser.fuser;
 
 import com.spotify.diffuser.Effect;
 import com.spotify.diffuser.Function;
+import com.spotify.diffuser.Scheduler;
+import com.spotify.diffuser.TimedScheduler;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -43,10 +47,39 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public final class Fuser<A> {
 
+  // Fusers are a tree of three kinds of nodes. Chains of extract() calls are fused into a single
+  // EXTRACT node, and nested fromAll() calls are flattened into a single ALL node, so that an event
+  // passes through one wrapper per node rather than one per operator. A connection checks a
+  // single disposed flag, where the Source first dispatches an event.
+  private static final int SOURCE = 0;
+  private static final int EXTRACT = 1;
+  private static final int ALL = 2;
+
+  // Returned by an extract step to drop the event.
+  private static final Object DROP = new Object();
+
+  private final int kind;
   private final Source<A> source;
+  private final Fuser<Object> parent;
+  private final Function<Object, Object>[] steps;
+  private final List<Fuser<Object>> children;
 
+  @SuppressWarnings("unchecked")
   private Fuser(Source<? extends A> source) {
+    this.kind = SOURCE;
     this.source = (Source<A>) source;
+    this.parent = null;
+    this.steps = null;
+    this.children = null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Fuser(Fuser<?> parent, Function<Object, Object>[] steps) {
+    this.kind = EXTRACT;
+    this.source = null;
+    this.parent = (Fuser<Object>) parent;
+    this.steps = steps;
+    this.children = null;
   }
 
   /**
@@ -55,9 +88,7 @@ public final class Fuser<A> {
    * @param children - The sources of events for this Fuser
    */
   public Fuser(Fuser<? extends A>... children) {
-    final List<Fuser<? extends A>> asList = Arrays.asList(children);
-    final List<Fuser<A>> fusers = upcast(asList);
-    this.source = sourceFrom(fusers);
+    this(Arrays.asList(children));
   }
 
   /**
@@ -68,8 +99,11 @@ public final class Fuser<A> {
    * @param children The collection of Fusers to merge
    */
   public Fuser(Collection<Fuser<? extends A>> children) {
-    final List<Fuser<A>> fusers = upcast(children);
-    this.source = sourceFrom(fusers);
+    this.kind = ALL;
+    this.source = null;
+    this.parent = null;
+    this.steps = null;
+    this.children = flatten(children);
   }
 
   /**
@@ -83,6 +117,33 @@ public final class Fuser<A> {
     return new Fuser<>(source);
   }
 
+  /**
+   * Create a Fuser from a {@link Source} whose events are recycled through an {@link EventPool}.
+   * The Source obtains an event from the pool for every event it emits to an effect, and the event
+   * is recycled as soon as the effect returns, so a Source which emits at a high rate allocates
+   * almost nothing once the pool is warm.
+   *
+   * <p>Events are only valid while they are being dispatched. Effects which need their contents
+   * later must copy them, see {@link PooledEvent}.
+   *
+   * @param source: the source which will supply this Fuser with pooled events once connected.
+   * @param pool: the pool which the source obtains events from.
+   * @param <A> The type of events emitted by this Fuser
+   * @return A Fuser which wraps the source, and recycles its events after dispatching them.
+   */
+  public static <A extends PooledEvent> Fuser<A> fromPooled(Source<A> source, EventPool<A> pool) {
+    return from(
+        dispatch ->
+            source.connect(
+                event -> {
+                  try {
+                    dispatch.run(event);
+                  } finally {
+                    pool.recycle(event);
+                  }
+                }));
+  }
+
   /**
    * Create a new Fuser given a collection of Fusers of the same type. The new Fuser will emit all
    * events emitted by its children. Connecting to the new Fuser will connect all of the children
@@ -110,6 +171,19 @@ public final class Fuser<A> {
     return new Fuser(children);
   }
 
+  /**
+   * Create a Fuser which emits all events emitted by the children of a {@link FuserGroup}, which
+   * can be added and removed while the Fuser is connected. Unlike {@link #fromAll(Collection)},
+   * adding or removing a child only connects or disposes that child.
+   *
+   * @param group: the group of Fusers to merge.
+   * @param <A> The type of events emitted by this Fuser
+   * @return A Fuser which emits the events of the current children of the group.
+   */
+  public static <A> Fuser<A> fromDynamic(FuserGroup<A> group) {
+    return from(group::connect);
+  }
+
   /**
    * Apply a function to each event emitted by a Fuser.
    *
@@ -117,7 +191,9 @@ public final class Fuser<A> {
    * `reduce`. The Fuser is designed for aggregating UI-events and should be placed in the UI-layer
    * of an application. `extract` is primarily intended for converting from Android.View types to
    * types in your domain. Any additional interpretation of events should be placed outside of the
-   * Fuser and outside the UI-layer.
+   * Fuser and outside the UI-layer. The exception is limiting the rate of events, which belongs at
+   * the UI boundary, see {@link #debounce}, {@link #throttleFirst}, {@link #throttleLast} and
+   * {@link #sample}.
    *
    * @param transformation the function to be applied to each event emitted by the `fuser` parameter
    * @param fuser the fuser to which the `transformation` function should be applied
@@ -125,14 +201,9 @@ public final class Fuser<A> {
    * @param <B> The type you are transforming into
    * @return A new Fuser of type B
    */
+  @SuppressWarnings("unchecked")
   public static <A, B> Fuser<B> extract(Function<A, B> transformation, Fuser<A> fuser) {
-    return from(
-        dispatch ->
-            fuser.connect(
-                a -> {
-                  final B b = transformation.apply(a);
-                  dispatch.run(b);
-                }));
+    return fuser.then((Function<Object, Object>) (Function<?, ?>) transformation);
   }
 
   /**
@@ -145,7 +216,7 @@ public final class Fuser<A> {
    * @return A new Fuser of type B
    */
   public static <A, B> Fuser<B> extractConstant(B constant, Fuser<A> fuser) {
-    return from(dispatch -> fuser.connect(a -> dispatch.run(constant)));
+    return fuser.then(a -> constant);
   }
 
   /**
@@ -159,18 +230,344 @@ public final class Fuser<A> {
    * @param <B> The type you are transforming into
    * @return A {@link Fuser} which drops all events which are transformed into null.
    */
+  @SuppressWarnings("unchecked")
   public static <A, B> Fuser<B> extractUnlessNull(Function<A, B> transformation, Fuser<A> fuser) {
+    final Function<Object, Object> step =
+        (Function<Object, Object>) (Function<?, ?>) transformation;
+    return fuser.then(
+        a -> {
+          final Object b = step.apply(a);
+          return b != null ? b : DROP;
+        });
+  }
+
+  /**
+   * Deliver only the latest event of a Fuser whenever a Scheduler runs, e.g. once per frame with
+   * {@link com.spotify.diffuser.Schedulers#fixedRate}. Events which arrive faster than that replace
+   * each other, so a source like text changes or scroll offsets can't do more work downstream than
+   * one event per tick.
+   *
+   * @param scheduler: decides when the latest event is delivered.
+   * @param fuser: the fuser whose events should be conflated.
+   * @param <A> The type of events emitted by the Fuser
+   * @return A Fuser which emits the latest event of the fuser parameter, on the scheduler.
+   */
+  public static <A> Fuser<A> conflate(Scheduler scheduler, Fuser<A> fuser) {
+    return conflate(scheduler, null, fuser);
+  }
+
+  /**
+   * Deliver only the latest event of a Fuser whenever a Scheduler runs, and count the events which
+   * are replaced before they are delivered. See {@link #conflate(Scheduler, Fuser)}.
+   *
+   * @param scheduler: decides when the latest event is delivered.
+   * @param dropped: counts the events which are replaced by a later event.
+   * @param fuser: the fuser whose events should be conflated.
+   * @param <A> The type of events emitted by the Fuser
+   * @return A Fuser which emits the latest event of the fuser parameter, on the scheduler.
+   */
+  public static <A> Fuser<A> conflate(Scheduler scheduler, DropCounter dropped, Fuser<A> fuser) {
+    return from(dispatch -> fuser.connect(new ConflatingEffect<>(scheduler, dropped, dispatch)));
+  }
+
+  /**
+   * Deliver only the latest event per key of a Fuser whenever a Scheduler runs. Unlike {@link
+   * #conflate(Scheduler, Fuser)}, events with different keys don't replace each other, e.g. the
+   * latest reading of every sensor is delivered on each tick.
+   *
+   * @param key: the function which returns the key of an event. Keys must not be null.
+   * @param scheduler: decides when the latest events are delivered.
+   * @param fuser: the fuser whose events should be conflated.
+   * @param <A> The type of events emitted by the Fuser
+   * @param <K> The type of the keys
+   * @return A Fuser which emits the latest event per key of the fuser parameter, on the scheduler.
+   */
+  public static <A, K> Fuser<A> conflateByKey(
+      Function<A, K> key, Scheduler scheduler, Fuser<A> fuser) {
+    return conflateByKey(key, scheduler, null, fuser);
+  }
+
+  /**
+   * Deliver only the latest event per key of a Fuser whenever a Scheduler runs, and count the
+   * events which are replaced before they are delivered. See {@link #conflateByKey(Function,
+   * Scheduler, Fuser)}.
+   *
+   * @param key: the function which returns the key of an event. Keys must not be null.
+   * @param scheduler: decides when the latest events are delivered.
+   * @param dropped: counts the events which are replaced by a later event with the same key.
+   * @param fuser: the fuser whose events should be conflated.
+   * @param <A> The type of events emitted by the Fuser
+   * @param <K> The type of the keys
+   * @return A Fuser which emits the latest event per key of the fuser parameter, on the scheduler.
+   */
+  public static <A, K> Fuser<A> conflateByKey(
+      Function<A, K> key, Scheduler scheduler, DropCounter dropped, Fuser<A> fuser) {
+    return from(
+        dispatch -> fuser.connect(new KeyedConflatingEffect<>(key, scheduler, dropped, dispatch)));
+  }
+
+  /**
+   * Emit the latest event of a Fuser once no events have arrived for a while, e.g. to wait until
+   * the user stops typing before searching. Events are delivered on the scheduler.
+   *
+   * @param timeout: how long the fuser must stay quiet before its latest event is emitted.
+   * @param unit: the unit of the timeout.
+   * @param scheduler: measures time and delivers the events.
+   * @param fuser: the fuser whose events should be debounced.
+   * @param <A> The type of events emitted by the Fuser
+   * @return A Fuser which emits the last event of every burst of the fuser parameter.
+   */
+  public static <A> Fuser<A> debounce(
+      long timeout, TimeUnit unit, TimedScheduler scheduler, Fuser<A> fuser) {
+    final long timeoutNanos = unit.toNanos(timeout);
+    if (timeoutNanos < 0) {
+      throw new IllegalArgumentException("timeout must not be negative");
+    }
+    return timed(fuser, dispatch -> new TimedEffect.Debounce<>(scheduler, timeoutNanos, dispatch));
+  }
+
+  /**
+   * Emit the first event of a Fuser, and drop the events which follow it within a time window, e.g.
+   * to ignore double taps. Events are delivered right away, on the thread which emitted them.
+   *
+   * @param window: how long to drop events after emitting one.
+   * @param unit: the unit of the window.
+   * @param scheduler: measures time.
+   * @param fuser: the fuser whose events should be throttled.
+   * @param <A> The type of events emitted by the Fuser
+   * @return A Fuser which emits at most one event of the fuser parameter per window.
+   */
+  public static <A> Fuser<A> throttleFirst(
+      long window, TimeUnit unit, TimedScheduler scheduler, Fuser<A> fuser) {
+    final long windowNanos = unit.toNanos(window);
+    if (windowNanos < 0) {
+      throw new IllegalArgumentException("window must not be negative");
+    }
+    return from(
+        dispatch -> fuser.connect(new ThrottleFirstEffect<>(scheduler, windowNanos, dispatch)));
+  }
+
+  /**
+   * Emit the latest event of a Fuser at the end of a time window which starts with the first event
+   * after the previous window, e.g. to update a preview at most once per window while the user is
+   * typing. Events are delivered on the scheduler.
+   *
+   * @param window: how long to collect events before emitting the latest one.
+   * @param unit: the unit of the window.
+   * @param scheduler: measures time and delivers the events.
+   * @param fuser: the fuser whose events should be throttled.
+   * @param <A> The type of events emitted by the Fuser
+   * @return A Fuser which emits at most one event of the fuser parameter per window.
+   */
+  public static <A> Fuser<A> throttleLast(
+      long window, TimeUnit unit, TimedScheduler scheduler, Fuser<A> fuser) {
+    final long windowNanos = unit.toNanos(window);
+    if (windowNanos < 0) {
+      throw new IllegalArgumentException("window must not be negative");
+    }
+    return timed(
+        fuser, dispatch -> new TimedEffect.ThrottleLast<>(scheduler, windowNanos, false, dispatch));
+  }
+
+  /**
+   * Emit the latest event of a Fuser once per period, if any event arrived during the period. The
+   * periods start when the Fuser is connected, and no timer is pending while the fuser is quiet.
+   * Events are delivered on the scheduler.
+   *
+   * @param period: the time between two samples.
+   * @param unit: the unit of the period.
+   * @param scheduler: measures time and delivers the events.
+   * @param fuser: the fuser whose events should be sampled.
+   * @param <A> The type of events emitted by the Fuser
+   * @return A Fuser which emits at most one event of the fuser parameter per period.
+   */
+  public static <A> Fuser<A> sample(
+      long period, TimeUnit unit, TimedScheduler scheduler, Fuser<A> fuser) {
+    final long periodNanos = unit.toNanos(period);
+    if (periodNanos <= 0) {
+      throw new IllegalArgumentException("period must be positive");
+    }
+    return timed(
+        fuser, dispatch -> new TimedEffect.ThrottleLast<>(scheduler, periodNanos, true, dispatch));
+  }
+
+  private static <A> Fuser<A> timed(Fuser<A> fuser, Function<Effect<A>, TimedEffect<A>> operator) {
+    return from(
+        dispatch -> {
+          final TimedEffect<A> effect = operator.apply(dispatch);
+          final Disposable connection = fuser.connect(effect);
+          return () -> {
+            connection.dispose();
+            effect.cancel();
+          };
+        });
+  }
+
+  /**
+   * Deliver the events of a Fuser on an Executor, one at a time, in the order they were emitted. A
+   * Source which emits from several threads then no longer runs the connected effect concurrently.
+   * Events wait in a queue of 1024 events, and the oldest event is dropped when the queue is full,
+   * so emitting never waits, even on the executor's own thread.
+   *
+   * @param executor: the Executor to deliver events on.
+   * @param fuser: the fuser whose events should be delivered on the executor.
+   * @param <A> The type of events emitted by the Fuser
+   * @return A Fuser which emits the events of the fuser parameter on the executor.
+   */
+  public static <A> Fuser<A> observeOn(Executor executor, Fuser<A> fuser) {
+    return observeOn(executor, 1024, OverflowStrategy.DROP_OLDEST, null, fuser);
+  }
+
+  /**
+   * Deliver the events of a Fuser on an Executor, one at a time, in the order they were emitted.
+   * See {@link #observeOn(Executor, int, OverflowStrategy, QueueMetrics, Fuser)}.
+   *
+   * @param executor: the Executor to deliver events on.
+   * @param capacity: the number of events which can wait to be delivered.
+   * @param overflow: what to do with an event when the queue is full.
+   * @param fuser: the fuser whose events should be delivered on the executor.
+   * @param <A> The type of events emitted by the Fuser
+   * @return A Fuser which emits the events of the fuser parameter on the executor.
+   */
+  public static <A> Fuser<A> observeOn(
+      Executor executor, int capacity, OverflowStrategy overflow, Fuser<A> fuser) {
+    return observeOn(executor, capacity, overflow, null, fuser);
+  }
+
+  /**
+   * Deliver the events of a Fuser on an Executor, one at a time, in the order they were emitted. A
+   * Source which emits from several threads then no longer runs the connected effect concurrently.
+   *
+   * <p>Every connection has a bounded lock-free queue, so emitting threads never wait for a lock,
+   * and at most one task per connection is waiting on the executor. A task delivers at most {@code
+   * capacity} events before it makes room for other work on the executor.
+   *
+   * @param executor: the Executor to deliver events on.
+   * @param capacity: the number of events which can wait to be delivered, rounded up to a power of
+   *     two.
+   * @param overflow: what to do with an event when the queue is full.
+   * @param metrics: measures the depth of the queue and the dropped events, or null.
+   * @param fuser: the fuser whose events should be delivered on the executor.
+   * @param <A> The type of events emitted by the Fuser
+   * @return A Fuser which emits the events of the fuser parameter on the executor.
+   */
+  public static <A> Fuser<A> observeOn(
+      Executor executor,
+      int capacity,
+      OverflowStrategy overflow,
+      QueueMetrics metrics,
+      Fuser<A> fuser) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    if (overflow == null) {
+      throw new NullPointerException("overflow");
+    }
+    return from(
+        dispatch ->
+            fuser.connect(new ObserveOnEffect<>(executor, capacity, overflow, metrics, dispatch)));
+  }
+
+  /**
+   * Share a single connection to a Fuser between everything which connects to the returned Fuser.
+   * The fuser parameter is connected when the first effect connects, and disconnected when the last
+   * connection is disposed, so a Source which only accepts a single listener, like {@code
+   * View.setOnClickListener}, can have several consumers, and each event is only produced once.
+   *
+   * @param fuser: the Fuser whose connection should be shared.
+   * @param <A> The type of events emitted by the Fuser
+   * @return A Fuser which emits the events of the fuser parameter to all its connections.
+   */
+  public static <A> Fuser<A> share(Fuser<A> fuser) {
+    return from(new SharedSource<>(fuser));
+  }
+
+  /**
+   * Apply a function to every event emitted by a Fuser, writing each result into an event from a
+   * pool instead of allocating it. The result is recycled as soon as it has been dispatched, see
+   * {@link #fromPooled(Source, EventPool)}.
+   *
+   * @param transformation: writes the result for each event emitted by the fuser.
+   * @param pool: the pool which results are obtained from.
+   * @param fuser: the fuser to which the `transformation` function should be applied
+   * @param <A> The type you are transforming from
+   * @param <B> The type you are transforming into
+   * @return A new Fuser of type B, whose events are recycled after dispatching them.
+   */
+  public static <A, B extends PooledEvent> Fuser<B> extractPooled(
+      PooledFunction<A, B> transformation, EventPool<B> pool, Fuser<A> fuser) {
     return from(
         dispatch ->
             fuser.connect(
                 a -> {
-                  final B b = transformation.apply(a);
-                  if (b != null) {
+                  final B b = pool.obtain();
+                  try {
+                    transformation.apply(a, b);
                     dispatch.run(b);
+                  } finally {
+                    pool.recycle(b);
                   }
                 }));
   }
 
+  /**
+   * Give a Fuser a name, so that every event it emits is reported to the installed {@link
+   * FuserMonitor}, together with the time it took to dispatch the event downstream.
+   *
+   * @param name: the name which identifies the Fuser to the monitor, e.g. "search.query".
+   * @param fuser: the Fuser to name.
+   * @param <A> The type of events emitted by the Fuser
+   * @return A Fuser which emits the same events as the fuser parameter, or the fuser parameter
+   *     itself when no monitor is installed.
+   */
+  public static <A> Fuser<A> named(String name, Fuser<A> fuser) {
+    if (name == null) {
+      throw new NullPointerException("name");
+    }
+    final FuserMonitor monitor = FuserMonitors.installed();
+    return monitor != null ? instrumented(name, monitor, fuser) : fuser;
+  }
+
+  /**
+   * Count the events emitted by a Fuser, and measure the time it took to dispatch each of them
+   * downstream, in a {@link FuserMetrics}. Unlike {@link #named(String, Fuser)}, this does not
+   * depend on an installed monitor, so several metered Fusers can share a FuserMetrics which is
+   * read by the application, e.g. to find out which child of {@link #fromAll(Fuser[])} emits the
+   * most events. The histogram for the name is looked up once, here, and events are recorded into
+   * it directly rather than through {@link FuserMetrics#onDispatch(String, Object, long)}.
+   *
+   * @param name: the name under which events are counted, e.g. "search.textWatcher".
+   * @param metrics: the FuserMetrics which counts the events.
+   * @param fuser: the Fuser to meter.
+   * @param <A> The type of events emitted by the Fuser
+   * @return A Fuser which emits the same events as the fuser parameter.
+   */
+  public static <A> Fuser<A> metered(String name, FuserMetrics metrics, Fuser<A> fuser) {
+    if (name == null) {
+      throw new NullPointerException("name");
+    }
+    final StripedHistogram meter = metrics.meter(name);
+    return from(
+        dispatch ->
+            fuser.connect(
+                a -> {
+                  final long start = System.nanoTime();
+                  dispatch.run(a);
+                  meter.record(System.nanoTime() - start);
+                }));
+  }
+
+  private static <A> Fuser<A> instrumented(String name, FuserMonitor monitor, Fuser<A> fuser) {
+    return from(
+        dispatch ->
+            fuser.connect(
+                a -> {
+                  final long start = System.nanoTime();
+                  dispatch.run(a);
+                  monitor.onDispatch(name, a, System.nanoTime() - start);
+                }));
+  }
+
   /**
    * Start observing the events emitted by a Fuser. Remember to call dispose() on the disposable
    * returned when connecting. Otherwise you may leak resources.
@@ -178,51 +575,86 @@ public final class Fuser<A> {
    * @param effect the side-effect which should be performed when the Fuser emits an event
    * @return a disposable which can be called to unsubscribe from the Fuser's events
    */
+  @SuppressWarnings("unchecked")
   public Disposable connect(Effect<A> effect) {
     final AtomicBoolean isDisposed = new AtomicBoolean(false);
+    final List<Disposable> disposables = new ArrayList<>();
 
-    final Effect<A> safeEffect =
-        value -> {
-          if (!isDisposed.get()) {
-            effect.run(value);
-          }
-        };
-
-    final Disposable disposable = source.connect(safeEffect);
+    connect((Effect<Object>) effect, isDisposed, disposables);
 
     return () -> {
-      isDisposed.set(true);
-      disposable.dispose();
+      if (isDisposed.getAndSet(true)) {
+        return;
+      }
+      for (final Disposable disposable : disposables) {
+        disposable.dispose();
+      }
     };
   }
 
-  private static <A> List<Fuser<A>> upcast(Collection<Fuser<? extends A>> children) {
-    final List<Fuser<A>> fusers = new ArrayList<>();
+  private void connect(
+      Effect<Object> effect, AtomicBoolean isDisposed, List<Disposable> disposables) {
+    switch (kind) {
+      case SOURCE:
+        final Effect<A> safeEffect =
+            value -> {
+              if (!isDisposed.get()) {
+                effect.run(value);
+              }
+            };
+        disposables.add(source.connect(safeEffect));
+        break;
+
+      case EXTRACT:
+        final Function<Object, Object>[] steps = this.steps;
+        parent.connect(
+            value -> {
+              Object result = value;
+              for (final Function<Object, Object> step : steps) {
+                result = step.apply(result);
+                if (result == DROP) {
+                  return;
+                }
+              }
+              effect.run(result);
+            },
+            isDisposed,
+            disposables);
+        break;
+
+      default:
+        for (final Fuser<Object> child : children) {
+          child.connect(effect, isDisposed, disposables);
+        }
+        break;
+    }
+  }
+
+  /** Add an extract step, fusing it into this Fuser if it is an extract itself. */
+  @SuppressWarnings("unchecked")
+  private <B> Fuser<B> then(Function<Object, Object> step) {
+    if (kind != EXTRACT) {
+      return new Fuser<>(this, (Function<Object, Object>[]) new Function<?, ?>[] {step});
+    }
+
+    final Function<Object, Object>[] fused = Arrays.copyOf(steps, steps.length + 1);
+    fused[steps.length] = step;
+    return new Fuser<>(parent, fused);
+  }
+
+  /** Copy the children, inlining the children of those which merge Fusers themselves. */
+  @SuppressWarnings("unchecked")
+  private static <A> List<Fuser<Object>> flatten(Collection<Fuser<? extends A>> children) {
+    final List<Fuser<Object>> fusers = new ArrayList<>();
     synchronized (children) {
       for (Fuser<? extends A> child : children) {
-        @SuppressWarnings("unchecked")
-        final Fuser<A> upCast = (Fuser<A>) child;
-        fusers.add(upCast);
+        if (child.kind == ALL) {
+          fusers.addAll(child.children);
+        } else {
+          fusers.add((Fuser<Object>) child);
+        }
       }
     }
     return fusers;
   }
-
-  private static <A> Source<A> sourceFrom(List<Fuser<A>> fusers) {
-    return effect -> {
-      final List<Disposable> disposables = new ArrayList<>();
-      for (final Fuser<A> fuser : fusers) {
-        final Disposable disposable = fuser.connect(effect);
-        disposables.add(disposable);
-      }
-      return () -> {
-        synchronized (disposables) {
-          for (final Disposable disposable : disposables) {
-            disposable.dispose();
-          }
-          disposables.clear();
-        }
-      };
-    };
-  }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+import com.spotify.diffuser.Effect;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A set of Fusers which can change while it is connected, e.g. the click Fusers of the rows of a
+ * list, which come and go as the list scrolls. Connect to it using {@link
+ * Fuser#fromDynamic(FuserGroup)}.
+ *
+ * <p>Adding or removing a child only connects or disposes that child, in every connection of the
+ * group, so the cost tracks the rows which changed rather than the size of the group. Children and
+ * connections are kept in concurrent maps, so no lock is held across the group.
+ *
+ * @param <A> The type of events emitted by the children
+ */
+public final class FuserGroup<A> {
+  // The children of the group, and the live connections to the group, used as concurrent sets.
+  private final ConcurrentMap<Child<A>, Boolean> children = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Connection<A>, Boolean> connections = new ConcurrentHashMap<>();
+
+  /**
+   * Add a child, and connect it in every live connection of the group.
+   *
+   * @param child: the Fuser to add. The same Fuser may be added several times.
+   * @return A Disposable which removes the child again, and disposes its connections.
+   */
+  public Disposable add(Fuser<? extends A> child) {
+    @SuppressWarnings("unchecked")
+    final Child<A> node = new Child<>((Fuser<A>) child);
+    children.put(node, Boolean.TRUE);
+    for (Connection<A> connection : connections.keySet()) {
+      connection.attach(node);
+    }
+
+    return () -> {
+      if (children.remove(node) == null) {
+        return;
+      }
+      // Set before detaching, so that a connection which is attaching the child right now finds
+      // out that it should detach it again.
+      node.removed = true;
+      for (Connection<A> connection : connections.keySet()) {
+        connection.detach(node);
+      }
+    };
+  }
+
+  /** @return The number of children in the group. */
+  public int size() {
+    return children.size();
+  }
+
+  Disposable connect(Effect<A> effect) {
+    final Connection<A> connection = new Connection<>(effect);
+    connections.put(connection, Boolean.TRUE);
+    for (Child<A> node : children.keySet()) {
+      connection.attach(node);
+    }
+
+    return () -> {
+      connections.remove(connection);
+      connection.dispose();
+    };
+  }
+
+  private static final class Child<A> {
+    final Fuser<A> fuser;
+    volatile boolean removed;
+
+    Child(Fuser<A> fuser) {
+      this.fuser = fuser;
+    }
+  }
+
+  private static final class Connection<A> {
+    // Reserves a child's entry while it is being connected.
+    private static final Disposable CONNECTING = () -> {};
+
+    private final Effect<A> effect;
+    private final ConcurrentMap<Child<A>, Disposable> attached = new ConcurrentHashMap<>();
+    private volatile boolean disposed;
+
+    Connection(Effect<A> effect) {
+      this.effect = effect;
+    }
+
+    void attach(Child<A> node) {
+      // The group and the child may both try to attach the same child, only the first one does.
+      if (disposed || attached.putIfAbsent(node, CONNECTING) != null) {
+        return;
+      }
+
+      final Disposable disposable;
+      try {
+        disposable = node.fuser.connect(effect);
+      } catch (RuntimeException | Error e) {
+        attached.remove(node, CONNECTING);
+        throw e;
+      }
+      if (!attached.replace(node, CONNECTING, disposable)) {
+        // Detached while connecting.
+        disposable.dispose();
+        return;
+      }
+      if (node.removed || disposed) {
+        detach(node);
+      }
+    }
+
+    void detach(Child<A> node) {
+      final Disposable disposable = attached.remove(node);
+      if (disposable != null) {
+        disposable.dispose();
+      }
+    }
+
+    void dispose() {
+      disposed = true;
+      for (Map.Entry<Child<A>, Disposable> entry : attached.entrySet()) {
+        if (attached.remove(entry.getKey(), entry.getValue())) {
+          entry.getValue().dispose();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link FuserMonitor} which counts the events of every named or metered Fuser, and keeps a
+ * histogram of the time it took to dispatch them downstream. Wrapping every child of a {@link
+ * Fuser#fromAll(Fuser[])} with {@link Fuser#metered(String, FuserMetrics, Fuser)} shows which
+ * source is flooding the stream, e.g. a text watcher or a scroll listener.
+ *
+ * <p>Histograms are striped, so Fusers which emit from several threads rarely contend on them. It
+ * can be installed as is, and read through {@link FuserMonitors#installed()}, or be passed to
+ * metered Fusers directly.
+ */
+public class FuserMetrics implements FuserMonitor {
+  private final ConcurrentMap<String, StripedHistogram> meters = new ConcurrentHashMap<>();
+
+  @Override
+  public void onDispatch(String name, Object event, long dispatchNanos) {
+    meter(name).record(dispatchNanos);
+  }
+
+  /** @return The names of all Fusers which have emitted events so far. */
+  public List<String> names() {
+    final List<String> names = new ArrayList<>();
+    for (Map.Entry<String, StripedHistogram> meter : meters.entrySet()) {
+      // Metered Fusers get their meter when they are created, before they emit anything.
+      if (meter.getValue().count() > 0) {
+        names.add(meter.getKey());
+      }
+    }
+    return names;
+  }
+
+  /** @return How many events Fusers with this name have emitted. */
+  public long events(String name) {
+    final StripedHistogram meter = meters.get(name);
+    return meter != null ? meter.count() : 0;
+  }
+
+  /** @return The time it took to dispatch the events of Fusers with this name. */
+  public LatencyHistogram latency(String name) {
+    final StripedHistogram meter = meters.get(name);
+    return meter != null
+        ? meter.snapshot()
+        : new LatencyHistogram(new long[LatencyHistogram.BUCKETS], 0, 0);
+  }
+
+  /** Reset all counters. */
+  public void reset() {
+    // Meters are kept, since metered Fusers hold on to theirs.
+    for (StripedHistogram meter : meters.values()) {
+      meter.reset();
+    }
+  }
+
+  // Looked up once by Fuser.metered(), so that metered Fusers record without a map lookup.
+  StripedHistogram meter(String name) {
+    final StripedHistogram meter = meters.get(name);
+    if (meter != null) {
+      return meter;
+    }
+    final StripedHistogram created = new StripedHistogram();
+    final StripedHistogram existing = meters.putIfAbsent(name, created);
+    return existing != null ? existing : created;
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+/**
+ * Receives a callback for every event which passes through a named Fuser, see {@link
+ * Fuser#named(String, Fuser)}.
+ *
+ * <p>A monitor is installed by listing its class name in a {@code
+ * META-INF/services/com.spotify.diffuser.fuser.FuserMonitor} resource, and it is loaded once, using
+ * {@link java.util.ServiceLoader}, the first time a Fuser is named. When no monitor is installed,
+ * naming a Fuser does nothing at all.
+ *
+ * <p>Callbacks happen on the thread which dispatched the event, so they should be fast.
+ */
+public interface FuserMonitor {
+
+  /**
+   * Called after an event has been dispatched through a named Fuser.
+   *
+   * @param name: the name of the Fuser.
+   * @param event: the event which was dispatched.
+   * @param dispatchNanos: the time it took to deliver the event to everything connected downstream.
+   */
+  void onDispatch(String name, Object event, long dispatchNanos);
+
+  /**
+   * Called once, when the monitor is loaded. A monitor which returns false is not installed, e.g.
+   * because what it records is not available on this JVM, so that naming a Fuser does nothing.
+   *
+   * @return false if this monitor should not be installed.
+   */
+  default boolean isEnabled() {
+    return true;
+  }
+}
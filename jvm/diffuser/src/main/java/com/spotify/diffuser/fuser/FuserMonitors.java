@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/** Gives access to the {@link FuserMonitor} which was installed, if any. */
+public final class FuserMonitors {
+  // Read when Fusers are named, so that nothing is instrumented without it.
+  private static volatile FuserMonitor monitor = load();
+
+  private FuserMonitors() {}
+
+  /**
+   * @return The FuserMonitor which was loaded from {@code
+   *     META-INF/services/com.spotify.diffuser.fuser.FuserMonitor}, or null if there is none. When
+   *     more than one monitor is listed, the returned monitor forwards to all of them.
+   */
+  public static FuserMonitor installed() {
+    return monitor;
+  }
+
+  // Lets tests monitor the Fusers they create, without instrumenting every other test.
+  static void install(FuserMonitor newMonitor) {
+    monitor = newMonitor;
+  }
+
+  private static FuserMonitor load() {
+    return combine(ServiceLoader.load(FuserMonitor.class, FuserMonitor.class.getClassLoader()));
+  }
+
+  static FuserMonitor combine(Iterable<FuserMonitor> loaded) {
+    final List<FuserMonitor> monitors = new ArrayList<>();
+    for (FuserMonitor monitor : loaded) {
+      if (monitor.isEnabled()) {
+        monitors.add(monitor);
+      }
+    }
+
+    if (monitors.isEmpty()) {
+      return null;
+    }
+    if (monitors.size() == 1) {
+      return monitors.get(0);
+    }
+
+    final FuserMonitor[] all = monitors.toArray(new FuserMonitor[0]);
+    return (name, event, dispatchNanos) -> {
+      for (FuserMonitor monitor : all) {
+        monitor.onDispatch(name, event, dispatchNanos);
+      }
+    };
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+import com.spotify.diffuser.Effect;
+import com.spotify.diffuser.Function;
+import com.spotify.diffuser.Scheduler;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the latest event of every key, and delivers them when the Scheduler runs the drain task.
+ * Keys are delivered in the order in which they first arrived since the last drain, each with its
+ * latest event. An event which replaces a waiting event with the same key is counted as a drop.
+ *
+ * <p>Like {@link ConflatingEffect}, the drain task is only scheduled when no other drain is
+ * scheduled or running, so the target never runs concurrently with itself.
+ */
+final class KeyedConflatingEffect<A, K> implements Effect<A> {
+  // Stands in for null events, which a ConcurrentMap can't hold.
+  private static final Object NULL = new Object();
+
+  private final Function<A, K> key;
+  private final Scheduler scheduler;
+  private final DropCounter dropped;
+  private final Effect<A> target;
+
+  private final ConcurrentMap<K, Object> latest = new ConcurrentHashMap<>();
+  private final Queue<K> order = new ConcurrentLinkedQueue<>();
+  // The number of keys in order, since ConcurrentLinkedQueue.size() walks the whole queue.
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final Runnable drain = this::drain;
+
+  KeyedConflatingEffect(
+      Function<A, K> key, Scheduler scheduler, DropCounter dropped, Effect<A> target) {
+    this.key = key;
+    this.scheduler = scheduler;
+    this.dropped = dropped;
+    this.target = target;
+  }
+
+  @Override
+  public void run(A value) {
+    final K eventKey = key.apply(value);
+    if (latest.put(eventKey, value != null ? value : NULL) == null) {
+      order.add(eventKey);
+      waiting.incrementAndGet();
+    } else if (dropped != null) {
+      dropped.increment();
+    }
+
+    if (scheduled.compareAndSet(false, true)) {
+      schedule();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void drain() {
+    try {
+      // Keys which arrive while draining are left for the next drain, scheduled below.
+      for (int count = waiting.get(); count > 0; count--) {
+        final K eventKey = order.poll();
+        waiting.decrementAndGet();
+        final Object value = latest.remove(eventKey);
+        if (value != null) {
+          target.run(value != NULL ? (A) value : null);
+        }
+      }
+    } finally {
+      scheduled.set(false);
+      if (waiting.get() > 0 && scheduled.compareAndSet(false, true)) {
+        schedule();
+      }
+    }
+  }
+
+  private void schedule() {
+    try {
+      scheduler.schedule(drain);
+    } catch (RuntimeException | Error e) {
+      scheduled.set(false);
+      throw e;
+    }
+  }
+}
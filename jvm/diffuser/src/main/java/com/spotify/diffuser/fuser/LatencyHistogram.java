@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+import java.util.Arrays;
+
+/**
+ * A snapshot of the time it took to dispatch events through a metered Fuser, as returned by {@link
+ * FuserMetrics#latency(String)}.
+ *
+ * <p>Latencies are counted in buckets whose bounds are powers of two, so percentiles are accurate
+ * to within a factor of two, which is enough to tell a 100us effect from a 10ms one.
+ */
+public final class LatencyHistogram {
+  static final int BUCKETS = 64;
+
+  private final long[] buckets;
+  private final long count;
+  private final long totalNanos;
+  private final long maxNanos;
+
+  LatencyHistogram(long[] buckets, long totalNanos, long maxNanos) {
+    long count = 0;
+    for (long bucket : buckets) {
+      count += bucket;
+    }
+    this.buckets = buckets;
+    this.count = count;
+    this.totalNanos = totalNanos;
+    this.maxNanos = maxNanos;
+  }
+
+  /** The bucket of a latency: 0 for 0ns, otherwise i for latencies in [2^(i-1), 2^i). */
+  static int bucket(long nanos) {
+    return nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+  }
+
+  /** @return The number of events which were dispatched. */
+  public long count() {
+    return count;
+  }
+
+  /** @return The total time spent dispatching events. */
+  public long totalNanos() {
+    return totalNanos;
+  }
+
+  /** @return The average time it took to dispatch an event, or 0 if there were no events. */
+  public long meanNanos() {
+    return count > 0 ? totalNanos / count : 0;
+  }
+
+  /** @return The longest time it took to dispatch an event. */
+  public long maxNanos() {
+    return maxNanos;
+  }
+
+  /**
+   * @param percentile: a number between 0 and 100, e.g. 99 for the 99th percentile.
+   * @return An upper bound of the time it took to dispatch the given percentile of events, which is
+   *     at most twice the exact value, or 0 if there were no events.
+   */
+  public long percentileNanos(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+    }
+    if (count == 0) {
+      return 0;
+    }
+
+    final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += buckets[i];
+      if (seen >= rank) {
+        return Math.min(maxNanos, i == 0 ? 0 : (1L << i) - 1);
+      }
+    }
+    return maxNanos;
+  }
+
+  @Override
+  public String toString() {
+    return "LatencyHistogram{count="
+        + count
+        + ", meanNanos="
+        + meanNanos()
+        + ", maxNanos="
+        + maxNanos
+        + ", buckets="
+        + Arrays.toString(buckets)
+        + "}";
+  }
+}
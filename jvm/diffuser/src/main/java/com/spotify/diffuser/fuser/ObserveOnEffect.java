@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+import com.spotify.diffuser.Effect;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Puts events in a {@link RingBuffer}, and delivers them on an Executor, one batch per task.
+ *
+ * <p>A counter of missed drains makes sure that only one drain task runs at a time, so the target
+ * effect is never run concurrently, and that a producer only submits a task when no drain is
+ * pending. A drain delivers at most one queue's worth of events before it gives the executor back,
+ * by submitting itself again.
+ */
+final class ObserveOnEffect<A> implements Effect<A>, Runnable {
+  // Stands in for null events, which the RingBuffer can't hold.
+  private static final Object NULL = new Object();
+
+  private final Executor executor;
+  private final int batchSize;
+  private final OverflowStrategy overflow;
+  private final QueueMetrics metrics;
+  private final Effect<A> target;
+
+  private final RingBuffer queue;
+  private final AtomicInteger missed = new AtomicInteger();
+  // The thread which is delivering events, which must never wait for room in the queue.
+  private volatile Thread drainer;
+
+  ObserveOnEffect(
+      Executor executor,
+      int capacity,
+      OverflowStrategy overflow,
+      QueueMetrics metrics,
+      Effect<A> target) {
+    this.executor = executor;
+    this.batchSize = capacity;
+    this.overflow = overflow;
+    this.metrics = metrics;
+    this.target = target;
+    this.queue = new RingBuffer(capacity);
+  }
+
+  @Override
+  public void run(A value) {
+    final Object element = value != null ? value : NULL;
+    if (!queue.offer(element) && !overflow(element)) {
+      return;
+    }
+    if (metrics != null) {
+      metrics.onEnqueued();
+    }
+
+    if (missed.getAndIncrement() == 0) {
+      executor.execute(this);
+    }
+  }
+
+  /** @return true if the element was added to the queue after all. */
+  private boolean overflow(Object element) {
+    switch (overflow) {
+      case BLOCK:
+        if (drainer == Thread.currentThread()) {
+          throw new IllegalStateException(
+              "the queue is full, and the thread which empties it can't wait for room");
+        }
+        while (!queue.offer(element)) {
+          LockSupport.parkNanos(1000);
+        }
+        return true;
+
+      case DROP_OLDEST:
+        while (!queue.offer(element)) {
+          if (queue.poll() != null && metrics != null) {
+            metrics.onDequeued(1);
+            metrics.onDropped();
+          }
+        }
+        return true;
+
+      case DROP_NEWEST:
+        if (metrics != null) {
+          metrics.onDropped();
+        }
+        return false;
+
+      default:
+        if (metrics != null) {
+          metrics.onDropped();
+        }
+        throw new IllegalStateException("the queue is full: " + batchSize + " events are waiting");
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void run() {
+    if (metrics != null) {
+      metrics.onDrain(queue.size());
+    }
+
+    int drains = missed.get();
+    int delivered = 0;
+    boolean completed = false;
+    drainer = Thread.currentThread();
+    try {
+      while (true) {
+        Object element;
+        while ((element = queue.poll()) != null) {
+          delivered++;
+          target.run(element != NULL ? (A) element : null);
+
+          if (delivered == batchSize) {
+            // Leave the rest for the next task, so that other work on the executor can run.
+            completed = true;
+            executor.execute(this);
+            return;
+          }
+        }
+
+        drains = missed.addAndGet(-drains);
+        if (drains == 0) {
+          completed = true;
+          return;
+        }
+      }
+    } finally {
+      drainer = null;
+      if (metrics != null) {
+        metrics.onDequeued(delivered);
+      }
+      if (!completed) {
+        // The target threw, so the exception goes to the executor, and the rest of the queue is
+        // delivered by the next task.
+        executor.execute(this);
+      }
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+/**
+ * What {@link Fuser#observeOn(java.util.concurrent.Executor, int, OverflowStrategy, Fuser)} does
+ * with an event when its queue is full.
+ */
+public enum OverflowStrategy {
+  /**
+   * Wait until the queue has room. Never use this when the events can be emitted on the executor
+   * which drains the queue, e.g. a main thread Source with a main thread executor: the drain task
+   * can't run while that thread waits, so it would wait forever. An event emitted by the effect
+   * while it is delivering events throws an {@link IllegalStateException} instead of waiting for
+   * itself, but other emits on the executor's thread can't be detected.
+   */
+  BLOCK,
+
+  /** Remove the oldest event in the queue to make room for the new one. */
+  DROP_OLDEST,
+
+  /** Drop the new event. */
+  DROP_NEWEST,
+
+  /** Throw an {@link IllegalStateException} on the thread which emitted the event. */
+  FAIL
+}
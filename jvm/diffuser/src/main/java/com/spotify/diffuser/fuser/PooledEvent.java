@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+/**
+ * The base class of events which are recycled through an {@link EventPool}, see {@link
+ * Fuser#fromPooled(Source, EventPool)}.
+ *
+ * <p>A pooled event is only valid while it is being dispatched: once every connected effect has
+ * returned, it is recycled and its fields will be overwritten by a later event. Effects which need
+ * an event's contents later must copy them. To find effects which don't, subclasses should call
+ * {@link #checkNotRecycled()} in their accessors, which throws when a checking pool has recycled
+ * the event.
+ */
+public abstract class PooledEvent {
+  private boolean recycled;
+
+  /**
+   * Throw if the event has been recycled by a checking {@link EventPool}. Events from a pool which
+   * doesn't check are reused instead, so this never throws for them.
+   */
+  protected final void checkNotRecycled() {
+    if (recycled) {
+      throw new IllegalStateException(
+          getClass().getSimpleName() + " was used after it was recycled, copy it instead");
+    }
+  }
+
+  /** Reset the contents of the event before it is reused, e.g. to release references. */
+  protected void clear() {}
+
+  final boolean isRecycled() {
+    return recycled;
+  }
+
+  final void markRecycled() {
+    recycled = true;
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the queues of Fusers which deliver their events on an Executor, see {@link
+ * Fuser#observeOn(java.util.concurrent.Executor, int, OverflowStrategy, QueueMetrics, Fuser)}. A
+ * single QueueMetrics can be shared by several Fusers, in which case it reports their sum.
+ *
+ * <p>Producers only ever add to striped counters, so measuring doesn't make them contend.
+ */
+public final class QueueMetrics {
+  private final StripedCounter enqueued = new StripedCounter();
+  private final StripedCounter dequeued = new StripedCounter();
+  private final StripedCounter dropped = new StripedCounter();
+  private final AtomicLong maxDepth = new AtomicLong();
+
+  /** @return The number of events which are waiting to be delivered. */
+  public long depth() {
+    // dequeued is read first, so that a concurrent delivery can't make the depth negative.
+    final long out = dequeued.sum();
+    return enqueued.sum() - out;
+  }
+
+  /** @return The largest number of events which were found waiting when a queue was drained. */
+  public long maxDepth() {
+    return maxDepth.get();
+  }
+
+  /** @return The number of events which were dropped because a queue was full. */
+  public long dropped() {
+    return dropped.sum();
+  }
+
+  void onEnqueued() {
+    enqueued.add(1);
+  }
+
+  void onDequeued(int count) {
+    dequeued.add(count);
+  }
+
+  void onDropped() {
+    dropped.add(1);
+  }
+
+  void onDrain(long depth) {
+    long max = maxDepth.get();
+    while (depth > max && !maxDepth.compareAndSet(max, depth)) {
+      max = maxDepth.get();
+    }
+  }
+}
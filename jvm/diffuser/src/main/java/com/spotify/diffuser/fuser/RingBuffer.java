@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock-free queue, after Dmitry Vyukov's bounded MPMC queue. Every slot has a sequence
+ * number which tells producers and consumers whose turn it is, so a producer claims a slot with a
+ * single CAS on the tail, and never waits for another producer.
+ *
+ * <p>The queue is drained by a single consumer, but producers may also remove elements when they
+ * drop the oldest event, which is why consumers are synchronized by a CAS on the head as well. Null
+ * elements are not allowed.
+ */
+final class RingBuffer {
+  private final int mask;
+  private final AtomicReferenceArray<Object> elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+
+  RingBuffer(int capacity) {
+    int size = 1;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    this.mask = size - 1;
+    this.elements = new AtomicReferenceArray<>(size);
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /** @return false if the queue is full. */
+  boolean offer(Object element) {
+    long position = tail.get();
+    while (true) {
+      final int index = (int) position & mask;
+      final long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          elements.lazySet(index, element);
+          // Publishes the element to consumers.
+          sequences.set(index, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        return false;
+      } else {
+        position = tail.get();
+      }
+    }
+  }
+
+  /** @return The oldest element, or null if the queue is empty. */
+  Object poll() {
+    long position = head.get();
+    while (true) {
+      final int index = (int) position & mask;
+      final long difference = sequences.get(index) - (position + 1);
+      if (difference == 0) {
+        if (head.compareAndSet(position, position + 1)) {
+          final Object element = elements.get(index);
+          elements.lazySet(index, null);
+          // Hands the slot back to producers, one lap later.
+          sequences.set(index, position + mask + 1);
+          return element;
+        }
+        position = head.get();
+      } else if (difference < 0) {
+        return null;
+      } else {
+        position = head.get();
+      }
+    }
+  }
+
+  /** @return The number of elements, which may be stale by the time it is used. */
+  int size() {
+    final long consumed = head.get();
+    return (int) Math.max(0, tail.get() - consumed);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+import com.spotify.diffuser.Effect;
+import java.util.Arrays;
+
+/**
+ * Keeps a single connection to a Fuser, and dispatches its events to every connected effect. The
+ * connection is made when the first effect connects, and disposed when the last one disconnects.
+ *
+ * <p>Effects are kept in an array which is replaced whenever an effect connects or disconnects, so
+ * dispatching an event never takes a lock. Connecting and disconnecting are synchronized, so that
+ * the upstream connection is made and disposed exactly once per period with connected effects.
+ */
+final class SharedSource<A> implements Source<A> {
+  private static final Effect<?>[] NONE = {};
+
+  private final Fuser<A> upstream;
+  private final Object lock = new Object();
+
+  private volatile Effect<A>[] effects = newEffects(0);
+  private Disposable connection;
+
+  SharedSource(Fuser<A> upstream) {
+    this.upstream = upstream;
+  }
+
+  @Override
+  public Disposable connect(Effect<A> effect) {
+    synchronized (lock) {
+      final Effect<A>[] current = effects;
+      final Effect<A>[] added = Arrays.copyOf(current, current.length + 1);
+      added[current.length] = effect;
+      effects = added;
+
+      if (current.length == 0) {
+        try {
+          connection = upstream.connect(this::dispatch);
+        } catch (RuntimeException | Error e) {
+          effects = current;
+          throw e;
+        }
+      }
+    }
+
+    return () -> disconnect(effect);
+  }
+
+  private void dispatch(A value) {
+    for (final Effect<A> effect : effects) {
+      effect.run(value);
+    }
+  }
+
+  private void disconnect(Effect<A> effect) {
+    synchronized (lock) {
+      final Effect<A>[] current = effects;
+      int index = -1;
+      for (int i = 0; i < current.length; i++) {
+        if (current[i] == effect) {
+          index = i;
+          break;
+        }
+      }
+      if (index < 0) {
+        return;
+      }
+
+      if (current.length == 1) {
+        effects = newEffects(0);
+        // Disposed while holding the lock, so that a new first effect can't connect upstream
+        // before the old connection is gone.
+        connection.dispose();
+        connection = null;
+        return;
+      }
+
+      final Effect<A>[] removed = newEffects(current.length - 1);
+      System.arraycopy(current, 0, removed, 0, index);
+      System.arraycopy(current, index + 1, removed, index, current.length - index - 1);
+      effects = removed;
+    }
+  }
+
+  // The empty array is shared, since it is never written to.
+  @SuppressWarnings("unchecked")
+  private static <A> Effect<A>[] newEffects(int length) {
+    return (Effect<A>[]) (length == 0 ? NONE : new Effect<?>[length]);
+  }
+}
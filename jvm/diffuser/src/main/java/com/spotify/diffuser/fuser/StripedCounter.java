@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter which spreads its updates over several cells, in the spirit of LongAdder, which is only
+ * available from Android API level 24. Threads pick a cell from their id, and cells are padded so
+ * that two of them never share a cache line, so threads counting at the same time rarely contend.
+ */
+final class StripedCounter {
+  // 8 longs are 64 bytes, the cache line size of most CPUs.
+  static final int PADDING = 8;
+  static final int STRIPES = stripes();
+
+  private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+  void add(long value) {
+    cells.getAndAdd(stripe() * PADDING, value);
+  }
+
+  long sum() {
+    long sum = 0;
+    for (int i = 0; i < STRIPES; i++) {
+      sum += cells.get(i * PADDING);
+    }
+    return sum;
+  }
+
+  void reset() {
+    for (int i = 0; i < STRIPES; i++) {
+      cells.set(i * PADDING, 0);
+    }
+  }
+
+  /** @return The stripe of the current thread, between 0 and STRIPES. */
+  static int stripe() {
+    long id = Thread.currentThread().getId();
+    // Thread ids are sequential, so they are mixed to spread neighbours over all stripes.
+    id *= 0x9E3779B97F4A7C15L;
+    return (int) (id >>> 32) & (STRIPES - 1);
+  }
+
+  private static int stripes() {
+    final int processors = Runtime.getRuntime().availableProcessors();
+    int stripes = 1;
+    while (stripes < processors && stripes < 64) {
+      stripes <<= 1;
+    }
+    return stripes;
+  }
+}
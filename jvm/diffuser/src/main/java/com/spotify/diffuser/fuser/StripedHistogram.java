@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The buckets of a {@link LatencyHistogram}, spread over the same stripes as a {@link
+ * StripedCounter}. Every stripe has its own buckets, total and maximum, so recording a latency only
+ * touches the cache lines of the current thread's stripe. The number of latencies is the sum of the
+ * buckets, so it is not counted separately.
+ */
+final class StripedHistogram {
+  private static final int TOTAL = LatencyHistogram.BUCKETS;
+  private static final int MAX = TOTAL + 1;
+  // The buckets, the total and the maximum, rounded up to whole cache lines.
+  private static final int STRIDE =
+      (MAX + StripedCounter.PADDING) / StripedCounter.PADDING * StripedCounter.PADDING;
+
+  private final AtomicLongArray cells = new AtomicLongArray(StripedCounter.STRIPES * STRIDE);
+
+  void record(long nanos) {
+    final int stripe = StripedCounter.stripe() * STRIDE;
+    cells.getAndIncrement(stripe + LatencyHistogram.bucket(nanos));
+    cells.getAndAdd(stripe + TOTAL, nanos);
+
+    long max = cells.get(stripe + MAX);
+    while (nanos > max && !cells.compareAndSet(stripe + MAX, max, nanos)) {
+      max = cells.get(stripe + MAX);
+    }
+  }
+
+  long count() {
+    long count = 0;
+    for (int stripe = 0; stripe < cells.length(); stripe += STRIDE) {
+      for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+        count += cells.get(stripe + i);
+      }
+    }
+    return count;
+  }
+
+  LatencyHistogram snapshot() {
+    final long[] buckets = new long[LatencyHistogram.BUCKETS];
+    long totalNanos = 0;
+    long maxNanos = 0;
+    for (int stripe = 0; stripe < cells.length(); stripe += STRIDE) {
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] += cells.get(stripe + i);
+      }
+      totalNanos += cells.get(stripe + TOTAL);
+      maxNanos = Math.max(maxNanos, cells.get(stripe + MAX));
+    }
+    return new LatencyHistogram(buckets, totalNanos, maxNanos);
+  }
+
+  void reset() {
+    for (int i = 0; i < cells.length(); i++) {
+      cells.set(i, 0);
+    }
+  }
+}
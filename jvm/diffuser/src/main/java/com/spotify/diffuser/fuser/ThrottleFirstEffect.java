@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+import com.spotify.diffuser.Effect;
+import com.spotify.diffuser.TimedScheduler;
+
+/**
+ * Emits the first event of every window right away, and drops the rest of the window. Unlike the
+ * other time-based operators it never waits for a timer, so it only keeps the time of the last
+ * emitted event.
+ */
+final class ThrottleFirstEffect<A> implements Effect<A> {
+  private final TimedScheduler scheduler;
+  private final long windowNanos;
+  private final Effect<A> target;
+
+  private long windowStart;
+  private boolean started;
+
+  ThrottleFirstEffect(TimedScheduler scheduler, long windowNanos, Effect<A> target) {
+    this.scheduler = scheduler;
+    this.windowNanos = windowNanos;
+    this.target = target;
+  }
+
+  @Override
+  public void run(A value) {
+    final long now = scheduler.nanoTime();
+    synchronized (this) {
+      if (started && now - windowStart < windowNanos) {
+        return;
+      }
+      started = true;
+      windowStart = now;
+    }
+    target.run(value);
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.spotify.diffuser.Cancellable;
+import com.spotify.diffuser.Effect;
+import com.spotify.diffuser.TimedScheduler;
+
+/**
+ * The base of the time-based Fuser operators which wait for a timer. Each connection is its own
+ * timer task, so waiting for a timer doesn't allocate anything except what the Scheduler needs to
+ * keep track of it, and at most one timer is pending per connection.
+ */
+abstract class TimedEffect<A> implements Effect<A>, Runnable {
+  final TimedScheduler scheduler;
+  final long windowNanos;
+  private final Effect<A> target;
+
+  private Cancellable timer;
+  private A latest;
+  private boolean hasLatest;
+
+  TimedEffect(TimedScheduler scheduler, long windowNanos, Effect<A> target) {
+    this.scheduler = scheduler;
+    this.windowNanos = windowNanos;
+    this.target = target;
+  }
+
+  /** Keep an event until the timer fires, and start the timer if it isn't pending. */
+  final synchronized void offer(A value, long delayNanos) {
+    latest = value;
+    hasLatest = true;
+    if (timer == null) {
+      timer = scheduler.schedule(this, delayNanos, NANOSECONDS);
+    }
+  }
+
+  /**
+   * Called when the timer fires, while holding the lock.
+   *
+   * @return The time to wait before the timer should fire again, or 0 to deliver the latest event.
+   */
+  abstract long remainingNanos();
+
+  @Override
+  public final void run() {
+    final A value;
+    synchronized (this) {
+      timer = null;
+      if (!hasLatest) {
+        return;
+      }
+
+      final long remaining = remainingNanos();
+      if (remaining > 0) {
+        timer = scheduler.schedule(this, remaining, NANOSECONDS);
+        return;
+      }
+
+      value = latest;
+      latest = null;
+      hasLatest = false;
+    }
+    target.run(value);
+  }
+
+  /** Stop the pending timer, if any. */
+  final synchronized void cancel() {
+    if (timer != null) {
+      timer.cancel();
+      timer = null;
+    }
+    latest = null;
+    hasLatest = false;
+  }
+
+  /** Emits the latest event once no events have arrived for a whole window. */
+  static final class Debounce<A> extends TimedEffect<A> {
+    private long lastNanos;
+
+    Debounce(TimedScheduler scheduler, long windowNanos, Effect<A> target) {
+      super(scheduler, windowNanos, target);
+    }
+
+    @Override
+    public void run(A value) {
+      final long now = scheduler.nanoTime();
+      synchronized (this) {
+        // Rather than restarting the timer for every event, the timer checks when it fires
+        // whether more events have arrived, and waits for the rest of the window if they have.
+        lastNanos = now;
+        offer(value, windowNanos);
+      }
+    }
+
+    @Override
+    long remainingNanos() {
+      return lastNanos + windowNanos - scheduler.nanoTime();
+    }
+  }
+
+  /**
+   * Emits the latest event at the end of every window. The first event opens a window, unless the
+   * windows are aligned, in which case they are multiples of the window since the connection was
+   * made, which is how {@link Fuser#sample} works.
+   */
+  static final class ThrottleLast<A> extends TimedEffect<A> {
+    private final boolean aligned;
+    private final long origin;
+
+    ThrottleLast(TimedScheduler scheduler, long windowNanos, boolean aligned, Effect<A> target) {
+      super(scheduler, windowNanos, target);
+      this.aligned = aligned;
+      this.origin = scheduler.nanoTime();
+    }
+
+    @Override
+    public void run(A value) {
+      final long delay =
+          aligned ? windowNanos - (scheduler.nanoTime() - origin) % windowNanos : windowNanos;
+      offer(value, delay);
+    }
+
+    @Override
+    long remainingNanos() {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser
+
+import com.spotify.diffuser.Effect
+import com.spotify.diffuser.diffuser.Diffuser.into
+import com.spotify.diffuser.diffuser.Diffuser.intoAsync
+import com.spotify.diffuser.diffuser.Diffuser.intoLatest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.quicktheories.WithQuickTheories
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionStage
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+
+class AsyncDiffusersTest : WithQuickTheories {
+
+    private class ManualExecutor : Executor {
+        val tasks = mutableListOf<Runnable>()
+
+        override fun execute(command: Runnable) {
+            tasks.add(command)
+        }
+
+        fun runAll() {
+            while (tasks.isNotEmpty()) tasks.removeAt(0).run()
+        }
+    }
+
+    @Test
+    fun `intoAsync(executor) runs the latest changed value on the executor`() {
+        qt().forAll(lists().of(lists().of(integers().between(0, 3)).ofSizeBetween(0, 5)).ofSizeBetween(0, 6))
+                .check { bursts ->
+                    val executor = ManualExecutor()
+                    val output = mutableListOf<Int>()
+                    val expected = mutableListOf<Int>()
+                    val diffuser = intoAsync(executor, Effect<Int> { output.add(it) })
+
+                    // Equal values are filtered on the calling thread, and each burst runs once.
+                    val changes = mutableListOf<Int>()
+                    val reference = into<Int> { changes.add(it) }
+                    bursts.forEach { burst ->
+                        changes.clear()
+                        burst.forEach {
+                            diffuser.run(it)
+                            reference.run(it)
+                        }
+                        executor.runAll()
+                        changes.lastOrNull()?.let { expected.add(it) }
+                    }
+
+                    output == expected
+                }
+    }
+
+    @Test
+    fun `intoAsync(executor) does not run the side-effect on the calling thread`() {
+        val executor = ManualExecutor()
+        val output = mutableListOf<Int>()
+        val diffuser = intoAsync(executor, Effect<Int> { output.add(it) })
+
+        diffuser.run(1)
+        diffuser.run(2)
+
+        assertEquals(emptyList<Int>(), output)
+        assertEquals(1, executor.tasks.size)
+        executor.runAll()
+        assertEquals(listOf(2), output)
+    }
+
+    @Test
+    fun `intoLatest only applies the result of the latest work`() {
+        val work = mutableMapOf<Int, CompletableFuture<String>>()
+        val output = mutableListOf<String>()
+        val diffuser = intoLatest(
+                { value: Int -> CompletableFuture<String>().also { work[value] = it } as CompletionStage<String> },
+                { it: String -> output.add(it) })
+
+        diffuser.run(1)
+        diffuser.run(2)
+        diffuser.run(2)
+
+        assertTrue(work.getValue(1).isCancelled)
+        assertFalse(work.getValue(2).isCancelled)
+        assertEquals(2, work.size)
+
+        work.getValue(1).complete("one")
+        work.getValue(2).complete("two")
+
+        diffuser.run(3)
+        work.getValue(3).complete("three")
+
+        assertEquals(listOf("two", "three"), output)
+    }
+
+    @Test
+    fun `intoLatest discards results of work which completes out of order`() {
+        val work = mutableMapOf<Int, CompletableFuture<String>>()
+        val output = mutableListOf<String>()
+        // Cancelling a dependent stage does not stop the work behind it, which still completes.
+        val diffuser = intoLatest(
+                { value: Int -> CompletableFuture<String>().also { work[value] = it }.thenApply { it } },
+                { it: String -> output.add(it) })
+
+        diffuser.run(1)
+        diffuser.run(2)
+        work.getValue(2).complete("two")
+        work.getValue(1).complete("one")
+
+        assertEquals(listOf("two"), output)
+    }
+
+    @Test
+    fun `intoLatest does not hold a lock while running the side-effect`() {
+        val work = mutableMapOf<Int, CompletableFuture<String>>()
+        val output = mutableListOf<String>()
+        lateinit var diffuser: Diffuser<Int>
+        diffuser = intoLatest(
+                { value: Int -> CompletableFuture<String>().also { work[value] = it } as CompletionStage<String> },
+                { result ->
+                    // Another thread runs the Diffuser while this side-effect is still running.
+                    val other = Thread { diffuser.run(2) }
+                    other.start()
+                    other.join(5000)
+                    assertFalse(other.isAlive)
+                    output.add(result)
+                })
+
+        diffuser.run(1)
+        work.getValue(1).complete("one")
+
+        assertEquals(listOf("one"), output)
+        assertEquals(setOf(1, 2), work.keys)
+    }
+
+    @Test
+    fun `intoLatest applies newer results after the side-effect that is running`() {
+        val work = mutableMapOf<Int, CompletableFuture<String>>()
+        val output = mutableListOf<String>()
+        val applying = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        val running = AtomicInteger()
+        val overlapped = AtomicBoolean()
+        val diffuser = intoLatest(
+                { value: Int -> CompletableFuture<String>().also { work[value] = it } as CompletionStage<String> },
+                { it: String ->
+                    if (running.incrementAndGet() > 1) overlapped.set(true)
+                    if (it == "one") {
+                        applying.countDown()
+                        release.await(5, TimeUnit.SECONDS)
+                    }
+                    synchronized(output) { output.add(it) }
+                    running.decrementAndGet()
+                })
+
+        // The first result passed every check and is being applied on another thread...
+        diffuser.run(1)
+        val first = thread { work.getValue(1).complete("one") }
+        assertTrue(applying.await(5, TimeUnit.SECONDS))
+
+        // ...when newer work starts and completes, which must neither wait nor overtake it.
+        diffuser.run(2)
+        work.getValue(2).complete("two")
+        assertEquals(emptyList<String>(), synchronized(output) { output.toList() })
+
+        release.countDown()
+        first.join(5000)
+
+        assertEquals(listOf("one", "two"), output)
+        assertFalse(overlapped.get())
+    }
+
+    @Test
+    fun `intoLatest does not nest side-effects when a side-effect runs the Diffuser again`() {
+        val output = mutableListOf<String>()
+        var depth = 0
+        lateinit var diffuser: Diffuser<Int>
+        diffuser = intoLatest(
+                { value: Int -> CompletableFuture.completedFuture("$value") as CompletionStage<String> },
+                { it: String ->
+                    depth++
+                    output.add("$it@$depth")
+                    if (it == "1") diffuser.run(2)
+                    depth--
+                })
+
+        diffuser.run(1)
+
+        assertEquals(listOf("1@1", "2@1"), output)
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser
+
+import com.spotify.diffuser.Scheduler
+import com.spotify.diffuser.Schedulers
+import com.spotify.diffuser.VirtualScheduler
+import com.spotify.diffuser.diffuser.CoalescingDiffuser.coalescing
+import com.spotify.diffuser.diffuser.Diffuser.into
+import com.spotify.diffuser.diffuser.Diffuser.intoAlways
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import org.quicktheories.WithQuickTheories
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+
+class CoalescingDiffuserTest : WithQuickTheories {
+
+    @Test
+    fun `coalescing() only runs the latest value of every burst`() {
+        qt().forAll(lists().of(lists().of(integers().between(0, 3)).ofSizeBetween(0, 5)).ofSizeBetween(0, 6))
+                .check { bursts ->
+                    val scheduler = VirtualScheduler()
+                    val output = mutableListOf<Int>()
+                    val expected = mutableListOf<Int>()
+                    val diffuser = coalescing(scheduler, into<Int> { output.add(it) })
+                    val reference = into<Int> { expected.add(it) }
+
+                    bursts.forEach { burst ->
+                        burst.forEach { diffuser.run(it) }
+                        scheduler.tick()
+                        burst.lastOrNull()?.let { reference.run(it) }
+                    }
+
+                    val skipped = bursts.map { maxOf(it.size - 1, 0) }.sum().toLong()
+                    output == expected && diffuser.skippedRuns() == skipped
+                }
+    }
+
+    @Test
+    fun `coalescing() schedules a single drain per burst`() {
+        val scheduler = VirtualScheduler()
+        val output = mutableListOf<Int>()
+        val diffuser = coalescing(scheduler, intoAlways<Int> { output.add(it) })
+
+        diffuser.run(1)
+        diffuser.run(2)
+        diffuser.run(3)
+
+        assertEquals(1, scheduler.pendingTasks())
+        assertEquals(emptyList<Int>(), output)
+
+        scheduler.tick()
+
+        assertEquals(listOf(3), output)
+        assertEquals(0, scheduler.pendingTasks())
+        assertEquals(2L, diffuser.skippedRuns())
+    }
+
+    @Test
+    fun `coalescing() reschedules values which arrive while draining`() {
+        val scheduler = VirtualScheduler()
+        val output = mutableListOf<Int>()
+        lateinit var diffuser: CoalescingDiffuser<Int>
+        diffuser = coalescing(scheduler, intoAlways<Int> {
+            output.add(it)
+            if (it == 1) diffuser.run(2)
+        })
+
+        diffuser.run(1)
+        scheduler.tick()
+        assertEquals(listOf(1), output)
+
+        scheduler.tick()
+        assertEquals(listOf(1, 2), output)
+    }
+
+    @Test
+    fun `coalescing() keeps the order of values on a multi-threaded executor`() {
+        val executor = Executors.newFixedThreadPool(4)
+        val output = Collections.synchronizedList(mutableListOf<Int>())
+        val done = CountDownLatch(1)
+        val diffuser = coalescing(Schedulers.from(executor), into<Int> {
+            output.add(it)
+            if (it == 10_000) done.countDown()
+        })
+
+        (1..10_000).forEach { diffuser.run(it) }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS))
+        executor.shutdown()
+        assertEquals(output.sorted(), output)
+        assertEquals(10_000L, output.size + diffuser.skippedRuns())
+    }
+
+    @Test
+    fun `coalescing() on a fixed-rate scheduler runs once per tick`() {
+        val executor = Executors.newSingleThreadScheduledExecutor()
+        val output = Collections.synchronizedList(mutableListOf<Int>())
+        val done = CountDownLatch(1)
+        val diffuser = coalescing(Schedulers.fixedRate(executor, 50, TimeUnit.MILLISECONDS), into<Int> {
+            output.add(it)
+            if (it == 1_000) done.countDown()
+        })
+
+        (1..1_000).forEach { diffuser.run(it) }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS))
+        executor.shutdown()
+        assertEquals(1_000, output.last())
+        assertEquals(1_000L, output.size + diffuser.skippedRuns())
+    }
+
+    @Test
+    fun `coalescing() schedules again after the scheduler rejected a drain`() {
+        val scheduler = VirtualScheduler()
+        var rejecting = true
+        val output = mutableListOf<Int>()
+        val diffuser = coalescing(Scheduler { task ->
+            if (rejecting) throw RejectedExecutionException("shut down")
+            scheduler.schedule(task)
+        }, into<Int> { output.add(it) })
+
+        try {
+            diffuser.run(1)
+            fail("the rejection should be rethrown")
+        } catch (e: RejectedExecutionException) {
+        }
+
+        rejecting = false
+        diffuser.run(2)
+        scheduler.tick()
+
+        assertEquals(listOf(2), output)
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser
+
+import com.spotify.diffuser.Effect
+import com.spotify.diffuser.Function
+import com.spotify.diffuser.GenUtils.integerLists
+import com.spotify.diffuser.diffuser.CompiledDiffuser.compile
+import com.spotify.diffuser.diffuser.CompiledDiffuser.confinedTo
+import com.spotify.diffuser.diffuser.CompiledDiffuser.unsynchronized
+import com.spotify.diffuser.diffuser.Diffuser.into
+import com.spotify.diffuser.diffuser.Diffuser.intoAll
+import com.spotify.diffuser.diffuser.Diffuser.intoAlways
+import com.spotify.diffuser.diffuser.Diffuser.intoOnce
+import com.spotify.diffuser.diffuser.Diffuser.intoWhen
+import com.spotify.diffuser.diffuser.Diffuser.map
+import com.spotify.diffuser.diffuser.Diffuser.mapWhen
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.quicktheories.WithQuickTheories
+import java.util.Random
+import java.util.concurrent.atomic.AtomicReference
+
+class CompiledDiffuserTest : WithQuickTheories {
+
+    private val didChanges = listOf<DidChange<Int>>(
+            DidChange { a, b -> a != b },
+            DidChange { a, b -> a < b },
+            DidChange { _, _ -> true },
+            DidChange { _, _ -> false }
+    )
+
+    private val transformers = listOf<Function<Int, Int>>(
+            Function { it + 1 },
+            Function { it * 2 },
+            Function { -it }
+    )
+
+    // Builds the same tree for the same seed, with each side-effect recording its position.
+    private fun randomTree(rnd: Random, depth: Int, id: String, output: MutableList<String>): Diffuser<Int> {
+        val leaf = Effect<Int> { output.add("$id:$it") }
+        val didChange = didChanges[rnd.nextInt(didChanges.size)]
+        val choice = if (depth == 0) rnd.nextInt(4) else rnd.nextInt(9)
+
+        return when (choice) {
+            0 -> intoAlways(leaf)
+            1 -> into(leaf)
+            2 -> intoOnce(leaf)
+            3 -> intoWhen(didChange, leaf)
+            4 -> map(transformers[rnd.nextInt(transformers.size)], randomTree(rnd, depth - 1, "${id}m", output))
+            5 -> intoWhen(didChange, randomTree(rnd, depth - 1, "${id}w", output))
+            6 -> intoAll((0..rnd.nextInt(3)).map { randomTree(rnd, depth - 1, "$id$it", output) })
+            7 -> mapWhen(didChange, transformers[rnd.nextInt(transformers.size)], randomTree(rnd, depth - 1, "${id}n", output))
+            else -> Diffuser((0..rnd.nextInt(3)).map { randomTree(rnd, depth - 1, "$id$it", output) })
+        }
+    }
+
+    @Test
+    fun `compile(diffuser) behaves the same as diffuser`() {
+        qt().forAll(integerLists, longs().all(), integers().between(0, 6))
+                .check { input, seed, depth ->
+                    val outputLhs = mutableListOf<String>()
+                    val outputRhs = mutableListOf<String>()
+
+                    val compiled = compile(randomTree(Random(seed), depth, "", outputLhs))
+                    val tree = randomTree(Random(seed), depth, "", outputRhs)
+
+                    input.forEach {
+                        compiled.run(it)
+                        tree.run(it)
+                    }
+
+                    assertEquals(outputRhs, outputLhs)
+                    outputLhs == outputRhs
+                }
+    }
+
+    @Test
+    fun `compile(diffuser) shares the cache of a Diffuser used more than once`() {
+        qt().forAll(integerLists)
+                .check { input ->
+                    fun tree(output: MutableList<Int>): Diffuser<Int> {
+                        val shared = into<Int> { output.add(it) }
+                        return intoAll(shared, map({ it + 1 }, shared), shared)
+                    }
+
+                    val outputLhs = mutableListOf<Int>()
+                    val outputRhs = mutableListOf<Int>()
+                    val compiled = compile(tree(outputLhs))
+                    val diffuser = tree(outputRhs)
+
+                    input.forEach {
+                        compiled.run(it)
+                        diffuser.run(it)
+                    }
+
+                    assertEquals(outputRhs, outputLhs)
+                    outputLhs == outputRhs
+                }
+    }
+
+    @Test
+    fun `compile(diffuser) does not update caches when a side-effect throws`() {
+        qt().forAll(integerLists)
+                .check { input ->
+                    fun tree(output: MutableList<Int>): Diffuser<Int> =
+                            intoAll(
+                                    into { if (it == 2) throw IllegalStateException() },
+                                    map({ it * 2 }, into { output.add(it) })
+                            )
+
+                    val outputLhs = mutableListOf<Int>()
+                    val outputRhs = mutableListOf<Int>()
+                    val compiled = compile(tree(outputLhs))
+                    val diffuser = tree(outputRhs)
+
+                    input.forEach {
+                        try {
+                            compiled.run(it)
+                        } catch (e: IllegalStateException) {
+                            outputLhs.add(-1)
+                        }
+                        try {
+                            diffuser.run(it)
+                        } catch (e: IllegalStateException) {
+                            outputRhs.add(-1)
+                        }
+                    }
+
+                    assertEquals(outputRhs, outputLhs)
+                    outputLhs == outputRhs
+                }
+    }
+
+    @Test
+    fun `unsynchronized(diffuser) behaves the same as diffuser`() {
+        qt().forAll(integerLists, longs().all(), integers().between(0, 6))
+                .check { input, seed, depth ->
+                    val outputLhs = mutableListOf<String>()
+                    val outputRhs = mutableListOf<String>()
+
+                    val compiled = unsynchronized(randomTree(Random(seed), depth, "", outputLhs))
+                    val tree = randomTree(Random(seed), depth, "", outputRhs)
+
+                    input.forEach {
+                        compiled.run(it)
+                        tree.run(it)
+                    }
+
+                    assertEquals(outputRhs, outputLhs)
+                    outputLhs == outputRhs
+                }
+    }
+
+    @Test
+    fun `confinedTo(thread, diffuser) runs on its owner thread`() {
+        val output = mutableListOf<Int>()
+        val compiled = confinedTo(Thread.currentThread(), into<Int> { output.add(it) })
+
+        compiled.run(1)
+        compiled.run(1)
+        compiled.run(2)
+
+        assertEquals(listOf(1, 2), output)
+    }
+
+    @Test
+    fun `confinedTo(thread, diffuser) fails when run from another thread`() {
+        val output = mutableListOf<Int>()
+        val compiled = confinedTo(Thread.currentThread(), into<Int> { output.add(it) })
+        val error = AtomicReference<Throwable>()
+
+        val thread = Thread {
+            try {
+                compiled.run(1)
+            } catch (e: Throwable) {
+                error.set(e)
+            }
+        }
+        thread.start()
+        thread.join()
+
+        assertTrue(error.get() is IllegalStateException)
+        assertEquals(emptyList<Int>(), output)
+    }
+}
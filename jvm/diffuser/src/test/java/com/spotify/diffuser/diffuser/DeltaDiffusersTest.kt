@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser
+
+import com.spotify.diffuser.diffuser.Diffuser.intoMapDelta
+import com.spotify.diffuser.diffuser.Diffuser.intoSetDelta
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.quicktheories.WithQuickTheories
+
+class DeltaDiffusersTest : WithQuickTheories {
+
+    private val maps = lists().of(integers().between(0, 8)).ofSizeBetween(0, 8)
+            .map { keys -> keys.associate { it to it % 3 } }
+
+    private val sets = lists().of(integers().between(0, 8)).ofSizeBetween(0, 8)
+            .map { it.toSet() }
+
+    @Test
+    fun `intoMapDelta() emits deltas which turn the previous map into the current one`() {
+        qt().forAll(lists().of(maps).ofSizeBetween(1, 6))
+                .check { input ->
+                    val state = mutableMapOf<Int, Int>()
+                    var previous = emptyMap<Int, Int>()
+                    val diffuser = intoMapDelta<Int, Int> { delta ->
+                        assertTrue(!delta.isEmpty)
+                        assertTrue(delta.added().keys.none { state.containsKey(it) })
+                        assertTrue(delta.updated().all { state.containsKey(it.key) && state[it.key] != it.value })
+                        delta.removed().keys.forEach { state.remove(it) }
+                        state.putAll(delta.added())
+                        state.putAll(delta.updated())
+                    }
+
+                    input.all {
+                        val before = state.toMap()
+                        diffuser.run(it)
+                        val ranWhenChanged = (before != state) == (previous != it)
+                        previous = it
+                        state == it && ranWhenChanged
+                    }
+                }
+    }
+
+    @Test
+    fun `intoMapDelta() uses valueChanged to find updated entries`() {
+        val output = mutableListOf<MapDelta<String, Int>>()
+        val diffuser = intoMapDelta<String, Int>({ a, b -> Math.abs(a - b) > 1 }) { output.add(it) }
+
+        diffuser.run(mapOf("a" to 1, "b" to 1))
+        diffuser.run(mapOf("a" to 2, "b" to 5))
+
+        assertEquals(mapOf("b" to 5), output[1].updated())
+        assertEquals(2, output.size)
+    }
+
+    @Test
+    fun `intoSetDelta() emits deltas which turn the previous set into the current one`() {
+        qt().forAll(lists().of(sets).ofSizeBetween(1, 6))
+                .check { input ->
+                    val state = mutableSetOf<Int>()
+                    var runs = 0
+                    val diffuser = intoSetDelta<Int> { delta ->
+                        assertTrue(delta.added().none { state.contains(it) })
+                        assertTrue(state.containsAll(delta.removed()))
+                        state.removeAll(delta.removed())
+                        state.addAll(delta.added())
+                        runs++
+                    }
+
+                    var expectedRuns = 0
+                    var previous = emptySet<Int>()
+                    input.all {
+                        diffuser.run(it)
+                        if (it != previous) expectedRuns++
+                        previous = it
+                        state == it && runs == expectedRuns
+                    }
+                }
+    }
+
+    @Test
+    fun `delta Diffusers skip the same instance without comparing elements`() {
+        var comparisons = 0
+        val map = mapOf("a" to 1)
+        val mapOutput = mutableListOf<MapDelta<String, Int>>()
+        val mapDiffuser = intoMapDelta<String, Int>({ a, b -> comparisons++; a != b }) { mapOutput.add(it) }
+        val set = setOf(1, 2)
+        val setOutput = mutableListOf<SetDelta<Int>>()
+        val setDiffuser = intoSetDelta<Int> { setOutput.add(it) }
+
+        mapDiffuser.run(map)
+        mapDiffuser.run(map)
+        setDiffuser.run(set)
+        setDiffuser.run(set)
+
+        assertEquals(0, comparisons)
+        assertEquals(1, mapOutput.size)
+        assertEquals(1, setOutput.size)
+    }
+}
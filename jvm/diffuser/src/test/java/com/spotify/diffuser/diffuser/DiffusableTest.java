@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+// Written in Java, since the generated classes only exist once javac has run the processor.
+public class DiffusableTest {
+
+  @Diffusable
+  static final class Track {
+    private final String title;
+    private final int duration;
+    private final long playCount;
+    private final double rating;
+    private final boolean playable;
+    private final char initial;
+
+    Track(String title, int duration, long playCount, double rating, boolean playable) {
+      this.title = title;
+      this.duration = duration;
+      this.playCount = playCount;
+      this.rating = rating;
+      this.playable = playable;
+      this.initial = title.charAt(0);
+    }
+
+    String title() {
+      return title;
+    }
+
+    public int getDuration() {
+      return duration;
+    }
+
+    long playCount() {
+      return playCount;
+    }
+
+    double rating() {
+      return rating;
+    }
+
+    boolean isPlayable() {
+      return playable;
+    }
+
+    char initial() {
+      return initial;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Track)) {
+        return false;
+      }
+      final Track other = (Track) o;
+      return title.equals(other.title)
+          && duration == other.duration
+          && playCount == other.playCount
+          && rating == other.rating
+          && playable == other.playable;
+    }
+
+    @Override
+    public int hashCode() {
+      return title.hashCode();
+    }
+  }
+
+  @Test
+  public void generatedDiffusersRunPropertiesWhichChanged() {
+    final List<String> output = new ArrayList<>();
+    final Diffuser<Track> diffuser =
+        DiffusableTest_TrackDiffusers.builder()
+            .title(title -> output.add("title:" + title))
+            .duration(duration -> output.add("duration:" + duration))
+            .playCount(playCount -> output.add("playCount:" + playCount))
+            .rating(rating -> output.add("rating:" + rating))
+            .playable(playable -> output.add("playable:" + playable))
+            .initial(initial -> output.add("initial:" + (char) initial))
+            .build();
+
+    diffuser.run(new Track("a", 1, 2, 0.5, true));
+    diffuser.run(new Track("a", 1, 2, 0.5, true));
+    diffuser.run(new Track("b", 1, 3, 0.5, false));
+
+    assertEquals(
+        Arrays.asList(
+            "title:a",
+            "duration:1",
+            "playCount:2",
+            "rating:0.5",
+            "playable:true",
+            "initial:a",
+            "title:b",
+            "playCount:3",
+            "playable:false",
+            "initial:b"),
+        output);
+  }
+
+  @Test
+  public void generatedDiffusersAcceptDiffusers() {
+    final List<String> output = new ArrayList<>();
+    final Diffuser<Track> diffuser =
+        DiffusableTest_TrackDiffusers.builder()
+            .title(Diffuser.map(String::length, Diffuser.into(length -> output.add("" + length))))
+            .duration(IntDiffuser.intoAlways(duration -> output.add("duration:" + duration)))
+            .build();
+
+    diffuser.run(new Track("a", 1, 2, 0.5, true));
+    diffuser.run(new Track("b", 1, 2, 0.5, true));
+
+    assertEquals(Arrays.asList("1", "duration:1", "duration:1"), output);
+  }
+
+  @Test
+  public void maskedDiffusersOnlyCompareTheModelOnce() {
+    final List<String> output = new ArrayList<>();
+    final Diffuser<Track> diffuser =
+        DiffusableTest_TrackDiffusers.builder()
+            .title(Diffuser.intoAlways(title -> output.add("title:" + title)))
+            .duration(IntDiffuser.intoAlways(duration -> output.add("duration:" + duration)))
+            .rating(DoubleDiffuser.intoAlways(rating -> output.add("rating:" + rating)))
+            .buildMasked();
+
+    diffuser.run(new Track("a", 1, 2, 0.5, true));
+    diffuser.run(new Track("a", 1, 3, 0.5, true));
+    diffuser.run(new Track("a", 2, 3, -0.5, true));
+
+    assertEquals(
+        Arrays.asList("title:a", "duration:1", "rating:0.5", "duration:2", "rating:-0.5"), output);
+    assertEquals(6, DiffusableTest_TrackDiffusers.fieldCount());
+    assertEquals(0, DiffusableTest_TrackDiffusers.Field.TITLE);
+    assertEquals(5, DiffusableTest_TrackDiffusers.Field.INITIAL);
+  }
+}
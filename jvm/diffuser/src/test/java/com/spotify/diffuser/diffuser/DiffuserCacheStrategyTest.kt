@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser
+
+import com.spotify.diffuser.Effect
+import com.spotify.diffuser.GenUtils.integerLists
+import com.spotify.diffuser.diffuser.CacheStrategies.fingerprint
+import com.spotify.diffuser.diffuser.CacheStrategies.hashed
+import com.spotify.diffuser.diffuser.CacheStrategies.soft
+import com.spotify.diffuser.diffuser.CacheStrategies.strong
+import com.spotify.diffuser.diffuser.CacheStrategies.weak
+import com.spotify.diffuser.diffuser.CompiledDiffuser.compile
+import com.spotify.diffuser.diffuser.Diffuser.cachedBy
+import com.spotify.diffuser.diffuser.Diffuser.into
+import com.spotify.diffuser.diffuser.Diffuser.intoAll
+import com.spotify.diffuser.diffuser.Diffuser.intoAlways
+import com.spotify.diffuser.diffuser.Diffuser.intoWhen
+import com.spotify.diffuser.diffuser.Diffuser.map
+import com.spotify.diffuser.diffuser.Diffuser.named
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.fail
+import org.junit.Test
+import org.quicktheories.WithQuickTheories
+import java.lang.ref.WeakReference
+
+class DiffuserCacheStrategyTest : WithQuickTheories {
+
+    private fun tree(strategy: CacheStrategy, output: MutableList<String>): Diffuser<Int> =
+            intoAll(
+                    cachedBy(strategy, into { output.add("into:$it") }),
+                    cachedBy(strategy, intoWhen(DidChange { a, b -> a < b }, Effect { output.add("when:$it") })),
+                    cachedBy(strategy, intoWhen({ a, b -> a != b }, map({ it * 2 }, into { output.add("map:$it") }))))
+
+    @Test
+    fun `strong, weak and soft strategies behave like the default cache`() {
+        listOf(strong(), weak(), soft()).forEach { strategy ->
+            qt().forAll(integerLists)
+                    .check { input ->
+                        val outputLhs = mutableListOf<String>()
+                        val outputRhs = mutableListOf<String>()
+                        val withStrategy = tree(strategy, outputLhs)
+                        val default = intoAll(
+                                into<Int> { outputRhs.add("into:$it") },
+                                intoWhen(DidChange { a, b -> a < b }, Effect { outputRhs.add("when:$it") }),
+                                intoWhen({ a, b -> a != b }, map({ it * 2 }, into { outputRhs.add("map:$it") })))
+
+                        input.forEach {
+                            withStrategy.run(it)
+                            default.run(it)
+                        }
+
+                        assertEquals(outputRhs, outputLhs)
+                        outputLhs == outputRhs
+                    }
+        }
+    }
+
+    @Test
+    fun `compiled Diffusers use the cache strategy of each node`() {
+        val strategies = listOf(strong(), weak(), soft(), hashed(), fingerprint<Int> { it / 2L })
+        strategies.forEach { strategy ->
+            qt().forAll(integerLists)
+                    .check { input ->
+                        val outputLhs = mutableListOf<String>()
+                        val outputRhs = mutableListOf<String>()
+                        val compiled = compile(tree(strategy, outputLhs))
+                        val diffuser = tree(strategy, outputRhs)
+
+                        input.forEach {
+                            compiled.run(it)
+                            diffuser.run(it)
+                        }
+
+                        assertEquals(outputRhs, outputLhs)
+                        outputLhs == outputRhs
+                    }
+        }
+    }
+
+    @Test
+    fun `a fingerprint cache runs when the fingerprint changes, ignoring didChange`() {
+        val output = mutableListOf<Int>()
+        val diffuser = cachedBy(fingerprint<Int> { it / 2L }, intoWhen(DidChange<Int> { _, _ -> false }, Effect { output.add(it) }))
+
+        listOf(0, 1, 2, 3, 3, 0).forEach { diffuser.run(it) }
+
+        assertEquals(listOf(0, 2, 0), output)
+    }
+
+    @Test
+    fun `fingerprint and weak caches do not retain the last value`() {
+        fun retained(strategy: CacheStrategy, fails: Boolean = false): Boolean {
+            val diffuser = cachedBy(strategy, into<Any> { if (fails) throw IllegalStateException() })
+            var value: Any? = Any()
+            val reference = WeakReference(value)
+            try {
+                diffuser.run(value)
+            } catch (e: IllegalStateException) {
+            }
+            @Suppress("UNUSED_VALUE")
+            value = null
+
+            for (i in 0 until 20) {
+                System.gc()
+                if (reference.get() == null) return false
+                Thread.sleep(10)
+            }
+            return true
+        }
+
+        assertEquals(true, retained(strong()))
+        assertEquals(false, retained(weak()))
+        assertEquals(false, retained(hashed()))
+        assertEquals(false, retained(hashed(), fails = true))
+    }
+
+    @Test
+    fun `a fingerprint cache remembers the outer value when its side-effect runs the Diffuser again`() {
+        val output = mutableListOf<Int>()
+        lateinit var diffuser: Diffuser<Int>
+        diffuser = cachedBy(fingerprint<Int> { it / 2L }, into<Int> { value: Int ->
+            output.add(value)
+            if (value == 0) diffuser.run(2)
+        })
+
+        listOf(0, 1, 2).forEach { diffuser.run(it) }
+
+        assertEquals(listOf(0, 2, 2), output)
+    }
+
+    @Test
+    fun `named and cachedBy keep each other's settings`() {
+        val output = mutableListOf<Int>()
+        val diffuser = named("node", cachedBy(fingerprint<Int> { it / 2L }, into<Int> { output.add(it) }))
+        val renamed = cachedBy(hashed(), named("other", into<Int> { output.add(it) }))
+
+        listOf(0, 1, 2).forEach { diffuser.run(it) }
+        listOf(5, 5).forEach { renamed.run(it) }
+
+        assertEquals(listOf(0, 2, 5), output)
+        assertEquals("node", diffuser.name)
+        assertEquals("other", renamed.name)
+        assertNull(into<Int> { }.cacheStrategy)
+    }
+
+    @Test
+    fun `cachedBy() rejects Diffusers without a cache`() {
+        try {
+            cachedBy(hashed(), intoAlways<Int> { })
+            fail()
+        } catch (e: IllegalArgumentException) {
+            assertEquals("Only a Diffuser with a cache can change its strategy", e.message)
+        }
+    }
+}
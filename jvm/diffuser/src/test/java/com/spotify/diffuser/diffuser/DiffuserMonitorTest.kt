@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser
+
+import com.spotify.diffuser.GenUtils.integerLists
+import com.spotify.diffuser.diffuser.CompiledDiffuser.compile
+import com.spotify.diffuser.diffuser.Diffuser.into
+import com.spotify.diffuser.diffuser.Diffuser.intoAll
+import com.spotify.diffuser.diffuser.Diffuser.intoAlways
+import com.spotify.diffuser.diffuser.Diffuser.intoWhen
+import com.spotify.diffuser.diffuser.Diffuser.map
+import com.spotify.diffuser.diffuser.Diffuser.mapWhen
+import com.spotify.diffuser.diffuser.Diffuser.named
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.quicktheories.WithQuickTheories
+
+class DiffuserMonitorTest : WithQuickTheories {
+
+    private val stats = RecordingMonitor()
+
+    @Before
+    fun install() {
+        DiffuserMonitors.install(stats)
+    }
+
+    @After
+    fun uninstall() {
+        DiffuserMonitors.install(null)
+    }
+
+    private fun eventsOf(prefix: String) = synchronized(stats.events) {
+        stats.events.filter { it.startsWith(prefix) }
+    }
+
+    @Test
+    fun `into(name, effect) reports runs and skips`() {
+        val output = mutableListOf<Int>()
+        val diffuser = into<Int>("into.title") { output.add(it) }
+
+        diffuser.run(1)
+        diffuser.run(1)
+        diffuser.run(2)
+
+        assertEquals(listOf(1, 2), output)
+        assertEquals(listOf("into.title:run", "into.title:skip", "into.title:run"), eventsOf("into.title:"))
+        assertEquals(3L, stats.runs("into.title"))
+        assertEquals(1L, stats.skips("into.title"))
+    }
+
+    @Test
+    fun `named() reports every run of a Diffuser without a cache`() {
+        val diffuser = named("named.map", map({ it: Int -> it / 2 }, intoAlways<Int> { }))
+
+        diffuser.run(1)
+        diffuser.run(1)
+
+        assertEquals(listOf("named.map:run", "named.map:run"), eventsOf("named.map:"))
+    }
+
+    @Test
+    fun `named() includes the time spent in children`() {
+        val diffuser = named("named.slow", intoAll(intoAlways<Int> { Thread.sleep(5) }))
+
+        diffuser.run(1)
+
+        assertTrue(stats.effectNanos("named.slow") >= 5_000_000)
+    }
+
+    @Test
+    fun `unnamed Diffusers are not reported`() {
+        val names = stats.names()
+        intoAll(into<Int> { }, map({ it: Int -> it + 1 }, into<Int> { })).run(1)
+
+        assertEquals(names.sorted(), stats.names().sorted())
+    }
+
+    @Test
+    fun `compile(diffuser) reports the same runs as the tree`() {
+        fun tree(prefix: String): Diffuser<Int> = named("$prefix.root", intoAll(
+                into("$prefix.leaf") { },
+                named("$prefix.map", map({ it: Int -> it / 2 }, into("$prefix.half") { })),
+                named("$prefix.when", intoWhen({ a, b -> a < b }, into<Int>("$prefix.inner") { }))
+        ))
+
+        qt().forAll(integerLists)
+                .check { input ->
+                    stats.events.clear()
+                    val compiled = compile(tree("compiled"))
+                    val diffuser = tree("tree")
+
+                    input.forEach {
+                        compiled.run(it)
+                        diffuser.run(it)
+                    }
+
+                    // Only compiled Diffusers know where the root is, so root runs are left out.
+                    val lhs = eventsOf("compiled.").filterNot { it.contains(":root:") }.map { it.removePrefix("compiled.") }
+                    val rhs = eventsOf("tree.").map { it.removePrefix("tree.") }
+                    assertEquals(rhs, lhs)
+                    lhs == rhs
+                }
+    }
+
+    @Test
+    fun `compile(diffuser) reports root runs with the effects run and the nodes skipped`() {
+        val diffuser = compile(named("root.compiled", intoAll(
+                into<Int> { },
+                mapWhen({ a: Int, b: Int -> a / 2 != b / 2 }, { it: Int -> it / 2 }, intoAll(into<Int> { }, intoAlways<Int> { }))
+        )))
+
+        diffuser.run(2)
+        diffuser.run(3)
+        diffuser.run(3)
+
+        // A skipped node counts itself and all the nodes below it, so the last run skips all six.
+        assertEquals(
+                listOf("root.compiled:root:3:0", "root.compiled:root:1:4", "root.compiled:root:0:6"),
+                eventsOf("root.compiled:root:"))
+    }
+
+    @Test
+    fun `named Diffusers are not instrumented without a monitor`() {
+        DiffuserMonitors.install(null)
+        val output = mutableListOf<Int>()
+        val diffuser = into<Int>("unmonitored") { output.add(it) }
+        val compiled = compile(named("unmonitored.root", intoAll(diffuser)))
+
+        diffuser.run(1)
+        diffuser.run(1)
+        compiled.run(2)
+
+        assertEquals(listOf(1, 2), output)
+        assertEquals(emptyList<String>(), stats.events)
+        assertSame(null, DiffuserMonitors.installed())
+    }
+
+    @Test
+    fun `monitors which are not enabled are not installed`() {
+        val disabled = object : DiffuserMonitor {
+            override fun onRun(name: String, changed: Boolean, checkNanos: Long, effectNanos: Long) {}
+            override fun isEnabled() = false
+        }
+
+        assertSame(null, DiffuserMonitors.combine(listOf(disabled)))
+        assertSame(stats, DiffuserMonitors.combine(listOf(disabled, stats, disabled)))
+    }
+}
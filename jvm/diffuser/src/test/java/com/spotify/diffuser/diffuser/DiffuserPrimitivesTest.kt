@@ -31,6 +31,8 @@ import com.spotify.diffuser.diffuser.Diffuser.intoAll
 import com.spotify.diffuser.diffuser.Diffuser.intoAlways
 import com.spotify.diffuser.diffuser.Diffuser.intoWhen
 import com.spotify.diffuser.diffuser.Diffuser.map
+import com.spotify.diffuser.diffuser.Diffuser.mapMemoized
+import com.spotify.diffuser.diffuser.Diffuser.mapWhen
 import junit.framework.TestCase.assertEquals
 import org.junit.Assert
 import org.junit.Test
@@ -201,4 +203,40 @@ class DiffuserPrimitivesTest: WithQuickTheories {
                 )
         )
     }
+
+    @Test
+    fun `mapWhen() is the same thing as intoWhen() around map()`() {
+        // mapWhen(didChange, f, diffuser) == intoWhen(didChange, map(f, diffuser))
+        diffusersBehaveTheSame(
+                zip(didChanges, transformers).flatMap { (didChange, f) ->
+                    formula<Diffuser<Int>>(
+                            lhs = { diffuser -> mapWhen(didChange, f, diffuser) },
+                            rhs = { diffuser -> intoWhen(didChange, map(f, diffuser)) }
+                    )
+                }
+        )
+    }
+
+    @Test
+    fun `mapMemoized() only transforms new instances`() {
+        // run(a); run(a); run(b); run(b) --> f(a) f(b)
+        val transformed = mutableListOf<String>()
+        val output = mutableListOf<Int>()
+        val diffuser = mapMemoized<String, Int>(
+                { transformed.add(it); it.length },
+                intoAlways { output.add(it) }
+        )
+
+        val a = String(charArrayOf('a'))
+        val b = String(charArrayOf('a'))
+        diffuser.run(a)
+        diffuser.run(a)
+        diffuser.run(b)
+        diffuser.run(b)
+
+        assertEquals(2, transformed.size)
+        Assert.assertSame(a, transformed[0])
+        Assert.assertSame(b, transformed[1])
+        assertEquals(listOf(1, 1), output)
+    }
 }
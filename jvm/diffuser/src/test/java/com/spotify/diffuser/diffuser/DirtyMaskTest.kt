@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser
+
+import com.spotify.diffuser.diffuser.CompiledDiffuser.compile
+import com.spotify.diffuser.diffuser.Diffuser.intoAll
+import com.spotify.diffuser.diffuser.Diffuser.intoAllWhen
+import com.spotify.diffuser.diffuser.Diffuser.intoAlways
+import com.spotify.diffuser.diffuser.Diffuser.intoWhen
+import com.spotify.diffuser.diffuser.Diffuser.map
+import org.junit.Assert.assertEquals
+import org.junit.Assert.fail
+import org.junit.Test
+import org.quicktheories.WithQuickTheories
+
+class DirtyMaskTest : WithQuickTheories {
+
+    // A model with one field per element, so that masks span several words.
+    private val models = lists().of(integers().between(0, 2)).ofSize(70)
+
+    private val comparator = DirtyMask.FieldComparator<List<Int>> { previous, current, mask ->
+        previous.indices.filter { previous[it] != current[it] }.forEach { mask.set(it) }
+    }
+
+    // One leaf per field, and a subtree for fields 0, 63 and 64, which spans two words.
+    private fun masked(mask: DirtyMask<List<Int>>, output: MutableList<String>): Diffuser<List<Int>> =
+            intoAllWhen(mask, (0 until 70).map { field ->
+                intoWhen(mask.changed<List<Int>>(field), map({ it: List<Int> -> it[field] }, intoAlways { output.add("$field:$it") }))
+            } + intoWhen(mask.anyChanged<List<Int>>(0, 63, 64), intoAlways { output.add("subtree:${it[0]},${it[63]},${it[64]}") }))
+
+    private fun plain(output: MutableList<String>): Diffuser<List<Int>> =
+            intoAll((0 until 70).map { field ->
+                map({ it: List<Int> -> it[field] }, Diffuser.into { output.add("$field:$it") })
+            } + map({ it: List<Int> -> listOf(it[0], it[63], it[64]) }, Diffuser.into<List<Int>> { output.add("subtree:${it.joinToString(",")}") }))
+
+    @Test
+    fun `a masked tree runs the same side-effects as a tree of equality caches`() {
+        qt().withExamples(200)
+                .forAll(lists().of(models).ofSizeBetween(1, 5))
+                .check { input ->
+                    val outputLhs = mutableListOf<String>()
+                    val outputRhs = mutableListOf<String>()
+                    val masked = masked(DirtyMask(70, comparator), outputLhs)
+                    val plain = plain(outputRhs)
+
+                    input.forEach {
+                        masked.run(it)
+                        plain.run(it)
+                    }
+
+                    assertEquals(outputRhs, outputLhs)
+                    outputLhs == outputRhs
+                }
+    }
+
+    @Test
+    fun `compiled masked trees behave like the tree`() {
+        qt().forAll(lists().of(models).ofSizeBetween(1, 5))
+                .check { input ->
+                    val outputLhs = mutableListOf<String>()
+                    val outputRhs = mutableListOf<String>()
+                    val compiled = compile(masked(DirtyMask(70, comparator), outputLhs))
+                    val tree = masked(DirtyMask(70, comparator), outputRhs)
+
+                    input.forEach {
+                        compiled.run(it)
+                        tree.run(it)
+                    }
+
+                    outputLhs == outputRhs
+                }
+    }
+
+    @Test
+    fun `the model is compared once per run at the root`() {
+        var comparisons = 0
+        val mask = DirtyMask<List<Int>>(70) { previous, current, into ->
+            comparisons++
+            comparator.compare(previous, current, into)
+        }
+        val output = mutableListOf<String>()
+        val diffuser = masked(mask, output)
+        val model = List(70) { 0 }
+
+        diffuser.run(model)
+        diffuser.run(model.mapIndexed { i, v -> if (i == 64) 1 else v })
+        diffuser.run(model.mapIndexed { i, v -> if (i == 64) 1 else v })
+
+        assertEquals(2, comparisons)
+        assertEquals(listOf("64:1", "subtree:0,0,1"), output.drop(71))
+        assertEquals(false, mask.isSet(64))
+    }
+
+    @Test
+    fun `fields outside of the mask are rejected`() {
+        val mask = DirtyMask<List<Int>>(70, comparator)
+        listOf(-1, 70).forEach {
+            try {
+                mask.changed<Int>(it)
+                fail()
+            } catch (e: IndexOutOfBoundsException) {
+                assertEquals("field $it is not within [0, 70)", e.message)
+            }
+        }
+    }
+}
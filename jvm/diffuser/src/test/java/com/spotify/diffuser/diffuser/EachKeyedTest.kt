@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser
+
+import com.spotify.diffuser.diffuser.Diffuser.into
+import com.spotify.diffuser.diffuser.Diffuser.intoAlways
+import com.spotify.diffuser.diffuser.Diffuser.intoEachKeyed
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.quicktheories.WithQuickTheories
+import java.util.function.BiFunction
+
+class EachKeyedTest : WithQuickTheories {
+
+    private data class Row(val id: Int, val content: Int)
+
+    private val rows = lists()
+            .of(integers().between(0, 6).zip(integers().between(0, 2), BiFunction<Int, Int, Row> { id, content -> Row(id, content) }))
+            .ofSizeBetween(0, 8)
+            .map { list -> list.distinctBy { it.id } }
+
+    @Test
+    fun `intoEachKeyed() runs each row through the Diffuser of its key`() {
+        qt().forAll(lists().of(rows).ofSizeBetween(1, 6))
+                .check { input ->
+                    val output = mutableListOf<Row>()
+                    val expected = mutableListOf<Row>()
+                    val diffuser = intoEachKeyed<Row, Int>({ it.id }, { into { output.add(it) } })
+
+                    // Every key has its own cache, which is dropped when the key disappears.
+                    var previous = emptyMap<Int, Row>()
+                    input.forEach { list ->
+                        diffuser.run(list)
+                        list.filterTo(expected) { previous[it.id] != it }
+                        previous = list.associateBy { it.id }
+                    }
+
+                    assertEquals(expected, output)
+                    output == expected
+                }
+    }
+
+    @Test
+    fun `intoEachKeyed() does not run rows which are the same instance`() {
+        val runs = mutableListOf<Row>()
+        val diffuser = intoEachKeyed<Row, Int>({ it.id }, { intoAlways { runs.add(it) } })
+        val a = Row(1, 0)
+        val b = Row(2, 0)
+        val c = Row(2, 0)
+
+        diffuser.run(listOf(a, b))
+        diffuser.run(listOf(b, a))
+        diffuser.run(listOf(a, c))
+
+        assertEquals(listOf(a, b, c), runs)
+    }
+
+    @Test
+    fun `intoEachKeyed() notifies the lifecycle sink of created and disposed keys`() {
+        val events = mutableListOf<String>()
+        val created = mutableListOf<Int>()
+        val lifecycle = object : RowLifecycleSink<Int> {
+            override fun onCreated(key: Int) {
+                events.add("+$key")
+            }
+
+            override fun onDisposed(key: Int) {
+                events.add("-$key")
+            }
+        }
+        val diffuser = intoEachKeyed<Row, Int>({ it.id }, { key -> created.add(key); into { } }, lifecycle)
+
+        diffuser.run(listOf(Row(1, 0), Row(2, 0)))
+        diffuser.run(listOf(Row(2, 1), Row(3, 0)))
+        diffuser.run(listOf(Row(1, 0)))
+
+        assertEquals(listOf("+1", "+2", "+3", "-1", "+1", "-2", "-3"), events)
+        assertEquals(listOf(1, 2, 3, 1), created)
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser
+
+import com.spotify.diffuser.diffuser.Diffuser.intoListChanges
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.quicktheories.WithQuickTheories
+import java.util.Random
+import java.util.function.BiFunction
+
+class ListChangesTest : WithQuickTheories {
+
+    // Applies every operation to a copy of the previous list, checking the reported items on the way.
+    private class ApplyingSink<T> : ListUpdateSink<T> {
+        val items = mutableListOf<T>()
+        var inserts = 0
+        var removals = 0
+        var moves = 0
+        val changes = mutableListOf<Int>()
+
+        override fun onInserted(position: Int, item: T) {
+            items.add(position, item)
+            inserts++
+        }
+
+        override fun onRemoved(position: Int, item: T) {
+            assertEquals(item, items.removeAt(position))
+            removals++
+        }
+
+        override fun onMoved(fromPosition: Int, toPosition: Int, item: T) {
+            assertEquals(item, items.removeAt(fromPosition))
+            items.add(toPosition, item)
+            moves++
+        }
+
+        override fun onChanged(position: Int, oldItem: T, newItem: T) {
+            assertEquals(oldItem, items[position])
+            items[position] = newItem
+            changes.add(position)
+        }
+    }
+
+    private data class Item(val id: Int, val content: Int)
+
+    private val lists = lists().of(integers().between(0, 8)).ofSizeBetween(0, 12)
+
+    @Test
+    fun `intoListChanges() emits operations which turn the previous list into the current one`() {
+        qt().forAll(lists().of(lists).ofSizeBetween(1, 6))
+                .check { input ->
+                    val sink = ApplyingSink<Int>()
+                    val diffuser = intoListChanges(sink)
+
+                    input.all {
+                        diffuser.run(it)
+                        sink.items == it
+                    }
+                }
+    }
+
+    @Test
+    fun `intoListChanges() only emits changes for kept items whose content changed`() {
+        // Ids are unique within a list, as items with the same id can be matched in more than one way.
+        val items = lists()
+                .of(integers().between(0, 8).zip(integers().between(0, 2), BiFunction<Int, Int, Item> { id, content -> Item(id, content) }))
+                .ofSizeBetween(0, 12)
+                .map { list -> list.distinctBy { it.id } }
+
+        qt().forAll(items, items)
+                .check { first, second ->
+                    val sink = ApplyingSink<Item>()
+                    val diffuser = intoListChanges<Item>({ it.id }, { a, b -> a.content != b.content }, sink)
+                    diffuser.run(first)
+                    sink.changes.clear()
+                    diffuser.run(second)
+
+                    val remaining = first.toMutableList()
+                    val expectedChanges = second.indices.filter { position ->
+                        val old = remaining.firstOrNull { it.id == second[position].id }
+                        remaining.remove(old)
+                        old != null && old.content != second[position].content
+                    }
+
+                    sink.items == second && sink.changes == expectedChanges
+                }
+    }
+
+    @Test
+    fun `intoListChanges() moves every item outside the longest increasing subsequence once`() {
+        qt().forAll(integers().between(0, 12), longs().all())
+                .check { size, seed ->
+                    val first = (0 until size).toList()
+                    val second = first.shuffled(Random(seed))
+                    val sink = ApplyingSink<Int>()
+                    val diffuser = intoListChanges(sink)
+                    diffuser.run(first)
+                    diffuser.run(second)
+
+                    sink.items == second && sink.moves == size - longestIncreasingSubsequence(second)
+                }
+    }
+
+    @Test
+    fun `intoListChanges() emits a single move when one item moves`() {
+        val sink = ApplyingSink<String>()
+        val diffuser = intoListChanges(sink)
+
+        diffuser.run(listOf("a", "b", "c", "d"))
+        diffuser.run(listOf("b", "c", "d", "a"))
+
+        assertEquals(listOf("b", "c", "d", "a"), sink.items)
+        assertEquals(4, sink.inserts)
+        assertEquals(1, sink.moves)
+        assertEquals(0, sink.removals)
+    }
+
+    @Test
+    fun `intoListChanges() emits nothing when run with the same list twice`() {
+        val list = listOf(1, 2, 3)
+        val sink = ApplyingSink<Int>()
+        val diffuser = intoListChanges(sink)
+
+        diffuser.run(list)
+        diffuser.run(list)
+        diffuser.run(listOf(1, 2, 3))
+
+        assertEquals(3, sink.inserts)
+        assertEquals(0, sink.moves + sink.removals)
+    }
+
+    @Test(timeout = 10_000)
+    fun `intoListChanges() handles large lists`() {
+        val size = 100_000
+        val random = Random(42)
+        val first = (0 until size).toList()
+        val second = first.filter { random.nextInt(10) != 0 }.shuffled(random).toMutableList()
+        (0 until size / 10).forEach { second.add(random.nextInt(second.size), size + it) }
+
+        val counter = object : ListUpdateSink<Int> {
+            var inserts = 0
+            var removals = 0
+            override fun onInserted(position: Int, item: Int) { inserts++ }
+            override fun onRemoved(position: Int, item: Int) { removals++ }
+            override fun onMoved(fromPosition: Int, toPosition: Int, item: Int) {}
+            override fun onChanged(position: Int, oldItem: Int, newItem: Int) {}
+        }
+        val diffuser = intoListChanges(counter)
+        diffuser.run(first)
+        diffuser.run(second)
+        diffuser.run(first)
+
+        assertEquals(size + size / 10 + size - (second.size - size / 10), counter.inserts)
+        assertEquals(size - (second.size - size / 10) + size / 10, counter.removals)
+    }
+
+    private fun longestIncreasingSubsequence(list: List<Int>): Int {
+        val lengths = IntArray(list.size) { 1 }
+        for (i in list.indices) {
+            for (j in 0 until i) {
+                if (list[j] < list[i]) lengths[i] = maxOf(lengths[i], lengths[j] + 1)
+            }
+        }
+        return lengths.fold(0) { a, b -> maxOf(a, b) }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser
+
+import com.spotify.diffuser.GenUtils.integerLists
+import com.spotify.diffuser.diffuser.Diffuser.into
+import com.spotify.diffuser.diffuser.Diffuser.intoAll
+import com.spotify.diffuser.diffuser.Diffuser.intoAllParallel
+import com.spotify.diffuser.diffuser.Diffuser.intoAlways
+import org.junit.AfterClass
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.quicktheories.WithQuickTheories
+import java.util.Collections
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.TimeUnit
+
+class ParallelDiffuserTest : WithQuickTheories {
+
+    companion object {
+        private val pool = ForkJoinPool(4)
+
+        @JvmStatic
+        @AfterClass
+        fun shutdown() {
+            pool.shutdown()
+        }
+    }
+
+    @Test
+    fun `intoAllParallel() behaves like intoAll() for every child`() {
+        qt().forAll(integerLists, integers().between(1, 5), longs().between(0, 1_000))
+                .check { input, width, threshold ->
+                    val outputLhs = (0 until width).map { Collections.synchronizedList(mutableListOf<Int>()) }
+                    val outputRhs = (0 until width).map { mutableListOf<Int>() }
+
+                    val lhs = intoAllParallel(pool, threshold, outputLhs.map { output -> into<Int> { output.add(it) } })
+                    val rhs = intoAll(outputRhs.map { output -> into<Int> { output.add(it) } })
+                    input.forEach {
+                        lhs.run(it)
+                        rhs.run(it)
+                    }
+
+                    assertEquals(outputRhs, outputLhs)
+                    outputLhs == outputRhs
+                }
+    }
+
+    @Test
+    fun `intoAllParallel() runs expensive children at the same time`() {
+        val barrier = CyclicBarrier(3)
+        val child = intoAlways<Int> { barrier.await(10, TimeUnit.SECONDS) }
+
+        // Each child only gets past the barrier if the other two are running at the same time.
+        intoAllParallel(pool, 0, child, intoAlways { barrier.await(10, TimeUnit.SECONDS) }, intoAlways { barrier.await(10, TimeUnit.SECONDS) })
+                .run(1)
+
+        assertEquals(0, barrier.numberWaiting)
+    }
+
+    @Test
+    fun `intoAllParallel() runs cheap children on the calling thread`() {
+        val threads = Collections.synchronizedList(mutableListOf<Thread>())
+        val diffuser = intoAllParallel(pool, Long.MAX_VALUE - 1,
+                intoAlways<Int> { threads.add(Thread.currentThread()) },
+                intoAlways { threads.add(Thread.currentThread()) })
+
+        // The first run measures the children, which are forked while their cost is unknown.
+        diffuser.run(1)
+        threads.clear()
+        diffuser.run(2)
+
+        assertEquals(listOf(Thread.currentThread(), Thread.currentThread()), threads)
+    }
+
+    @Test
+    fun `intoAllParallel() rethrows the failure of the first child after all children ran`() {
+        val first = IllegalStateException("first")
+        val second = IllegalArgumentException("second")
+        val output = Collections.synchronizedList(mutableListOf<Int>())
+        val diffuser = intoAllParallel(pool, 0,
+                intoAlways<Int> { output.add(0) },
+                intoAlways { throw first },
+                intoAlways { output.add(2) },
+                intoAlways { throw second },
+                intoAlways { output.add(4) })
+
+        val error = try {
+            diffuser.run(1)
+            null
+        } catch (e: IllegalStateException) {
+            e
+        }
+
+        assertSame(first, error)
+        assertEquals(listOf(second), error!!.suppressed.toList())
+        assertEquals(listOf(0, 2, 4), output.sorted())
+    }
+
+    @Test
+    fun `intoAllParallel() rethrows a failure which several children share`() {
+        val shared = IllegalStateException("shared")
+        val diffuser = intoAllParallel(pool, 0,
+                intoAlways<Int> { throw shared },
+                intoAlways { throw shared })
+
+        val error = try {
+            diffuser.run(1)
+            null
+        } catch (e: IllegalStateException) {
+            e
+        }
+
+        assertSame(shared, error)
+        assertEquals(emptyList<Throwable>(), error!!.suppressed.toList())
+    }
+
+    @Test
+    fun `intoAllParallel() can be nested inside its own pool`() {
+        val output = Collections.synchronizedList(mutableListOf<Int>())
+        val inner = { offset: Int ->
+            intoAllParallel(pool, 0, (0 until 4).map { i -> intoAlways<Int> { output.add(it + offset + i) } })
+        }
+        val diffuser = intoAllParallel(pool, 0, (0 until 4).map { inner(it * 10) })
+
+        diffuser.run(100)
+
+        assertTrue(output.size == 16)
+        assertEquals((0 until 4).flatMap { o -> (0 until 4).map { 100 + o * 10 + it } }, output.sorted())
+    }
+}
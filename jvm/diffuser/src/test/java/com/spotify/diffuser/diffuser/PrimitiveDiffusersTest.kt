@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser
+
+import com.spotify.diffuser.Effect
+import com.spotify.diffuser.GenUtils.didChanges
+import com.spotify.diffuser.GenUtils.transformers
+import com.spotify.diffuser.diffuser.Diffuser.into
+import com.spotify.diffuser.diffuser.Diffuser.intoAlways
+import com.spotify.diffuser.diffuser.Diffuser.intoOnce
+import com.spotify.diffuser.diffuser.Diffuser.intoWhen
+import com.spotify.diffuser.diffuser.Diffuser.map
+import com.spotify.diffuser.diffuser.Diffuser.mapToBoolean
+import com.spotify.diffuser.diffuser.Diffuser.mapToDouble
+import com.spotify.diffuser.diffuser.Diffuser.mapToInt
+import com.spotify.diffuser.diffuser.Diffuser.mapToLong
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.quicktheories.WithQuickTheories
+
+class PrimitiveDiffusersTest : WithQuickTheories {
+
+    @Test
+    fun `IntDiffuser into() is the same thing as into()`() {
+        effectsBehaveTheSame(
+                formula(
+                        lhs = { eff -> mapToInt({ it }, IntDiffuser.into { eff.run(it) }) },
+                        rhs = { eff -> into(eff) }
+                )
+        )
+    }
+
+    @Test
+    fun `IntDiffuser intoWhen() is the same thing as intoWhen()`() {
+        effectsBehaveTheSame(
+                didChanges.flatMap { didChange ->
+                    formula<Effect<Int>>(
+                            lhs = { eff ->
+                                mapToInt(
+                                        { it },
+                                        IntDiffuser.intoWhen({ a, b -> didChange.test(a, b) }) { eff.run(it) })
+                            },
+                            rhs = { eff -> intoWhen(didChange, eff) }
+                    )
+                }
+        )
+    }
+
+    @Test
+    fun `IntDiffuser intoAlways() is the same thing as intoAlways()`() {
+        effectsBehaveTheSame(
+                formula(
+                        lhs = { eff -> mapToInt({ it }, IntDiffuser.intoAlways { eff.run(it) }) },
+                        rhs = { eff -> intoAlways(eff) }
+                )
+        )
+    }
+
+    @Test
+    fun `IntDiffuser intoOnce() is the same thing as intoOnce()`() {
+        effectsBehaveTheSame(
+                formula(
+                        lhs = { eff -> mapToInt({ it }, IntDiffuser.intoOnce { eff.run(it) }) },
+                        rhs = { eff -> intoOnce(eff) }
+                )
+        )
+    }
+
+    @Test
+    fun `mapToInt() applies transformation to all values`() {
+        // mapToInt(f, IntDiffuser.into(eff)) == map(f, into(eff))
+        effectsBehaveTheSame(
+                transformers.flatMap { f ->
+                    formula<Effect<Int>>(
+                            lhs = { eff -> mapToInt({ f.apply(it) }, IntDiffuser.into { eff.run(it) }) },
+                            rhs = { eff -> map(f, into(eff)) }
+                    )
+                }
+        )
+    }
+
+    @Test
+    fun `LongDiffuser into() is the same thing as into()`() {
+        effectsBehaveTheSame(
+                formula(
+                        lhs = { eff ->
+                            mapToLong({ it.toLong() * Int.MAX_VALUE }, LongDiffuser.into { eff.run((it / Int.MAX_VALUE).toInt()) })
+                        },
+                        rhs = { eff -> into(eff) }
+                )
+        )
+    }
+
+    @Test
+    fun `DoubleDiffuser into() is the same thing as into()`() {
+        effectsBehaveTheSame(
+                formula(
+                        lhs = { eff -> mapToDouble({ it / 2.0 }, DoubleDiffuser.into { eff.run((it * 2).toInt()) }) },
+                        rhs = { eff -> into(eff) }
+                )
+        )
+    }
+
+    @Test
+    fun `DoubleDiffuser into() compares values like Double equals()`() {
+        val values = listOf(Double.NaN, Double.NaN, 0.0, -0.0, -0.0, 1.0)
+        val outputLhs = mutableListOf<Double>()
+        val outputRhs = mutableListOf<Double>()
+
+        val lhs = DoubleDiffuser.into { outputLhs.add(it) }
+        val rhs = into<Double> { outputRhs.add(it) }
+        values.forEach {
+            lhs.run(it)
+            rhs.run(it)
+        }
+
+        assertEquals(outputRhs, outputLhs)
+    }
+
+    @Test
+    fun `BooleanDiffuser into() is the same thing as into()`() {
+        // mapToBoolean(isEven, BooleanDiffuser.into(eff)) == map(isEven, into(eff))
+        qt().forAll(lists().of(integers().between(0, 3)).ofSizeBetween(0, 10))
+                .check { input ->
+                    val outputLhs = mutableListOf<Boolean>()
+                    val outputRhs = mutableListOf<Boolean>()
+
+                    val lhs = mapToBoolean<Int>({ it % 2 == 0 }, BooleanDiffuser.into { outputLhs.add(it) })
+                    val rhs = map<Int, Boolean>({ it % 2 == 0 }, into { outputRhs.add(it) })
+                    input.forEach {
+                        lhs.run(it)
+                        rhs.run(it)
+                    }
+
+                    assertEquals(outputRhs, outputLhs)
+                    outputLhs == outputRhs
+                }
+    }
+}
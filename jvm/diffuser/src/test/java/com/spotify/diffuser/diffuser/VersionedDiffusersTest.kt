@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.diffuser
+
+import com.spotify.diffuser.Effect
+import com.spotify.diffuser.ToLongFunction
+import com.spotify.diffuser.diffuser.CompiledDiffuser.compile
+import com.spotify.diffuser.diffuser.Diffuser.intoAll
+import com.spotify.diffuser.diffuser.Diffuser.intoAllVersioned
+import com.spotify.diffuser.diffuser.Diffuser.intoAlways
+import com.spotify.diffuser.diffuser.Diffuser.intoVersioned
+import com.spotify.diffuser.diffuser.Diffuser.mapVersioned
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.quicktheories.WithQuickTheories
+
+class VersionedDiffusersTest : WithQuickTheories {
+
+    class Playlist {
+        var version = 0L
+        val tracks = mutableListOf<String>()
+
+        fun add(track: String) {
+            tracks.add(track)
+            version++
+        }
+    }
+
+    private val versionOf = ToLongFunction<Playlist> { it.version }
+
+    @Test
+    fun `intoVersioned() runs when a mutated instance has a new version`() {
+        val output = mutableListOf<List<String>>()
+        val diffuser = intoVersioned(versionOf, Effect<Playlist> { output.add(it.tracks.toList()) })
+        val playlist = Playlist()
+
+        diffuser.run(playlist)
+        diffuser.run(playlist)
+        playlist.add("a")
+        diffuser.run(playlist)
+        diffuser.run(playlist)
+        playlist.add("b")
+        diffuser.run(playlist)
+
+        assertEquals(listOf(listOf(), listOf("a"), listOf("a", "b")), output)
+    }
+
+    @Test
+    fun `intoVersioned() only compares versions`() {
+        val output = mutableListOf<String>()
+        val diffuser = intoVersioned(ToLongFunction<String> { it.length.toLong() }, Effect<String> { output.add(it) })
+
+        listOf("a", "b", "cc", "dd", "e").forEach { diffuser.run(it) }
+
+        assertEquals(listOf("a", "cc", "e"), output)
+    }
+
+    @Test
+    fun `intoAllVersioned() and intoVersioned() gate whole subtrees`() {
+        val output = mutableListOf<String>()
+        val diffuser = intoAllVersioned(versionOf, listOf(
+                intoAlways<Playlist> { output.add("size:${it.tracks.size}") },
+                intoVersioned(versionOf, intoAlways<Playlist> { output.add("first:${it.tracks.firstOrNull()}") })))
+        val playlist = Playlist()
+
+        diffuser.run(playlist)
+        playlist.add("a")
+        diffuser.run(playlist)
+        diffuser.run(playlist)
+
+        assertEquals(listOf("size:0", "first:null", "size:1", "first:a"), output)
+    }
+
+    @Test
+    fun `mapVersioned() skips the transformation when the version is unchanged`() {
+        var transforms = 0
+        val output = mutableListOf<Int>()
+        val diffuser = mapVersioned(versionOf, { it: Playlist -> transforms++; it.tracks.size }, intoAlways { output.add(it) })
+        val playlist = Playlist()
+
+        diffuser.run(playlist)
+        diffuser.run(playlist)
+        playlist.add("a")
+        playlist.add("b")
+        diffuser.run(playlist)
+
+        assertEquals(2, transforms)
+        assertEquals(listOf(0, 2), output)
+    }
+
+    @Test
+    fun `compiled versioned Diffusers behave like the tree`() {
+        fun tree(output: MutableList<String>): Diffuser<Long> {
+            val version = ToLongFunction<Long> { it / 2 }
+            return intoAll(
+                    intoVersioned(version, Effect<Long> { output.add("into:$it") }),
+                    mapVersioned(version, { it: Long -> it * 10 }, intoAlways { output.add("map:$it") }),
+                    intoVersioned(version, intoAlways<Long> { output.add("all:$it") }))
+        }
+
+        qt().forAll(lists().of(longs().between(0, 5)).ofSizeBetween(0, 10))
+                .check { input ->
+                    val outputLhs = mutableListOf<String>()
+                    val outputRhs = mutableListOf<String>()
+                    val compiled = compile(tree(outputLhs))
+                    val diffuser = tree(outputRhs)
+
+                    input.forEach {
+                        compiled.run(it)
+                        diffuser.run(it)
+                    }
+
+                    assertEquals(outputRhs, outputLhs)
+                    outputLhs == outputRhs
+                }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser
+
+import com.spotify.diffuser.Scheduler
+import com.spotify.diffuser.VirtualScheduler
+import com.spotify.diffuser.fuser.Fuser.conflate
+import com.spotify.diffuser.fuser.Fuser.conflateByKey
+import com.spotify.diffuser.fuser.Fuser.from
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.quicktheories.WithQuickTheories
+
+class FuserConflateTest : WithQuickTheories {
+    class Laws : FuserLaws() {
+        override fun identityFuser(source: Source<Int>) = conflate(Scheduler { it.run() }, from(source))
+    }
+
+    class KeyedLaws : FuserLaws() {
+        override fun identityFuser(source: Source<Int>) = conflateByKey({ it: Int -> it % 3 }, Scheduler { it.run() }, from(source))
+    }
+
+    private val bursts = lists().of(lists().of(integers().between(0, 5)).ofSizeBetween(0, 6)).ofSizeBetween(0, 6)
+
+    @Test
+    fun `conflate() delivers the latest event of every tick`() {
+        qt().forAll(bursts)
+                .check { input ->
+                    val scheduler = VirtualScheduler()
+                    val source = TestSource()
+                    val dropped = DropCounter()
+                    val output = mutableListOf<Int>()
+                    val disposable = conflate(scheduler, dropped, from(source)).connect { output.add(it) }
+
+                    input.forEach { burst ->
+                        burst.forEach { source.emit(it) }
+                        scheduler.tick()
+                    }
+                    disposable.dispose()
+
+                    val expected = input.mapNotNull { it.lastOrNull() }
+                    val expectedDrops = input.map { maxOf(it.size - 1, 0) }.sum().toLong()
+                    assertEquals(expected, output)
+                    output == expected && dropped.dropped() == expectedDrops
+                }
+    }
+
+    @Test
+    fun `conflateByKey() delivers the latest event of every key in order of arrival`() {
+        qt().forAll(bursts)
+                .check { input ->
+                    val scheduler = VirtualScheduler()
+                    val source = TestSource()
+                    val dropped = DropCounter()
+                    val output = mutableListOf<Int>()
+                    val disposable = conflateByKey({ it: Int -> it % 3 }, scheduler, dropped, from(source))
+                            .connect { output.add(it) }
+
+                    input.forEach { burst ->
+                        burst.forEach { source.emit(it) }
+                        scheduler.tick()
+                    }
+                    disposable.dispose()
+
+                    val expected = input.flatMap { burst ->
+                        burst.map { it % 3 }.distinct().map { key -> burst.last { it % 3 == key } }
+                    }
+                    val expectedDrops = input.map { burst -> burst.size - burst.map { it % 3 }.distinct().size }.sum().toLong()
+                    assertEquals(expected, output)
+                    output == expected && dropped.dropped() == expectedDrops
+                }
+    }
+
+    @Test
+    fun `conflate() schedules a single delivery per tick`() {
+        val scheduler = VirtualScheduler()
+        val source = TestSource()
+        val output = mutableListOf<Int>()
+        conflate(scheduler, from(source)).connect { output.add(it) }
+
+        source.emit(1)
+        source.emit(2)
+        source.emit(3)
+
+        assertEquals(1, scheduler.pendingTasks())
+        assertEquals(emptyList<Int>(), output)
+        scheduler.tick()
+        assertEquals(listOf(3), output)
+        assertEquals(0, scheduler.pendingTasks())
+    }
+
+    @Test
+    fun `conflate() does not deliver pending events after dispose()`() {
+        val scheduler = VirtualScheduler()
+        val source = TestSource()
+        val output = mutableListOf<Int>()
+        val disposable = conflate(scheduler, from(source)).connect { output.add(it) }
+
+        source.emit(1)
+        disposable.dispose()
+        scheduler.tick()
+
+        assertEquals(emptyList<Int>(), output)
+    }
+
+    @Test
+    fun `conflate() does not schedule a second drain while delivering`() {
+        val scheduler = VirtualScheduler()
+        val source = TestSource()
+        val output = mutableListOf<Int>()
+        val pendingWhileDelivering = mutableListOf<Int>()
+        conflate(scheduler, from(source)).connect {
+            if (it == 1) {
+                source.emit(2)
+                pendingWhileDelivering.add(scheduler.pendingTasks())
+            }
+            output.add(it)
+        }
+
+        source.emit(1)
+        scheduler.tick()
+
+        // With a Scheduler backed by several threads, a second task could overlap the first one.
+        assertEquals(listOf(0), pendingWhileDelivering)
+        assertEquals(listOf(1), output)
+        assertEquals(1, scheduler.pendingTasks())
+        scheduler.tick()
+        assertEquals(listOf(1, 2), output)
+    }
+
+    @Test
+    fun `conflateByKey() does not schedule a second drain while delivering`() {
+        val scheduler = VirtualScheduler()
+        val source = TestSource()
+        val output = mutableListOf<Int>()
+        val pendingWhileDelivering = mutableListOf<Int>()
+        conflateByKey({ it: Int -> it % 3 }, scheduler, from(source)).connect {
+            if (it == 1) {
+                source.emit(4)
+                source.emit(2)
+                pendingWhileDelivering.add(scheduler.pendingTasks())
+            }
+            output.add(it)
+        }
+
+        source.emit(1)
+        scheduler.tick()
+
+        assertEquals(listOf(0), pendingWhileDelivering)
+        assertEquals(listOf(1), output)
+        assertEquals(1, scheduler.pendingTasks())
+        scheduler.tick()
+        assertEquals(listOf(1, 4, 2), output)
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser
+
+import com.spotify.diffuser.Function
+import com.spotify.diffuser.GenUtils.integerLists
+import com.spotify.diffuser.GenUtils.transformers
+import com.spotify.diffuser.fuser.Fuser.extract
+import com.spotify.diffuser.fuser.Fuser.extractConstant
+import com.spotify.diffuser.fuser.Fuser.extractUnlessNull
+import com.spotify.diffuser.fuser.Fuser.from
+import com.spotify.diffuser.fuser.Fuser.fromAll
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.quicktheories.WithQuickTheories
+import java.util.function.BiFunction
+
+class FuserFusionTest : WithQuickTheories {
+    class Laws : FuserLaws() {
+        override fun identityFuser(source: Source<Int>) =
+                extractUnlessNull({ it: Int -> it }, fromAll(fromAll(extract({ it: Int -> it }, extract({ it }, from(source))))))
+    }
+
+    private val operators = integers().between(0, 2)
+            .zip(transformers, BiFunction { kind: Int, f: Function<Int, Int> -> kind to f })
+
+    @Test
+    fun `chains of extract operators emit the same events as the composed functions`() {
+        qt().forAll(integerLists, lists().of(operators).ofSizeBetween(0, 8))
+                .check { input, chain ->
+                    val source = TestSource()
+                    val output = mutableListOf<Int>()
+
+                    // extractUnlessNull drops odd numbers, extractConstant emits its kind
+                    val fuser = chain.fold(from(source)) { fuser, (kind, f) ->
+                        when (kind) {
+                            0 -> extract(f, fuser)
+                            1 -> extractUnlessNull({ it: Int -> if (it % 2 == 0) f.apply(it) else null }, fuser)
+                            else -> extractConstant(kind, fuser)
+                        }
+                    }
+                    val expected = input.mapNotNull { n ->
+                        chain.fold(n as Int?) { value, (kind, f) ->
+                            when {
+                                value == null -> null
+                                kind == 0 -> f.apply(value)
+                                kind == 1 -> if (value % 2 == 0) f.apply(value) else null
+                                else -> kind
+                            }
+                        }
+                    }
+
+                    val disposable = fuser.connect { output.add(it) }
+                    input.forEach { source.emit(it) }
+                    disposable.dispose()
+
+                    assertEquals(expected, output)
+                    expected == output
+                }
+    }
+
+    @Test
+    fun `extract functions are not run after dispose()`() {
+        val source = AfterDisposeEmittingSource()
+        val extracted = mutableListOf<Int>()
+        val fuser = extract({ it: Int -> extracted.add(it); it }, extract({ it: Int -> it + 1 }, from(source)))
+
+        val disposable = fuser.connect { }
+        source.emit(1)
+        disposable.dispose()
+        source.emit(2)
+
+        assertEquals(listOf(2), extracted)
+    }
+
+    @Test
+    fun `nested fromAll() connects and disposes children in order`() {
+        val events = mutableListOf<String>()
+        fun child(name: String) = from<Int> {
+            events.add("+$name")
+            Disposable { events.add("-$name") }
+        }
+        val fuser = fromAll(child("a"), fromAll(child("b"), fromAll(child("c"))), child("d"))
+
+        fuser.connect { }.dispose()
+
+        assertEquals(listOf("+a", "+b", "+c", "+d", "-a", "-b", "-c", "-d"), events)
+    }
+
+    @Test
+    fun `extending a Fuser does not change it`() {
+        val source = TestSource()
+        val base = extract({ it: Int -> it * 2 }, from(source))
+        val output = mutableListOf<Int>()
+        val extended = mutableListOf<Int>()
+
+        extract({ it: Int -> it + 1 }, base).connect { extended.add(it) }
+        base.connect { output.add(it) }
+        source.emit(1)
+
+        assertEquals(listOf(2), output)
+        assertEquals(listOf(3), extended)
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser
+
+import com.spotify.diffuser.Effect
+import com.spotify.diffuser.fuser.Fuser.from
+import com.spotify.diffuser.fuser.Fuser.fromDynamic
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+
+class FuserGroupTest {
+    class Laws : FuserLaws() {
+        override fun identityFuser(source: Source<Int>): Fuser<Int> {
+            val group = FuserGroup<Int>()
+            group.add(from(source))
+            return fromDynamic(group)
+        }
+    }
+
+    @Test
+    fun `children can be added and removed while connected`() {
+        val group = FuserGroup<Int>()
+        val a = TestSource()
+        val b = TestSource()
+        val output = mutableListOf<Int>()
+        group.add(from(a))
+        val disposable = fromDynamic(group).connect { output.add(it) }
+
+        a.emit(1)
+        val removeB = group.add(from(b))
+        b.emit(2)
+        removeB.dispose()
+        b.emit(3)
+        a.emit(4)
+        disposable.dispose()
+        a.emit(5)
+
+        assertEquals(listOf(1, 2, 4), output)
+        assertTrue(a.outputs.isEmpty())
+        assertTrue(b.outputs.isEmpty())
+        assertEquals(1, group.size())
+    }
+
+    @Test
+    fun `removing a child only disposes that child`() {
+        val group = FuserGroup<Int>()
+        val sources = (1..5).map { DisposableSource() }
+        val removals = sources.map { group.add(from(it)) }
+        val disposable = fromDynamic(group).connect { }
+
+        removals[2].dispose()
+        removals[2].dispose()
+
+        assertEquals(listOf(false, false, true, false, false), sources.map { it.isDisposed })
+        disposable.dispose()
+        assertTrue(sources.all { it.isDisposed })
+    }
+
+    @Test
+    fun `every connection of the group receives added children`() {
+        val group = FuserGroup<Int>()
+        val source = TestSource()
+        val output1 = mutableListOf<Int>()
+        val output2 = mutableListOf<Int>()
+        fromDynamic(group).connect { output1.add(it) }
+        fromDynamic(group).connect { output2.add(it) }
+
+        group.add(from(source))
+        source.emit(1)
+
+        assertEquals(listOf(1), output1)
+        assertEquals(listOf(1), output2)
+        assertEquals(2, source.outputs.size)
+    }
+
+    private class CountingSource : Source<Int> {
+        val live = AtomicInteger()
+
+        override fun connect(effect: Effect<Int>): Disposable {
+            live.incrementAndGet()
+            val disposed = AtomicBoolean()
+            return Disposable { if (disposed.compareAndSet(false, true)) live.decrementAndGet() }
+        }
+    }
+
+    @Test
+    fun `children added and removed from several threads end up disposed`() {
+        val group = FuserGroup<Int>()
+        val disposable = fromDynamic(group).connect { }
+        val start = CountDownLatch(1)
+        val sources = (0 until 8).map { (0 until 500).map { CountingSource() } }
+
+        val threads = sources.map { batch ->
+            thread {
+                start.await()
+                batch.map { group.add(from(it)) }.forEach { it.dispose() }
+            }
+        }
+        val connector = thread {
+            start.await()
+            repeat(200) { fromDynamic(group).connect { }.dispose() }
+        }
+        start.countDown()
+        threads.forEach { it.join() }
+        connector.join()
+
+        assertEquals(0, group.size())
+        assertTrue(sources.flatten().all { it.live.get() == 0 })
+        disposable.dispose()
+    }
+
+    @Test
+    fun `a disposed connection does not connect new children`() {
+        val group = FuserGroup<Int>()
+        val source = DisposableSource()
+        fromDynamic(group).connect { }.dispose()
+
+        group.add(from(source))
+
+        assertFalse(source.isDisposed)
+    }
+}
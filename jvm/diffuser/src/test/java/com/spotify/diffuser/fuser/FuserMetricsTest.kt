@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser
+
+import com.spotify.diffuser.fuser.Fuser.from
+import com.spotify.diffuser.fuser.Fuser.fromAll
+import com.spotify.diffuser.fuser.Fuser.metered
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import kotlin.concurrent.thread
+
+class FuserMetricsTest {
+    class Laws : FuserLaws() {
+        override fun identityFuser(source: Source<Int>) = metered("laws", FuserMetrics(), from(source))
+    }
+
+    @Test
+    fun `metered() counts the events of every source`() {
+        val metrics = FuserMetrics()
+        val scroll = TestSource()
+        val text = TestSource()
+        val output = mutableListOf<Int>()
+        val disposable = fromAll(metered("scroll", metrics, from(scroll)), metered("text", metrics, from(text)))
+                .connect { output.add(it) }
+
+        (1..5).forEach { scroll.emit(it) }
+        text.emit(6)
+        disposable.dispose()
+        scroll.emit(7)
+
+        assertEquals(listOf(1, 2, 3, 4, 5, 6), output)
+        assertEquals(listOf("scroll", "text"), metrics.names().sorted())
+        assertEquals(5L, metrics.events("scroll"))
+        assertEquals(1L, metrics.events("text"))
+        assertEquals(0L, metrics.events("unknown"))
+    }
+
+    @Test
+    fun `metered() measures the time spent in the connected effect`() {
+        val metrics = FuserMetrics()
+        val source = TestSource()
+        metered("slow", metrics, from(source)).connect { if (it > 0) Thread.sleep(it.toLong()) }
+
+        source.emit(0)
+        source.emit(0)
+        source.emit(5)
+
+        val latency = metrics.latency("slow")
+        assertEquals(3L, latency.count())
+        assertTrue(latency.maxNanos() >= 5_000_000)
+        assertTrue(latency.percentileNanos(50.0) < 5_000_000)
+        assertTrue(latency.percentileNanos(100.0) >= 5_000_000)
+        assertEquals(latency.maxNanos(), latency.percentileNanos(100.0))
+    }
+
+    @Test
+    fun `percentiles are within a factor of two`() {
+        val metrics = FuserMetrics()
+        (1..1000L).forEach { metrics.onDispatch("values", it, it * 1000) }
+
+        val latency = metrics.latency("values")
+        listOf(1.0, 50.0, 90.0, 99.0).forEach {
+            val exact = (it * 10).toLong() * 1000
+            val estimate = latency.percentileNanos(it)
+            assertTrue("$it: $estimate vs $exact", estimate >= exact && estimate < 2 * exact)
+        }
+        assertEquals(500_500L, latency.meanNanos())
+    }
+
+    @Test
+    fun `counters are exact when events are emitted from several threads`() {
+        val metrics = FuserMetrics()
+        val source = TestSource()
+        metered("threads", metrics, from(source)).connect { }
+        val start = CountDownLatch(1)
+
+        val threads = (1..8).map {
+            thread {
+                start.await()
+                repeat(10_000) { source.emit(it) }
+            }
+        }
+        start.countDown()
+        threads.forEach { it.join() }
+
+        assertEquals(80_000L, metrics.events("threads"))
+        assertEquals(80_000L, metrics.latency("threads").count())
+    }
+
+    @Test
+    fun `reset() keeps counting the events of metered Fusers`() {
+        val metrics = FuserMetrics()
+        val source = TestSource()
+        metered("reset", metrics, from(source)).connect { }
+        assertEquals(emptyList<String>(), metrics.names())
+
+        source.emit(1)
+        source.emit(2)
+        metrics.reset()
+        assertEquals(0L, metrics.events("reset"))
+        assertEquals(0L, metrics.latency("reset").maxNanos())
+        assertEquals(emptyList<String>(), metrics.names())
+
+        source.emit(3)
+        assertEquals(1L, metrics.events("reset"))
+        assertEquals(listOf("reset"), metrics.names())
+    }
+}
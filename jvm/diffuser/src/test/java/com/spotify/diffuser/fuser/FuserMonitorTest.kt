@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser
+
+import com.spotify.diffuser.fuser.Fuser.from
+import com.spotify.diffuser.fuser.Fuser.named
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Before
+import org.junit.Test
+
+class FuserMonitorTest {
+    class Laws : FuserLaws() {
+        @Before
+        fun install() {
+            FuserMonitors.install(RecordingFuserMonitor())
+        }
+
+        @After
+        fun uninstall() {
+            FuserMonitors.install(null)
+        }
+
+        override fun identityFuser(source: Source<Int>) = named("laws", from(source))
+    }
+
+    private val monitor = RecordingFuserMonitor()
+
+    @Before
+    fun install() {
+        FuserMonitors.install(monitor)
+    }
+
+    @After
+    fun uninstall() {
+        FuserMonitors.install(null)
+    }
+
+    @Test
+    fun `named() reports every event dispatched downstream`() {
+        val source = TestSource()
+        val output = mutableListOf<Int>()
+        val disposable = named("monitor.source", from(source)).connect { output.add(it) }
+
+        source.emit(1)
+        source.emit(2)
+        disposable.dispose()
+        source.emit(3)
+
+        assertEquals(listOf(1, 2), output)
+        assertEquals(listOf("monitor.source:1", "monitor.source:2"),
+                monitor.events.filter { it.startsWith("monitor.source:") })
+    }
+
+    @Test
+    fun `named() returns the Fuser itself without a monitor`() {
+        FuserMonitors.install(null)
+        val fuser = from(TestSource())
+
+        assertSame(fuser, named("unmonitored", fuser))
+    }
+
+    @Test
+    fun `monitors which are not enabled are not installed`() {
+        val disabled = object : FuserMonitor {
+            override fun onDispatch(name: String, event: Any, dispatchNanos: Long) {}
+            override fun isEnabled() = false
+        }
+
+        assertSame(null, FuserMonitors.combine(listOf(disabled)))
+        assertSame(monitor, FuserMonitors.combine(listOf(disabled, monitor)))
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser
+
+import com.spotify.diffuser.fuser.Fuser.from
+import com.spotify.diffuser.fuser.Fuser.observeOn
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.concurrent.thread
+
+class FuserObserveOnTest {
+    class Laws : FuserLaws() {
+        override fun identityFuser(source: Source<Int>) = observeOn(Executor { it.run() }, from(source))
+    }
+
+    private class ManualExecutor : Executor {
+        val tasks = mutableListOf<Runnable>()
+
+        override fun execute(command: Runnable) {
+            tasks.add(command)
+        }
+
+        fun runNext() {
+            tasks.removeAt(0).run()
+        }
+
+        fun runAll() {
+            while (tasks.isNotEmpty()) runNext()
+        }
+    }
+
+    private val executor = ManualExecutor()
+    private val source = TestSource()
+    private val output = mutableListOf<Int>()
+
+    @Test
+    fun `observeOn() delivers events in order on the executor`() {
+        observeOn(executor, from(source)).connect { output.add(it) }
+
+        (1..5).forEach { source.emit(it) }
+
+        assertEquals(emptyList<Int>(), output)
+        assertEquals(1, executor.tasks.size)
+        executor.runAll()
+        assertEquals(listOf(1, 2, 3, 4, 5), output)
+    }
+
+    @Test
+    fun `observeOn() delivers at most one queue of events per task`() {
+        observeOn(executor, 4, OverflowStrategy.BLOCK, from(source)).connect { output.add(it) }
+
+        (1..4).forEach { source.emit(it) }
+        executor.runNext()
+        (5..6).forEach { source.emit(it) }
+
+        assertEquals(listOf(1, 2, 3, 4), output)
+        assertEquals(1, executor.tasks.size)
+        executor.runAll()
+        assertEquals(listOf(1, 2, 3, 4, 5, 6), output)
+    }
+
+    @Test
+    fun `observeOn() drops the oldest events by default rather than waiting`() {
+        observeOn(executor, from(source)).connect { output.add(it) }
+
+        (1..1030).forEach { source.emit(it) }
+
+        executor.runAll()
+        assertEquals((7..1030).toList(), output)
+    }
+
+    @Test
+    fun `BLOCK throws rather than waiting on the thread which empties the queue`() {
+        val errors = mutableListOf<IllegalStateException>()
+        observeOn(executor, 2, OverflowStrategy.BLOCK, from(source)).connect { value: Int ->
+            output.add(value)
+            if (value == 1) {
+                try {
+                    (3..4).forEach { source.emit(it) }
+                } catch (e: IllegalStateException) {
+                    errors.add(e)
+                }
+            }
+        }
+
+        source.emit(1)
+        source.emit(2)
+        executor.runAll()
+
+        assertEquals(1, errors.size)
+        assertEquals(listOf(1, 2, 3), output)
+    }
+
+    @Test
+    fun `DROP_NEWEST keeps the queued events`() {
+        val metrics = QueueMetrics()
+        observeOn(executor, 4, OverflowStrategy.DROP_NEWEST, metrics, from(source)).connect { output.add(it) }
+
+        (1..6).forEach { source.emit(it) }
+
+        assertEquals(4L, metrics.depth())
+        executor.runAll()
+        assertEquals(listOf(1, 2, 3, 4), output)
+        assertEquals(2L, metrics.dropped())
+        assertEquals(0L, metrics.depth())
+        assertEquals(4L, metrics.maxDepth())
+    }
+
+    @Test
+    fun `DROP_OLDEST keeps the latest events`() {
+        val metrics = QueueMetrics()
+        observeOn(executor, 4, OverflowStrategy.DROP_OLDEST, metrics, from(source)).connect { output.add(it) }
+
+        (1..6).forEach { source.emit(it) }
+
+        assertEquals(4L, metrics.depth())
+        executor.runAll()
+        assertEquals(listOf(3, 4, 5, 6), output)
+        assertEquals(2L, metrics.dropped())
+        assertEquals(0L, metrics.depth())
+    }
+
+    @Test
+    fun `FAIL throws on the emitting thread`() {
+        observeOn(executor, 2, OverflowStrategy.FAIL, from(source)).connect { output.add(it) }
+
+        source.emit(1)
+        source.emit(2)
+        try {
+            source.emit(3)
+            fail("expected the full queue to throw")
+        } catch (e: IllegalStateException) {
+        }
+
+        executor.runAll()
+        assertEquals(listOf(1, 2), output)
+    }
+
+    @Test
+    fun `observeOn() keeps delivering after an effect throws`() {
+        observeOn(executor, from(source)).connect {
+            if (it == 2) throw IllegalArgumentException()
+            output.add(it)
+        }
+
+        (1..3).forEach { source.emit(it) }
+        try {
+            executor.runNext()
+            fail("expected the effect to throw")
+        } catch (e: IllegalArgumentException) {
+        }
+        executor.runAll()
+
+        assertEquals(listOf(1, 3), output)
+    }
+
+    @Test
+    fun `observeOn() serializes events from several threads`() {
+        val consumer = Executors.newFixedThreadPool(4)
+        val metrics = QueueMetrics()
+        val received = Collections.synchronizedList(mutableListOf<Int>())
+        val running = AtomicBoolean()
+        val overlapped = AtomicBoolean()
+        val done = CountDownLatch(8 * 1000)
+        val source = TestSource()
+        observeOn(consumer, 64, OverflowStrategy.BLOCK, metrics, from(source)).connect {
+            if (!running.compareAndSet(false, true)) overlapped.set(true)
+            received.add(it)
+            running.set(false)
+            done.countDown()
+        }
+
+        val start = CountDownLatch(1)
+        val producers = (0 until 8).map { producer ->
+            thread {
+                start.await()
+                repeat(1000) { source.emit(producer * 1000 + it) }
+            }
+        }
+        start.countDown()
+        producers.forEach { it.join() }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS))
+        consumer.shutdown()
+        assertTrue(consumer.awaitTermination(10, TimeUnit.SECONDS))
+        assertFalse(overlapped.get())
+        assertEquals(8000, received.toSet().size)
+        // every producer's events arrive in the order they were emitted
+        (0 until 8).forEach { producer ->
+            val events = received.filter { it / 1000 == producer }
+            assertEquals(events.sorted(), events)
+        }
+        assertEquals(0L, metrics.depth())
+        assertTrue(metrics.maxDepth() <= 64)
+    }
+}
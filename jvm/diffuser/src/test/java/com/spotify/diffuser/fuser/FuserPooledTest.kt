@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser
+
+import com.spotify.diffuser.Effect
+import com.spotify.diffuser.fuser.Fuser.extract
+import com.spotify.diffuser.fuser.Fuser.extractPooled
+import com.spotify.diffuser.fuser.Fuser.fromPooled
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Assert.fail
+import org.junit.Test
+import kotlin.concurrent.thread
+
+class FuserPooledTest {
+
+    class Touch : PooledEvent() {
+        var x = 0
+            get() {
+                checkNotRecycled()
+                return field
+            }
+
+        override fun clear() {
+            x = -1
+        }
+    }
+
+    class Scaled : PooledEvent() {
+        var x = 0
+            get() {
+                checkNotRecycled()
+                return field
+            }
+    }
+
+    class TouchSource(private val pool: EventPool<Touch>) : Source<Touch> {
+        val outputs = mutableSetOf<Effect<Touch>>()
+
+        fun emit(x: Int) {
+            outputs.forEach {
+                val touch = pool.obtain()
+                touch.x = x
+                it.run(touch)
+            }
+        }
+
+        override fun connect(effect: Effect<Touch>): Disposable {
+            outputs.add(effect)
+            return Disposable { outputs.remove(effect) }
+        }
+    }
+
+    @Test
+    fun `fromPooled() reuses recycled events`() {
+        var created = 0
+        val pool = EventPool({ created++; Touch() }, 2, false)
+        val source = TouchSource(pool)
+        val output = mutableListOf<Int>()
+        val seen = mutableSetOf<Touch>()
+
+        val connection = fromPooled(source, pool).connect { seen.add(it); output.add(it.x) }
+        (1..100).forEach { source.emit(it) }
+        connection.dispose()
+
+        assertEquals((1..100).toList(), output)
+        assertEquals(1, created)
+        assertEquals(1, seen.size)
+        assertEquals(1, pool.size())
+        assertEquals(-1, seen.first().x)
+    }
+
+    @Test
+    fun `fromPooled() recycles events when an effect throws`() {
+        val pool = EventPool({ Touch() }, 2, false)
+        val source = TouchSource(pool)
+        val connection = fromPooled(source, pool).connect { throw RuntimeException("boom") }
+
+        try {
+            source.emit(1)
+            fail()
+        } catch (e: RuntimeException) {
+            assertEquals("boom", e.message)
+        }
+        connection.dispose()
+
+        assertEquals(1, pool.size())
+    }
+
+    @Test
+    fun `fromPooled() recycles events which arrive after dispose`() {
+        val pool = EventPool({ Touch() }, 2, false)
+        val source = TouchSource(pool)
+        val output = mutableListOf<Int>()
+        val connection = fromPooled(source, pool).connect { output.add(it.x) }
+        val effect = source.outputs.first()
+
+        connection.dispose()
+        val touch = pool.obtain()
+        touch.x = 1
+        effect.run(touch)
+
+        assertEquals(emptyList<Int>(), output)
+        assertEquals(1, pool.size())
+    }
+
+    @Test
+    fun `extractPooled() writes into pooled events`() {
+        var created = 0
+        val touches = EventPool({ Touch() }, 2, false)
+        val scaled = EventPool({ created++; Scaled() }, 2, false)
+        val source = TouchSource(touches)
+        val output = mutableListOf<Int>()
+        val fuser = extractPooled(
+                PooledFunction<Touch, Scaled> { touch, into -> into.x = touch.x * 10 },
+                scaled,
+                fromPooled(source, touches))
+
+        val connection = extract({ it: Scaled -> it.x + 1 }, fuser).connect { output.add(it) }
+        (1..10).forEach { source.emit(it) }
+        connection.dispose()
+
+        assertEquals((1..10).map { it * 10 + 1 }, output)
+        assertEquals(1, created)
+        assertEquals(1, scaled.size())
+    }
+
+    @Test
+    fun `a checking pool detects events which are used after they were recycled`() {
+        val pool = EventPool({ Touch() }, 2, true)
+        val source = TouchSource(pool)
+        val kept = mutableListOf<Touch>()
+
+        val connection = fromPooled(source, pool).connect { assertEquals(1, it.x); kept.add(it) }
+        source.emit(1)
+        connection.dispose()
+
+        assertEquals(0, pool.size())
+        try {
+            kept[0].x
+            fail()
+        } catch (e: IllegalStateException) {
+            assertEquals("Touch was used after it was recycled, copy it instead", e.message)
+        }
+    }
+
+    @Test
+    fun `a checking pool detects events which are recycled twice`() {
+        val pool = EventPool({ Touch() }, 2, true)
+        val touch = pool.obtain()
+
+        pool.recycle(touch)
+        try {
+            pool.recycle(touch)
+            fail()
+        } catch (e: IllegalStateException) {
+            assertEquals("Touch was recycled twice, was it obtained twice?", e.message)
+        }
+        // a checking pool always creates new events
+        val next = pool.obtain()
+        assertNotSame(touch, next)
+    }
+
+    @Test
+    fun `a pool keeps at most capacity events`() {
+        val pool = EventPool({ Touch() }, 1, false)
+        val first = pool.obtain()
+        val second = pool.obtain()
+
+        pool.recycle(first)
+        pool.recycle(second)
+
+        assertEquals(1, pool.size())
+        assertSame(first, pool.obtain())
+        assertEquals(0, pool.size())
+    }
+
+    @Test
+    fun `a checking pool detects events which are obtained on another thread`() {
+        val pool = EventPool({ Touch() }, 2, true)
+        pool.recycle(pool.obtain())
+
+        var error: Throwable? = null
+        thread(name = "background") {
+            try {
+                pool.obtain()
+            } catch (e: IllegalStateException) {
+                error = e
+            }
+        }.join()
+
+        assertEquals(
+                "EventPool was used on background, but belongs to ${Thread.currentThread().name}",
+                error?.message)
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser
+
+import com.spotify.diffuser.fuser.Fuser.extract
+import com.spotify.diffuser.fuser.Fuser.from
+import com.spotify.diffuser.fuser.Fuser.share
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+
+class FuserShareTest {
+    class Laws : FuserLaws() {
+        override fun identityFuser(source: Source<Int>) = share(from(source))
+    }
+
+    @Test
+    fun `share() connects upstream once for all connections`() {
+        val source = TestSource()
+        var connects = 0
+        val fuser = share(from<Int> { effect -> connects++; source.connect(effect) })
+        val output1 = mutableListOf<Int>()
+        val output2 = mutableListOf<Int>()
+
+        val connection1 = fuser.connect { output1.add(it) }
+        val connection2 = extract({ it: Int -> it * 10 }, fuser).connect { output2.add(it) }
+        source.emit(1)
+        source.emit(2)
+
+        assertEquals(1, connects)
+        assertEquals(1, source.outputs.size)
+        assertEquals(listOf(1, 2), output1)
+        assertEquals(listOf(10, 20), output2)
+        connection1.dispose()
+        connection2.dispose()
+    }
+
+    @Test
+    fun `share() disconnects upstream when the last connection is disposed`() {
+        val source = TestSource()
+        val fuser = share(from(source))
+
+        val connection1 = fuser.connect { }
+        val connection2 = fuser.connect { }
+        connection1.dispose()
+        connection1.dispose()
+        assertEquals(1, source.outputs.size)
+
+        connection2.dispose()
+        assertTrue(source.outputs.isEmpty())
+
+        // connecting again reconnects upstream
+        val output = mutableListOf<Int>()
+        val connection3 = fuser.connect { output.add(it) }
+        source.emit(3)
+        connection3.dispose()
+        assertEquals(listOf(3), output)
+        assertTrue(source.outputs.isEmpty())
+    }
+
+    @Test
+    fun `share() allows several consumers of a Source which only accepts one listener`() {
+        val source = DisposableSource()
+        val fuser = share(from(source))
+
+        val connection1 = fuser.connect { }
+        val connection2 = fuser.connect { }
+        connection1.dispose()
+        assertFalse(source.isDisposed)
+        connection2.dispose()
+        assertTrue(source.isDisposed)
+    }
+
+    @Test
+    fun `share() does not lose connections made from several threads`() {
+        val source = TestSource()
+        val fuser = share(from(source))
+        val received = AtomicInteger()
+        val start = CountDownLatch(1)
+
+        val threads = (1..8).map {
+            thread {
+                start.await()
+                repeat(1_000) {
+                    fuser.connect { }.dispose()
+                }
+            }
+        }
+        start.countDown()
+        threads.forEach { it.join() }
+
+        val connection = fuser.connect { received.incrementAndGet() }
+        source.emit(1)
+        connection.dispose()
+
+        assertEquals(1, received.get())
+        assertTrue(source.outputs.isEmpty())
+    }
+}
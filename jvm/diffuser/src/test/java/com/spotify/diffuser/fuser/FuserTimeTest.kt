@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2019 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.diffuser.fuser
+
+import com.spotify.diffuser.VirtualScheduler
+import com.spotify.diffuser.fuser.Fuser.debounce
+import com.spotify.diffuser.fuser.Fuser.from
+import com.spotify.diffuser.fuser.Fuser.sample
+import com.spotify.diffuser.fuser.Fuser.throttleFirst
+import com.spotify.diffuser.fuser.Fuser.throttleLast
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.quicktheories.WithQuickTheories
+import java.util.concurrent.TimeUnit.MILLISECONDS
+import java.util.concurrent.TimeUnit.NANOSECONDS
+import java.util.concurrent.TimeUnit.SECONDS
+
+class FuserTimeTest : WithQuickTheories {
+    class ThrottleFirstLaws : FuserLaws() {
+        override fun identityFuser(source: Source<Int>) = throttleFirst(0, MILLISECONDS, VirtualScheduler(), from(source))
+    }
+
+    private val scheduler = VirtualScheduler()
+    private val source = TestSource()
+    private val output = mutableListOf<String>()
+
+    // Emits events at the given times in milliseconds, and records when they are delivered.
+    private fun play(fuser: Fuser<Int>, vararg times: Long, until: Long) {
+        val disposable = fuser.connect { output.add("$it@${MILLISECONDS.convert(scheduler.nanoTime(), NANOSECONDS)}") }
+        var now = 0L
+        times.forEachIndexed { index, time ->
+            scheduler.advanceTimeBy(time - now, MILLISECONDS)
+            now = time
+            source.emit(index)
+        }
+        scheduler.advanceTimeBy(until - now, MILLISECONDS)
+        disposable.dispose()
+    }
+
+    @Test
+    fun `debounce() emits the latest event once the source is quiet`() {
+        play(debounce(100, MILLISECONDS, scheduler, from(source)), 0, 50, 120, 300, until = 1000)
+
+        assertEquals(listOf("2@220", "3@400"), output)
+    }
+
+    @Test
+    fun `debounce() keeps a single timer per connection`() {
+        debounce(100, MILLISECONDS, scheduler, from(source)).connect { }
+
+        (1..10).forEach { source.emit(it) }
+
+        assertEquals(1, scheduler.pendingTasks())
+    }
+
+    @Test
+    fun `throttleFirst() emits the first event of every window right away`() {
+        play(throttleFirst(100, MILLISECONDS, scheduler, from(source)), 0, 50, 99, 100, 150, 230, until = 1000)
+
+        assertEquals(listOf("0@0", "3@100", "5@230"), output)
+    }
+
+    @Test
+    fun `throttleLast() emits the latest event at the end of every window`() {
+        play(throttleLast(100, MILLISECONDS, scheduler, from(source)), 10, 50, 130, 250, 260, until = 1000)
+
+        assertEquals(listOf("1@110", "2@230", "4@350"), output)
+    }
+
+    @Test
+    fun `sample() emits the latest event of every period which had events`() {
+        play(sample(100, MILLISECONDS, scheduler, from(source)), 10, 50, 130, 250, 260, until = 1000)
+
+        assertEquals(listOf("1@100", "2@200", "4@300"), output)
+    }
+
+    @Test
+    fun `timed operators cancel their timer when disposed`() {
+        val disposable = debounce(100, MILLISECONDS, scheduler, from(source)).connect { output.add("$it") }
+
+        source.emit(1)
+        disposable.dispose()
+        scheduler.advanceTimeBy(1, SECONDS)
+
+        assertEquals(0, scheduler.pendingTasks())
+        assertEquals(emptyList<String>(), output)
+    }
+
+    @Test
+    fun `debounce() delivers the last event of every burst`() {
+        qt().forAll(lists().of(integers().between(1, 200)).ofSizeBetween(0, 20))
+                .check { gaps ->
+                    val scheduler = VirtualScheduler()
+                    val source = TestSource()
+                    val output = mutableListOf<Int>()
+                    debounce(100, MILLISECONDS, scheduler, from(source)).connect { output.add(it) }
+
+                    gaps.forEachIndexed { index, gap ->
+                        scheduler.advanceTimeBy(gap.toLong(), MILLISECONDS)
+                        source.emit(index)
+                    }
+                    scheduler.advanceTimeBy(100, MILLISECONDS)
+
+                    // an event is the last of its burst if the next one is at least 100ms later
+                    val expected = gaps.indices.filter { it == gaps.size - 1 || gaps[it + 1] >= 100 }
+                    assertEquals(expected, output)
+                    expected == output
+                }
+    }
+}